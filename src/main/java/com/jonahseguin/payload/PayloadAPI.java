@@ -7,9 +7,11 @@ package com.jonahseguin.payload;
 
 import com.google.common.base.Preconditions;
 import com.jonahseguin.payload.base.Cache;
+import com.jonahseguin.payload.base.CacheDependencyGraph;
 import com.jonahseguin.payload.base.PayloadCache;
 import com.jonahseguin.payload.base.handshake.HandshakeService;
 import com.jonahseguin.payload.base.network.NetworkPayload;
+import com.jonahseguin.payload.base.pubsub.PubSubService;
 import com.jonahseguin.payload.base.type.Payload;
 import com.jonahseguin.payload.database.DatabaseModule;
 import com.jonahseguin.payload.database.PayloadDatabase;
@@ -20,8 +22,10 @@ import org.bukkit.plugin.java.JavaPlugin;
 
 import javax.annotation.Nonnull;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 @Getter
@@ -32,10 +36,10 @@ public class PayloadAPI {
     private final ConcurrentMap<String, PayloadDatabase> databases = new ConcurrentHashMap<>();
     private final ConcurrentMap<String, ServerService> serverServices = new ConcurrentHashMap<>();
     private final ConcurrentMap<String, HandshakeService> handshakeServices = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, PubSubService> pubSubServices = new ConcurrentHashMap<>();
     private final Set<String> requested = new HashSet<>();
 
-    private List<Cache> _sortedCaches = null;
-    private List<Cache> _sortedCachesReversed = null;
+    private volatile CacheDependencyGraph dependencyGraph = null;
 
     PayloadAPI(PayloadPlugin plugin) {
         this.plugin = plugin;
@@ -70,7 +74,16 @@ public class PayloadAPI {
      * @param cache {@link PayloadCache}
      */
     public final void saveCache(Cache cache) {
-        this.caches.putIfAbsent(convertCacheName(cache.getName()), cache);
+        String name = convertCacheName(cache.getName());
+        if (this.caches.putIfAbsent(name, cache) == null) {
+            try {
+                invalidateDependencyGraph();
+            } catch (IllegalStateException ex) {
+                this.caches.remove(name, cache);
+                this.dependencyGraph = null;
+                throw ex;
+            }
+        }
     }
 
     public void registerDatabase(PayloadDatabase database) {
@@ -121,6 +134,22 @@ public class PayloadAPI {
         }
     }
 
+    public boolean isPubSubServiceRegistered(String name) {
+        return this.pubSubServices.containsKey(name.toLowerCase());
+    }
+
+    public PubSubService getPubSubService(String name) {
+        return this.pubSubServices.get(name.toLowerCase());
+    }
+
+    public void registerPubSubService(PubSubService pubSubService) {
+        if (!isPubSubServiceRegistered(pubSubService.getName())) {
+            this.pubSubServices.put(pubSubService.getName().toLowerCase(), pubSubService);
+        } else {
+            throw new IllegalArgumentException("A Payload Pub/Sub Service (database) with the name '" + pubSubService.getName() + "' has already been registered.  Choose a different name.");
+        }
+    }
+
 
     /**
      * Get a cache by name
@@ -142,33 +171,74 @@ public class PayloadAPI {
         return this.caches.containsKey(convertCacheName(name));
     }
 
-    public List<Cache> getSortedCachesByDepends() {
-        if (this._sortedCaches != null) {
-            if (!this.hasBeenModified()) {
-                return this._sortedCaches;
-            }
+    /**
+     * @return The current snapshot of dependencies between registered caches; rebuilt after a cache or dependency is added
+     */
+    @Nonnull
+    public CacheDependencyGraph getDependencyGraph() {
+        CacheDependencyGraph graph = this.dependencyGraph;
+        if (graph == null) {
+            graph = new CacheDependencyGraph(this.caches.values());
+            this.dependencyGraph = graph;
         }
-        this._sortedCaches = new ArrayList<>(this.caches.values()).stream().sorted().collect(Collectors.toList());
-        return this._sortedCaches;
+        return graph;
+    }
+
+    /**
+     * Discard the dependency snapshot, and check that the dependencies are still acyclic
+     * @throws IllegalStateException If the dependencies now contain a cycle
+     */
+    public void invalidateDependencyGraph() {
+        this.dependencyGraph = null;
+        getDependencyGraph();
+    }
+
+    /**
+     * @return Caches grouped into levels that can each be started/loaded concurrently, dependencies first
+     */
+    @Nonnull
+    public List<List<Cache>> getCacheLevels() {
+        return getDependencyGraph().getLevels();
+    }
+
+    public List<Cache> getSortedCachesByDepends() {
+        return getDependencyGraph().getOrder();
     }
 
     public List<Cache> getSortedCachesByDependsReversed() {
-        if (this._sortedCachesReversed != null) {
-            if (!this.hasBeenModifiedReversed()) {
-                return this._sortedCachesReversed;
-            }
-        }
-        this._sortedCachesReversed = new ArrayList<>(this.caches.values()).stream().sorted().collect(Collectors.toList());
-        Collections.reverse(this._sortedCachesReversed);
-        return this._sortedCachesReversed;
+        return getDependencyGraph().getOrderReversed();
     }
 
-    private boolean hasBeenModified() {
-        return this.caches.size() != this._sortedCaches.size();
+    /**
+     * Start every registered cache, starting the caches of each dependency level concurrently
+     * @return True if every cache started successfully
+     */
+    public boolean startCaches() {
+        return runByLevel(getDependencyGraph().getLevels(), Cache::start, "start");
+    }
+
+    /**
+     * Shut down every running cache, dependents first, shutting down the caches of each level concurrently
+     * @return True if every cache shut down successfully
+     */
+    public boolean shutdownCaches() {
+        return runByLevel(getDependencyGraph().getLevelsReversed(), cache -> !cache.isRunning() || cache.shutdown(), "shut down");
     }
 
-    private boolean hasBeenModifiedReversed() {
-        return this.caches.size() != this._sortedCachesReversed.size();
+    private boolean runByLevel(List<List<Cache>> levels, Predicate<Cache> action, String actionName) {
+        boolean success = true;
+        for (List<Cache> level : levels) {
+            List<CompletableFuture<Boolean>> results = level.stream()
+                    .map(cache -> CompletableFuture.supplyAsync(() -> action.test(cache), plugin.getExecutor()::io).exceptionally(ex -> {
+                        cache.getErrorService().capture(ex, "Failed to " + actionName + " cache " + cache.getName());
+                        return false;
+                    }))
+                    .collect(Collectors.toList());
+            for (CompletableFuture<Boolean> result : results) {
+                success &= result.join(); // The next level depends on this one
+            }
+        }
+        return success;
     }
 
     public void setPayloadID(String name) {
@@ -8,6 +8,7 @@ package com.jonahseguin.payload;
 import com.jonahseguin.lang.LangDefinitions;
 import com.jonahseguin.lang.LangModule;
 import com.jonahseguin.payload.base.PayloadPermission;
+import com.jonahseguin.payload.base.executor.ExecutorSettings;
 import lombok.Getter;
 import lombok.Setter;
 import org.bukkit.Bukkit;
@@ -32,6 +33,7 @@ public class PayloadLocal implements LangModule {
     private String payloadID = null;
     private boolean firstStartup = true;
     private boolean debug = true;
+    private ExecutorSettings executorSettings = new ExecutorSettings();
     private YamlConfiguration config;
     private File payloadFile;
 
@@ -121,6 +123,7 @@ public class PayloadLocal implements LangModule {
         }
 
         this.debug = config.getBoolean("debug", true);
+        this.executorSettings = ExecutorSettings.fromConfig(config.getConfigurationSection("executor"));
 
         return true;
     }
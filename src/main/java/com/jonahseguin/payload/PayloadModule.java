@@ -10,6 +10,7 @@ import com.google.inject.AbstractModule;
 import com.google.inject.Singleton;
 import com.jonahseguin.payload.base.CacheService;
 import com.jonahseguin.payload.base.DatabaseCacheService;
+import com.jonahseguin.payload.base.executor.PayloadExecutor;
 import com.jonahseguin.payload.base.lang.LangService;
 import com.jonahseguin.payload.base.lang.PayloadLangService;
 import com.jonahseguin.payload.base.lifecycle.LifecycleService;
@@ -40,6 +41,7 @@ public class PayloadModule extends AbstractModule {
         bind(PayloadAPI.class).toInstance(payloadPlugin.getApi());
         bind(PayloadPlugin.class).toInstance(payloadPlugin);
         bind(PayloadLocal.class).toInstance(payloadPlugin.getLocal());
+        bind(PayloadExecutor.class).toInstance(payloadPlugin.getExecutor());
         bind(LangService.class).to(PayloadLangService.class);
 
         bind(Plugin.class).toInstance(plugin);
@@ -10,6 +10,8 @@ import com.google.inject.Injector;
 import com.google.inject.Singleton;
 import com.google.inject.Stage;
 import com.jonahseguin.payload.base.PayloadPermission;
+import com.jonahseguin.payload.base.executor.PayloadExecutor;
+import com.jonahseguin.payload.base.executor.PooledPayloadExecutor;
 import com.jonahseguin.payload.base.lang.LangService;
 import com.jonahseguin.payload.base.lang.PayloadLangService;
 import com.jonahseguin.payload.base.listener.LockListener;
@@ -43,6 +45,7 @@ public class PayloadPlugin extends JavaPlugin {
     private PayloadLocal local = new PayloadLocal(this);
     private PCommandHandler commandHandler;
     private LangService lang;
+    private PayloadExecutor executor;
 
     /**
      * Format a string with arguments
@@ -93,6 +96,9 @@ public class PayloadPlugin extends JavaPlugin {
             this.getLogger().info("This is the first startup for Payload on this server instance.  Files created.");
         }
 
+        executor = new PooledPayloadExecutor(this.local.getExecutorSettings(), getLogger());
+        executor.start();
+
         injector = Guice.createInjector(Stage.PRODUCTION, PayloadAPI.install(this, "PayloadDatabase"));
 
         lang = new PayloadLangService(this);
@@ -157,6 +163,9 @@ public class PayloadPlugin extends JavaPlugin {
 
     @Override
     public void onDisable() {
+        if (executor != null && executor.isRunning()) {
+            executor.shutdown();
+        }
         this.getLogger().info(PayloadPlugin.format("Payload v{0} by Jonah Seguin disabled.", getDescription().getVersion()));
         plugin = null;
     }
@@ -8,25 +8,36 @@ package com.jonahseguin.payload.base;
 import com.jonahseguin.payload.PayloadAPI;
 import com.jonahseguin.payload.PayloadMode;
 import com.jonahseguin.payload.base.error.ErrorService;
+import com.jonahseguin.payload.base.eviction.PayloadEvictor;
 import com.jonahseguin.payload.base.lang.LangService;
+import com.jonahseguin.payload.base.network.LeaseService;
 import com.jonahseguin.payload.base.network.NetworkPayload;
 import com.jonahseguin.payload.base.network.NetworkService;
 import com.jonahseguin.payload.base.settings.CacheSettings;
+import com.jonahseguin.payload.base.store.PayloadDatabaseStore;
 import com.jonahseguin.payload.base.store.PayloadStore;
 import com.jonahseguin.payload.base.sync.SyncMode;
 import com.jonahseguin.payload.base.sync.SyncService;
 import com.jonahseguin.payload.base.type.Payload;
 import com.jonahseguin.payload.base.type.PayloadController;
 import com.jonahseguin.payload.base.type.PayloadInstantiator;
+import com.jonahseguin.payload.base.update.PayloadConflictResolver;
+import com.jonahseguin.payload.base.update.UpdateOps;
 import com.jonahseguin.payload.database.DatabaseDependent;
 import com.jonahseguin.payload.database.DatabaseService;
+import com.jonahseguin.payload.server.ServerService;
+import com.mongodb.DBObject;
 import org.bukkit.plugin.Plugin;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.util.Collection;
+import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.Callable;
-import java.util.concurrent.Future;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 
 public interface Cache<K, X extends Payload<K>, N extends NetworkPayload<K>> extends Service, DatabaseDependent {
 
@@ -36,7 +47,20 @@ public interface Cache<K, X extends Payload<K>, N extends NetworkPayload<K>> ext
 
     Optional<X> get(@Nonnull K key);
 
-    Future<Optional<X>> getAsync(@Nonnull K key);
+    CompletableFuture<Optional<X>> getAsync(@Nonnull K key);
+
+    /**
+     * Get many Payloads at once, in the order of the given keys.
+     * Payloads cached locally are returned directly; the rest are read with one query to the database, and their network
+     * payloads with one round-trip to Redis.  Only Payloads held by another server are loaded one at a time (handshake).
+     * @param keys Identifiers
+     * @return Map of identifier to Payload, in the order of the keys; keys that aren't found are left out
+     */
+    @Nonnull
+    Map<K, X> getAll(@Nonnull Collection<K> keys);
+
+    @Nonnull
+    CompletableFuture<Map<K, X>> getAllAsync(@Nonnull Collection<K> keys);
 
     Optional<X> getFromCache(@Nonnull K key);
 
@@ -44,10 +68,35 @@ public interface Cache<K, X extends Payload<K>, N extends NetworkPayload<K>> ext
 
     boolean save(@Nonnull X payload);
 
-    Future<Boolean> saveAsync(@Nonnull X payload);
+    CompletableFuture<Boolean> saveAsync(@Nonnull X payload);
 
     boolean saveNoSync(@Nonnull X payload);
 
+    /**
+     * Atomically apply field-level update operators ($set, $inc, $push, $pull) to a Payload in the database, then apply
+     * the changed fields to the locally cached copy and broadcast only those fields to other servers.
+     * Unlike {@link #save}, the rest of the document isn't re-written, and concurrent updates from other servers aren't lost.
+     * @param key Identifier
+     * @param ops The update operators
+     * @return The updated Payload (the cached copy if cached), or empty if it doesn't exist or the update failed
+     */
+    Optional<X> update(@Nonnull K key, @Nonnull UpdateOps ops);
+
+    CompletableFuture<Optional<X>> updateAsync(@Nonnull K key, @Nonnull UpdateOps ops);
+
+    /**
+     * Apply an update made on another server to the locally cached copy of a Payload, without reading the database.
+     * A full document is always applied (unless the local copy is already at that version); changed fields are only
+     * applied if they directly follow the local copy's version.
+     * @param key Identifier
+     * @param version The version of the Payload after the update
+     * @param fields The changed fields (stored names and mapped values), or null
+     * @param document The full mapped document, or null
+     * @return True if the local copy is now up to date; false if it must be reloaded from the database (version gap,
+     * or neither fields nor a document were given)
+     */
+    boolean applyUpdate(@Nonnull K key, long version, @Nullable DBObject fields, @Nullable DBObject document);
+
     void cache(@Nonnull X payload);
 
     void uncache(@Nonnull K key);
@@ -60,10 +109,26 @@ public interface Cache<K, X extends Payload<K>, N extends NetworkPayload<K>> ext
 
     boolean isCached(@Nonnull K key);
 
+    /**
+     * Have the server holding the most recent copy of a Payload save it before updating it here.
+     * Saves are conditional on the version the local copy is based on, so a save never overwrites a newer copy (the
+     * {@link #getConflictResolver() conflict resolver} merges instead); this round-trip is not required before saving.
+     * @param payload The Payload
+     * @param callback Called with the Payload to update, or empty if it has no network payload
+     */
     void prepareUpdate(@Nonnull X payload, @Nonnull PayloadCallback<Optional<X>> callback);
 
     void prepareUpdateAsync(@Nonnull X payload, @Nonnull PayloadCallback<Optional<X>> callback);
 
+    /**
+     * Prepare a Payload for an update asynchronously: if another server holds a newer copy, it saves it first and the
+     * future completes with the newest copy from the database.  Times out after the handshake timeout.
+     * @param payload The Payload
+     * @return Future completed with the Payload to update, or empty if it has no network payload
+     */
+    @Nonnull
+    CompletableFuture<Optional<X>> prepareUpdateAsync(@Nonnull X payload);
+
     void cacheAll();
 
     @Nonnull
@@ -78,21 +143,52 @@ public interface Cache<K, X extends Payload<K>, N extends NetworkPayload<K>> ext
     @Nonnull
     SyncService<K, X, N> getSyncService();
 
+    /**
+     * @return The lease service tracking which server owns each key; only running if leases are enabled on a network node
+     */
+    @Nonnull
+    LeaseService<K> getLeaseService();
+
+    @Nonnull
+    ServerService getServerService();
+
     @Nonnull
     ErrorService getErrorService();
 
     void setErrorService(@Nonnull ErrorService errorService);
 
+    @Nonnull
+    PayloadConflictResolver<X> getConflictResolver();
+
+    /**
+     * Set how saves that conflict with a newer version in the database (written by another server) are resolved
+     * @param resolver The resolver; the default merges locally changed fields onto the stored copy
+     */
+    void setConflictResolver(@Nonnull PayloadConflictResolver<X> resolver);
+
     @Nonnull
     CacheSettings getSettings();
 
     int saveAll();
 
+    /**
+     * Save only the Payloads that were marked dirty or whose persistent fields changed since they were last
+     * loaded/saved, writing just the changed fields where possible.  Used by the auto-save task.
+     * @return The number of Payloads that failed to save
+     */
+    int saveAllChanged();
+
     @Nonnull
     PayloadStore<K, X> getLocalStore();
 
+    /**
+     * Get the evictor that bounds this cache's local store, and its counters
+     * @return {@link PayloadEvictor}
+     */
+    PayloadEvictor<K, X> getEvictor();
+
     @Nonnull
-    PayloadStore<K, X> getDatabaseStore();
+    PayloadDatabaseStore<K, X> getDatabaseStore();
 
     @Nonnull
     String getName();
@@ -124,7 +220,25 @@ public interface Cache<K, X extends Payload<K>, N extends NetworkPayload<K>> ext
     void runAsync(@Nonnull Runnable runnable);
 
     @Nonnull
-    <T> Future<T> runAsync(@Nonnull Callable<T> callable);
+    <T> CompletableFuture<T> runAsync(@Nonnull Callable<T> callable);
+
+    /**
+     * An executor that runs tasks on the server's main thread, for continuing async stages that use the Bukkit API,
+     * i.e. {@code cache.getAsync(key).thenAcceptAsync(o -> ..., cache.getMainThreadExecutor())}
+     * @return The executor
+     */
+    @Nonnull
+    Executor getMainThreadExecutor();
+
+    /**
+     * Complete a future exceptionally with a {@link java.util.concurrent.TimeoutException} if it hasn't completed in time
+     * @param future The future
+     * @param timeout Max time to wait
+     * @param unit Time unit
+     * @return The same future
+     */
+    @Nonnull
+    <T> CompletableFuture<T> withTimeout(@Nonnull CompletableFuture<T> future, long timeout, @Nonnull TimeUnit unit);
 
     @Nonnull
     LangService getLang();
@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2019 Jonah Seguin.  All rights reserved.  You may not modify, decompile, distribute or use any code/text contained in this document(plugin) without explicit signed permission from Jonah Seguin.
+ * www.jonahseguin.com
+ */
+
+package com.jonahseguin.payload.base;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
+import javax.annotation.Nonnull;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * An immutable snapshot of the dependencies between registered caches ({@link Cache#addDepend(Cache)}).
+ * Caches are grouped into levels (Kahn's algorithm): every cache's dependencies are in an earlier level, so the caches
+ * within one level can be started, loaded or shut down concurrently.
+ * Dependencies on caches that aren't registered are ignored.
+ */
+public class CacheDependencyGraph {
+
+    private final ImmutableList<ImmutableList<Cache>> levels;
+    private final ImmutableList<Cache> order;
+    private final ImmutableMap<Cache, ImmutableSet<Cache>> dependencies;
+
+    /**
+     * @param caches Every registered cache
+     * @throws IllegalStateException If the dependencies contain a cycle
+     */
+    public CacheDependencyGraph(@Nonnull Collection<Cache> caches) {
+        Preconditions.checkNotNull(caches);
+        // Sorted by name, so the order within a level is stable between snapshots
+        List<Cache> nodes = caches.stream().sorted(Comparator.comparing(Cache::getName)).collect(Collectors.toList());
+
+        Map<Cache, ImmutableSet<Cache>> dependencies = new LinkedHashMap<>();
+        Map<Cache, List<Cache>> dependents = new HashMap<>();
+        Map<Cache, Integer> remaining = new HashMap<>();
+        for (Cache cache : nodes) {
+            List<Cache> depends = nodes.stream()
+                    .filter(d -> d != cache && cache.isDependentOn(d))
+                    .collect(Collectors.toList());
+            dependencies.put(cache, ImmutableSet.copyOf(depends));
+            remaining.put(cache, depends.size());
+            for (Cache d : depends) {
+                dependents.computeIfAbsent(d, k -> new ArrayList<>()).add(cache);
+            }
+        }
+
+        ImmutableList.Builder<ImmutableList<Cache>> levels = ImmutableList.builder();
+        ImmutableList.Builder<Cache> order = ImmutableList.builder();
+        List<Cache> level = nodes.stream().filter(c -> remaining.get(c) == 0).collect(Collectors.toList());
+        int placed = 0;
+        while (!level.isEmpty()) {
+            levels.add(ImmutableList.copyOf(level));
+            order.addAll(level);
+            placed += level.size();
+            List<Cache> next = new ArrayList<>();
+            for (Cache cache : level) {
+                for (Cache dependent : dependents.getOrDefault(cache, Collections.emptyList())) {
+                    if (remaining.merge(dependent, -1, Integer::sum) == 0) {
+                        next.add(dependent);
+                    }
+                }
+            }
+            next.sort(Comparator.comparing(Cache::getName));
+            level = next;
+        }
+        if (placed < nodes.size()) {
+            String cycle = nodes.stream().filter(c -> remaining.get(c) > 0).map(Cache::getName).collect(Collectors.joining(", "));
+            throw new IllegalStateException("Circular dependency between caches: " + cycle);
+        }
+
+        this.levels = levels.build();
+        this.order = order.build();
+        this.dependencies = ImmutableMap.copyOf(dependencies);
+    }
+
+    /**
+     * @return Caches grouped into levels, dependencies first: every cache depends only on caches in earlier levels
+     */
+    @Nonnull
+    public List<List<Cache>> getLevels() {
+        return Collections.unmodifiableList(levels);
+    }
+
+    /**
+     * @return Levels in reverse (dependents first), for shutting down
+     */
+    @Nonnull
+    public List<List<Cache>> getLevelsReversed() {
+        return Collections.unmodifiableList(levels.reverse());
+    }
+
+    /**
+     * @return Every cache, dependencies before the caches that depend on them
+     */
+    @Nonnull
+    public List<Cache> getOrder() {
+        return order;
+    }
+
+    /**
+     * @return Every cache, dependents before the caches they depend on
+     */
+    @Nonnull
+    public List<Cache> getOrderReversed() {
+        return order.reverse();
+    }
+
+    /**
+     * @param cache A registered cache
+     * @return The registered caches it directly depends on
+     */
+    @Nonnull
+    public Set<Cache> getDependencies(@Nonnull Cache cache) {
+        Preconditions.checkNotNull(cache);
+        return dependencies.getOrDefault(cache, ImmutableSet.of());
+    }
+
+}
@@ -14,19 +14,34 @@ import com.jonahseguin.payload.PayloadMode;
 import com.jonahseguin.payload.PayloadPlugin;
 import com.jonahseguin.payload.base.error.CacheErrorService;
 import com.jonahseguin.payload.base.error.ErrorService;
+import com.jonahseguin.payload.base.eviction.PayloadEvictor;
+import com.jonahseguin.payload.base.executor.PayloadExecutor;
+import com.jonahseguin.payload.base.executor.PayloadFutures;
 import com.jonahseguin.payload.base.handshake.HandshakeService;
 import com.jonahseguin.payload.base.lang.LangService;
+import com.jonahseguin.payload.base.network.LeaseService;
 import com.jonahseguin.payload.base.network.NetworkPayload;
 import com.jonahseguin.payload.base.network.NetworkService;
+import com.jonahseguin.payload.base.network.RedisLeaseService;
 import com.jonahseguin.payload.base.network.RedisNetworkService;
 import com.jonahseguin.payload.base.sync.CacheSyncService;
 import com.jonahseguin.payload.base.sync.SyncMode;
 import com.jonahseguin.payload.base.sync.SyncService;
 import com.jonahseguin.payload.base.task.PayloadAutoSaveTask;
+import com.jonahseguin.payload.base.task.PayloadEvictionTask;
+import com.jonahseguin.payload.base.task.PayloadLeaseRenewalTask;
+import com.jonahseguin.payload.base.task.PayloadNetworkCleanupTask;
 import com.jonahseguin.payload.base.type.Payload;
 import com.jonahseguin.payload.base.type.PayloadInstantiator;
+import com.jonahseguin.payload.base.update.MergingConflictResolver;
+import com.jonahseguin.payload.base.update.PayloadChanges;
+import com.jonahseguin.payload.base.update.PayloadConflictResolver;
+import com.jonahseguin.payload.base.update.PayloadDirtyTracker;
+import com.jonahseguin.payload.base.update.PayloadFieldMapper;
+import com.jonahseguin.payload.base.update.UpdateOps;
 import com.jonahseguin.payload.database.DatabaseService;
 import com.jonahseguin.payload.server.ServerService;
+import com.mongodb.DBObject;
 import lombok.Getter;
 import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
@@ -35,10 +50,23 @@ import org.bukkit.plugin.Plugin;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
-import java.util.concurrent.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * The abstract backbone of all Payload cache systems.
@@ -48,8 +76,10 @@ import java.util.concurrent.*;
 @Singleton
 public abstract class PayloadCache<K, X extends Payload<K>, N extends NetworkPayload<K>> implements Comparable<PayloadCache>, Cache<K, X, N> {
 
-    protected final ExecutorService pool = Executors.newCachedThreadPool();
     protected final PayloadAutoSaveTask<K, X, N> autoSaveTask = new PayloadAutoSaveTask<>(this);
+    protected final PayloadEvictionTask<K, X, N> evictionTask = new PayloadEvictionTask<>(this);
+    protected final PayloadNetworkCleanupTask<K, X, N> networkCleanupTask = new PayloadNetworkCleanupTask<>(this);
+    protected final PayloadLeaseRenewalTask<K, X, N> leaseRenewalTask = new PayloadLeaseRenewalTask<>(this);
     protected final Set<String> dependingCaches = new HashSet<>();
     protected final Class<K> keyClass;
     protected final Class<X> payloadClass;
@@ -63,10 +93,16 @@ public abstract class PayloadCache<K, X extends Payload<K>, N extends NetworkPay
     @Inject protected LangService lang;
     @Inject protected HandshakeService handshakeService;
     @Inject protected ServerService serverService;
+    @Inject protected PayloadExecutor executor;
     protected ErrorService errorService;
     protected SyncService<K, X, N> sync;
     protected NetworkService<K, X, N> networkService;
+    protected LeaseService<K> leaseService;
     protected PayloadInstantiator<K, X> instantiator;
+    protected PayloadDirtyTracker<X> dirtyTracker;
+    protected PayloadFieldMapper<X> fieldMapper;
+    protected PayloadConflictResolver<X> conflictResolver;
+    protected PayloadEvictor<K, X> evictor;
     protected SyncMode syncMode = SyncMode.IF_CACHED;
     protected boolean debug = true;
     protected PayloadMode mode = PayloadMode.STANDALONE;
@@ -84,7 +120,12 @@ public abstract class PayloadCache<K, X extends Payload<K>, N extends NetworkPay
     protected void setupModule() {
         this.sync = new CacheSyncService<>(this, handshakeService);
         this.networkService = new RedisNetworkService<>(this, networkClass, database);
+        this.leaseService = new RedisLeaseService<>(this);
         this.errorService = new CacheErrorService(this, lang);
+        this.dirtyTracker = new PayloadDirtyTracker<>(database);
+        this.fieldMapper = new PayloadFieldMapper<>(database, payloadClass);
+        this.conflictResolver = new MergingConflictResolver<>(fieldMapper);
+        this.evictor = new PayloadEvictor<>(this);
     }
 
     protected void injectMe() {
@@ -126,8 +167,17 @@ public abstract class PayloadCache<K, X extends Payload<K>, N extends NetworkPay
                 success = false;
                 errorService.capture("Failed to start Network Service for cache " + name);
             }
+            networkCleanupTask.start();
+            if (getSettings().isEnableLeases()) {
+                if (!leaseService.start()) {
+                    success = false;
+                    errorService.capture("Failed to start Lease Service for cache " + name);
+                }
+                leaseRenewalTask.start();
+            }
         }
         autoSaveTask.start();
+        evictionTask.start();
         if (getSettings().isEnableSync()) {
             if (!sync.start()) {
                 success = false;
@@ -157,6 +207,12 @@ public abstract class PayloadCache<K, X extends Payload<K>, N extends NetworkPay
         }
 
         autoSaveTask.stop();
+        evictionTask.stop();
+        networkCleanupTask.stop();
+        leaseRenewalTask.stop();
+        if (leaseService.isRunning() && !leaseService.shutdown()) {
+            success = false;
+        }
         if (!handshakeService.shutdown()) {
             success = false;
         }
@@ -168,7 +224,7 @@ public abstract class PayloadCache<K, X extends Payload<K>, N extends NetworkPay
         if (getSettings().isEnableSync()) {
             this.sync.shutdown();
         }
-        shutdownPool();
+        awaitPendingTasks();
         running = false;
         if (failedSaves > 0) {
             errorService.capture(failedSaves + " Payload objects failed to save during shutdown");
@@ -180,17 +236,12 @@ public abstract class PayloadCache<K, X extends Payload<K>, N extends NetworkPay
     }
 
     /**
-     * Internal method to safely shutdown the internal cache thread pool.
-     * This allows time for processes to finish executing before continuing.
+     * Internal method to allow queued async. work to finish before the cache finishes shutting down.
+     * The executor itself is shared by all caches and is shut down by Payload when the plugin disables.
      */
-    private void shutdownPool() {
-        try {
-            pool.shutdown();
-            pool.awaitTermination(5, TimeUnit.SECONDS);
-        } catch (InterruptedException ex) {
-            errorService.capture(ex, "Interrupted during shutdown of cache's thread pool");
-        } finally {
-            pool.shutdownNow();
+    private void awaitPendingTasks() {
+        if (!executor.awaitIdle(5, TimeUnit.SECONDS)) {
+            errorService.capture("Timed out waiting for async. tasks to complete during shutdown of cache " + name);
         }
     }
 
@@ -303,9 +354,9 @@ public abstract class PayloadCache<K, X extends Payload<K>, N extends NetworkPay
     protected final void updatePayloadFromNewer(@Nonnull X payload, @Nonnull X update) {
         Preconditions.checkNotNull(payload);
         Preconditions.checkNotNull(update);
-        database.getDatastore().getMapper().getMappedClass(payload.getClass()).getPersistenceFields().forEach(mf -> {
-            mf.setFieldValue(payload, mf.getFieldValue(update));
-        });
+        fieldMapper.copyAll(update, payload);
+        payload.setFieldSnapshot(update.getFieldSnapshot());
+        payload.setDirty(update.isDirty());
     }
 
     @Override
@@ -327,9 +378,133 @@ public abstract class PayloadCache<K, X extends Payload<K>, N extends NetworkPay
     }
 
     @Override
-    public Future<Optional<X>> getAsync(@Nonnull K key) {
+    public CompletableFuture<Optional<X>> getAsync(@Nonnull K key) {
         Preconditions.checkNotNull(key);
-        return runAsync(() -> get(key));
+        Optional<X> local = getLocalStore().get(key);
+        if (local.isPresent()) {
+            return CompletableFuture.completedFuture(local);
+        }
+        if (!mode.equals(PayloadMode.STANDALONE)) {
+            return runAsync(() -> get(key)); // May have to handshake with the server holding it first
+        }
+        // Only the database read is left: through the store's async. path (the async. driver, if configured)
+        return getDatabaseStore().getAsync(key).thenApply(o -> {
+            o.ifPresent(this::cache);
+            return o;
+        });
+    }
+
+    @Nonnull
+    @Override
+    public Map<K, X> getAll(@Nonnull Collection<K> keys) {
+        Preconditions.checkNotNull(keys);
+        Set<K> ordered = new LinkedHashSet<>(keys);
+        Map<K, X> found = getLocalStore().getAll(ordered);
+        List<K> misses = ordered.stream().filter(key -> !found.containsKey(key)).collect(Collectors.toList());
+        if (!misses.isEmpty()) {
+            Map<K, N> networked = Collections.emptyMap();
+            List<K> fromDatabase = misses;
+            if (mode.equals(PayloadMode.NETWORK_NODE)) {
+                networked = networkService.getAllByKey(misses);
+                fromDatabase = new ArrayList<>(misses.size());
+                for (K key : misses) {
+                    N np = networked.get(key);
+                    if (np != null && isHeldElsewhere(np)) {
+                        get(key).ifPresent(x -> found.put(key, x)); // The database copy may be stale; handshake for it
+                    } else {
+                        fromDatabase.add(key);
+                    }
+                }
+            }
+            List<N> loaded = new ArrayList<>();
+            for (Map.Entry<K, X> entry : getDatabaseStore().getAll(fromDatabase).entrySet()) {
+                X payload = entry.getValue();
+                if (isCacheOnBatchLoad()) {
+                    cache(payload);
+                }
+                found.put(entry.getKey(), payload);
+                if (mode.equals(PayloadMode.NETWORK_NODE)) {
+                    N np = networked.get(entry.getKey());
+                    if (np == null && isCacheOnBatchLoad()) {
+                        // Held by this server now: create its network payload (saved with the others below), as a single load does
+                        np = networkService.create(payload);
+                    }
+                    if (np != null) {
+                        markNetworkedLoaded(np);
+                        loaded.add(np);
+                    }
+                }
+            }
+            if (!loaded.isEmpty()) {
+                networkService.saveAll(loaded);
+            }
+        }
+        Map<K, X> result = new LinkedHashMap<>();
+        for (K key : ordered) {
+            X payload = found.get(key);
+            if (payload != null) {
+                result.put(key, payload);
+            }
+        }
+        return result;
+    }
+
+    @Nonnull
+    @Override
+    public CompletableFuture<Map<K, X>> getAllAsync(@Nonnull Collection<K> keys) {
+        Preconditions.checkNotNull(keys);
+        if (!mode.equals(PayloadMode.STANDALONE)) {
+            return runAsync(() -> getAll(keys)); // Some may have to be handshaken for
+        }
+        Set<K> ordered = new LinkedHashSet<>(keys);
+        Map<K, X> found = getLocalStore().getAll(ordered);
+        List<K> misses = ordered.stream().filter(key -> !found.containsKey(key)).collect(Collectors.toList());
+        CompletableFuture<Map<K, X>> loaded = misses.isEmpty() ? CompletableFuture.completedFuture(Collections.emptyMap()) : getDatabaseStore().getAllAsync(misses);
+        return loaded.thenApply(fromDatabase -> {
+            Map<K, X> result = new LinkedHashMap<>();
+            for (K key : ordered) {
+                X payload = found.get(key);
+                if (payload == null) {
+                    payload = fromDatabase.get(key);
+                    if (payload != null && isCacheOnBatchLoad()) {
+                        cache(payload);
+                    }
+                }
+                if (payload != null) {
+                    result.put(key, payload);
+                }
+            }
+            return result;
+        });
+    }
+
+    /**
+     * Whether another server holds a copy of a Payload that may be newer than the database's, so that
+     * {@link #getAll(Collection)} must load it through its controller (handshake) rather than in the batch
+     * @param networked The Payload's network payload
+     * @return True if the Payload must be loaded individually
+     */
+    protected abstract boolean isHeldElsewhere(@Nonnull N networked);
+
+    /**
+     * Mark a network payload as loaded by this server, after its Payload was read in a batch by {@link #getAll(Collection)}
+     * @param networked The network payload
+     */
+    protected abstract void markNetworkedLoaded(@Nonnull N networked);
+
+    /**
+     * @return Whether Payloads read from the database by {@link #getAll(Collection)} are cached locally
+     */
+    protected boolean isCacheOnBatchLoad() {
+        return true;
+    }
+
+    /**
+     * @param stored A Payload as stored in the database, that isn't cached
+     * @return Whether {@link #cacheAll()} should cache it
+     */
+    protected boolean isCacheableOnCacheAll(@Nonnull X stored) {
+        return true;
     }
 
     @Override
@@ -349,7 +524,7 @@ public abstract class PayloadCache<K, X extends Payload<K>, N extends NetworkPay
         Preconditions.checkNotNull(payload);
         if (saveNoSync(payload)) {
             if (getSettings().isEnableSync()) {
-                sync.update(payload.getIdentifier());
+                sync.update(payload, null);
             }
             return true;
         }
@@ -357,9 +532,67 @@ public abstract class PayloadCache<K, X extends Payload<K>, N extends NetworkPay
     }
 
     @Override
-    public Future<Boolean> saveAsync(@Nonnull X payload) {
-        Preconditions.checkNotNull(payload);
-        return runAsync(() -> save(payload));
+    public Optional<X> update(@Nonnull K key, @Nonnull UpdateOps ops) {
+        Preconditions.checkNotNull(key);
+        Preconditions.checkNotNull(ops);
+        if (ops.isEmpty()) {
+            return get(key);
+        }
+        Set<String> fields = ops.getStoredFields(fieldMapper);
+        Optional<X> o = getDatabaseStore().update(key, ops);
+        if (!o.isPresent()) {
+            return Optional.empty();
+        }
+        X stored = o.get();
+        Optional<X> local = getLocalStore().get(key);
+        long version = stored.getPayloadVersion();
+        DBObject document = local.isPresent() ? applyFields(local.get(), stored, fields, version) : database.getMorphia().toDBObject(stored);
+        if (getSettings().isEnableSync()) {
+            sync.update(key, version, fieldMapper.select(document, fields));
+        }
+        return Optional.of(local.orElse(stored));
+    }
+
+    @Override
+    public CompletableFuture<Optional<X>> updateAsync(@Nonnull K key, @Nonnull UpdateOps ops) {
+        Preconditions.checkNotNull(key);
+        Preconditions.checkNotNull(ops);
+        return runAsync(() -> update(key, ops));
+    }
+
+    @Override
+    public boolean applyUpdate(@Nonnull K key, long version, @Nullable DBObject fields, @Nullable DBObject document) {
+        Preconditions.checkNotNull(key);
+        Optional<X> local = getLocalStore().get(key);
+        if (local.isPresent() && (fields != null || document != null) && local.get().getPayloadVersion() >= version) {
+            return true; // Already up to date (i.e. our own update, or a re-delivery)
+        }
+        if (document != null) {
+            X payload = fieldMapper.decode(document);
+            dirtyTracker.snapshot(payload);
+            cache(payload);
+            return true;
+        }
+        if (fields != null && local.isPresent() && local.get().getPayloadVersion() == version - 1) {
+            applyFields(local.get(), fieldMapper.decode(fields), fields.keySet(), version);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Copy updated fields onto a cached Payload, and mark only those fields as clean.  The version is only advanced if
+     * the update directly follows the copy; otherwise it stays behind so the gap is still detected.
+     * @return The mapped document of the target after the update
+     */
+    private DBObject applyFields(X target, X source, Collection<String> fields, long version) {
+        fieldMapper.copy(source, target, fields);
+        if (target.getPayloadVersion() == version - 1) {
+            target.setPayloadVersion(version);
+        }
+        DBObject document = database.getMorphia().toDBObject(target);
+        dirtyTracker.commit(target, document, fields);
+        return document;
     }
 
     @Override
@@ -373,6 +606,15 @@ public abstract class PayloadCache<K, X extends Payload<K>, N extends NetworkPay
         }
     }
 
+    /**
+     * Whether a payload must stay in the local store regardless of eviction policy
+     * @param payload The payload
+     * @return True if the payload cannot be evicted
+     */
+    public boolean isPinned(@Nonnull X payload) {
+        return payload.hasValidHandshake();
+    }
+
     @Override
     public void uncache(@Nonnull K key) {
         Preconditions.checkNotNull(key);
@@ -421,15 +663,91 @@ public abstract class PayloadCache<K, X extends Payload<K>, N extends NetworkPay
         runAsync(() -> sync.prepareUpdate(payload, callback));
     }
 
+    @Nonnull
+    @Override
+    public CompletableFuture<Optional<X>> prepareUpdateAsync(@Nonnull X payload) {
+        Preconditions.checkState(getSettings().isEnableSync(), "Cannot prepare update when sync is disabled!");
+        Preconditions.checkNotNull(payload);
+        CompletableFuture<Optional<X>> future = new CompletableFuture<>();
+        runAsync(() -> {
+            try {
+                sync.prepareUpdate(payload, future::complete);
+            } catch (Exception ex) {
+                future.completeExceptionally(ex);
+            }
+        });
+        return withTimeout(future, getSettings().getHandshakeTimeoutSeconds(), TimeUnit.SECONDS);
+    }
+
     @Override
     public void setErrorService(@Nonnull ErrorService errorService) {
         Preconditions.checkNotNull(errorService);
         this.errorService = errorService;
     }
 
+    @Override
+    public void setConflictResolver(@Nonnull PayloadConflictResolver<X> resolver) {
+        Preconditions.checkNotNull(resolver);
+        this.conflictResolver = resolver;
+    }
+
+    /**
+     * Called by the database store when a save conflicts with a newer version in the database.  Resolves the conflict
+     * with the {@link #getConflictResolver() conflict resolver}, leaving the payload ready to be saved again on top of
+     * the stored version.
+     * @param payload The payload that failed to save
+     * @return True if the save should be retried; false if the local changes were discarded (the payload now holds the
+     * stored state)
+     */
+    public boolean resolveConflict(@Nonnull X payload) {
+        Preconditions.checkNotNull(payload);
+        PayloadChanges changes = dirtyTracker.changes(payload);
+        Optional<X> o = getDatabaseStore().get(payload.getIdentifier());
+        if (!o.isPresent()) {
+            return true; // Deleted in the meantime; the retry inserts it again
+        }
+        X stored = o.get();
+        errorService.debug("Resolving save conflict for Payload " + keyToString(payload.getIdentifier()) + " (local version " + payload.getPayloadVersion() + ", stored version " + stored.getPayloadVersion() + ")");
+        boolean retry;
+        try {
+            retry = conflictResolver.resolve(payload, stored, changes);
+        } catch (Exception ex) {
+            errorService.capture(ex, "Error resolving save conflict for Payload " + keyToString(payload.getIdentifier()));
+            return false;
+        }
+        if (retry) {
+            payload.setPayloadVersion(stored.getPayloadVersion());
+        } else {
+            updatePayloadFromNewer(payload, stored);
+        }
+        return retry;
+    }
+
+    /**
+     * Cache every Payload stored in the database, streaming them from a cursor in batches of
+     * {@link CacheSettings#getReadBatchSize()}.  Stops once the local store reaches {@link CacheSettings#getMaxLocalSize()}
+     * rather than caching Payloads only for the evictor to remove them again.
+     * Payloads that are already cached are skipped: the live copy is never overwritten by the stored one.
+     */
     @Override
     public void cacheAll() {
-        getDatabaseStore().getAll().forEach(this::cache);
+        final int maxSize = getSettings().getMaxLocalSize();
+        int cached = 0;
+        try (Stream<X> stream = getDatabaseStore().stream()) {
+            Iterator<X> iterator = stream.iterator();
+            while (iterator.hasNext()) {
+                X payload = iterator.next();
+                if (isCached(payload.getIdentifier()) || !isCacheableOnCacheAll(payload)) {
+                    continue;
+                }
+                if (maxSize > 0 && getLocalStore().size() >= maxSize) {
+                    errorService.debug("Stopped caching all in cache " + name + " after " + cached + " payloads: reached max. local size " + maxSize);
+                    break;
+                }
+                cache(payload);
+                cached++;
+            }
+        }
     }
 
     @Nonnull
@@ -481,31 +799,43 @@ public abstract class PayloadCache<K, X extends Payload<K>, N extends NetworkPay
     }
 
     /**
-     * Simple utility method to run a task asynchronously in a separate thread provided by the cache's local cached thread executor pool.
+     * Simple utility method to run a task asynchronously in Payload's shared, bounded I/O pool.
      * This is recommended over using the Bukkit scheduler when performing operations relative to the cache, as it will ensure operations
-     * are completed BEFORE cache shutdown, plus the cached thread nature yields a slight performance improvement.
-     * @see Executors#newCachedThreadPool()
+     * are completed BEFORE cache shutdown, and keeps the total thread count flat under load.
+     * @see PayloadExecutor#io(Runnable)
      * @param runnable The task to run
      */
     @Override
     public void runAsync(@Nonnull Runnable runnable) {
         Preconditions.checkNotNull(runnable);
-        pool.submit(runnable);
+        executor.io(runnable);
     }
 
     /**
-     * Simple utility method to run a task asynchronously in a separate thread provided by the cache's local cached thread executor pool.
+     * Simple utility method to run a task asynchronously in Payload's shared, bounded I/O pool.
      * This is recommended over using the Bukkit scheduler when performing operations relative to the cache, as it will ensure operations
-     * are completed BEFORE cache shutdown, plus the cached thread nature yields a slight performance improvement.
-     * @see Executors#newCachedThreadPool()
+     * are completed BEFORE cache shutdown, and keeps the total thread count flat under load.
+     * @see PayloadExecutor#io(Callable)
      * @param callable The task to run
-     * @return {@link Future<T>} a future with the callable's parameter after execution has completed.
+     * @return {@link CompletableFuture} completed with the callable's result after execution, or exceptionally with what it threw
      */
     @Nonnull
     @Override
-    public <T> Future<T> runAsync(@Nonnull Callable<T> callable) {
+    public <T> CompletableFuture<T> runAsync(@Nonnull Callable<T> callable) {
         Preconditions.checkNotNull(callable);
-        return pool.submit(callable);
+        return executor.io(callable);
+    }
+
+    @Nonnull
+    @Override
+    public Executor getMainThreadExecutor() {
+        return PayloadFutures.mainThread(plugin);
+    }
+
+    @Nonnull
+    @Override
+    public <T> CompletableFuture<T> withTimeout(@Nonnull CompletableFuture<T> future, long timeout, @Nonnull TimeUnit unit) {
+        return PayloadFutures.withTimeout(future, timeout, unit, executor);
     }
 
     /**
@@ -518,7 +848,15 @@ public abstract class PayloadCache<K, X extends Payload<K>, N extends NetworkPay
     @Override
     public void addDepend(@Nonnull Cache cache) {
         Preconditions.checkNotNull(cache);
-        this.dependingCaches.add(cache.getName());
+        if (this.dependingCaches.add(cache.getName()) && api != null) {
+            try {
+                api.invalidateDependencyGraph();
+            } catch (IllegalStateException ex) {
+                this.dependingCaches.remove(cache.getName());
+                api.invalidateDependencyGraph();
+                throw ex;
+            }
+        }
     }
 
     /**
@@ -535,7 +873,9 @@ public abstract class PayloadCache<K, X extends Payload<K>, N extends NetworkPay
     }
 
     /**
-     * Simple comparator method to determine order between caches based on dependencies
+     * Simple comparator method to determine order between caches based on dependencies.
+     * Only orders caches that directly depend on one another (so it is not transitive); use
+     * {@link PayloadAPI#getDependencyGraph()} to order all caches.
      * @param o The {@link PayloadCache} to compare.
      * @return Comparator sorting integer
      */
@@ -0,0 +1,36 @@
+/*
+ * Copyright (c) 2019 Jonah Seguin.  All rights reserved.  You may not modify, decompile, distribute or use any code/text contained in this document(plugin) without explicit signed permission from Jonah Seguin.
+ * www.jonahseguin.com
+ */
+
+package com.jonahseguin.payload.base.eviction;
+
+/**
+ * How the local store chooses which payloads to evict once it grows beyond its max. size.
+ * Idle payloads (past the cache's local expiry time) are always evicted first, regardless of policy.
+ */
+public enum EvictionPolicy {
+
+    /**
+     * Least recently used: evict the payloads that were interacted with the longest time ago
+     */
+    LRU,
+
+    /**
+     * Least frequently used: evict the payloads with the lowest estimated access frequency, ties broken by recency
+     */
+    LFU,
+
+    /**
+     * Time to live: evict the payloads that were cached the longest time ago, regardless of use.
+     * Local expiry is also measured from the time the payload was cached rather than last interaction.
+     */
+    TTL,
+
+    /**
+     * Window TinyLFU: like LFU, but the most recently cached payloads (a window of 1% of the max. size) are exempt,
+     * so that new payloads can build up frequency before competing with established ones
+     */
+    TINY_LFU
+
+}
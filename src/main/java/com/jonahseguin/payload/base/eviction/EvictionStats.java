@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2019 Jonah Seguin.  All rights reserved.  You may not modify, decompile, distribute or use any code/text contained in this document(plugin) without explicit signed permission from Jonah Seguin.
+ * www.jonahseguin.com
+ */
+
+package com.jonahseguin.payload.base.eviction;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters for a cache's local store eviction
+ */
+public class EvictionStats {
+
+    final AtomicLong runs = new AtomicLong(0);
+    final AtomicLong expired = new AtomicLong(0);
+    final AtomicLong evicted = new AtomicLong(0);
+    final AtomicLong skippedPinned = new AtomicLong(0);
+    final AtomicLong skippedDirty = new AtomicLong(0);
+    volatile long lastRunTimestamp = 0;
+    volatile long lastRunDurationMs = 0;
+    volatile int lastOverCapacity = 0;
+
+    /**
+     * @return Number of eviction runs
+     */
+    public long getRuns() {
+        return runs.get();
+    }
+
+    /**
+     * @return Number of payloads evicted for exceeding the local expiry time
+     */
+    public long getExpired() {
+        return expired.get();
+    }
+
+    /**
+     * @return Number of payloads evicted to keep the local store within its max. size
+     */
+    public long getEvicted() {
+        return evicted.get();
+    }
+
+    /**
+     * @return Number of times a payload was kept because it was online or mid-handshake
+     */
+    public long getSkippedPinned() {
+        return skippedPinned.get();
+    }
+
+    /**
+     * @return Number of times a payload was kept because it had unsaved changes
+     */
+    public long getSkippedDirty() {
+        return skippedDirty.get();
+    }
+
+    public long getLastRunTimestamp() {
+        return lastRunTimestamp;
+    }
+
+    public long getLastRunDurationMs() {
+        return lastRunDurationMs;
+    }
+
+    /**
+     * @return How many payloads the local store was still over its max. size by after the last run
+     * (because the remaining payloads could not be evicted)
+     */
+    public int getLastOverCapacity() {
+        return lastOverCapacity;
+    }
+
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2019 Jonah Seguin.  All rights reserved.  You may not modify, decompile, distribute or use any code/text contained in this document(plugin) without explicit signed permission from Jonah Seguin.
+ * www.jonahseguin.com
+ */
+
+package com.jonahseguin.payload.base.eviction;
+
+import com.google.common.base.Preconditions;
+import com.jonahseguin.payload.base.PayloadCache;
+import com.jonahseguin.payload.base.settings.CacheSettings;
+import com.jonahseguin.payload.base.type.Payload;
+import lombok.Getter;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bounds a cache's local store: evicts payloads that have expired, then evicts by the cache's {@link EvictionPolicy}
+ * until the store is within its max. size.
+ * Payloads that are pinned (i.e. online, mid-handshake) or have unsaved changes are never evicted.
+ */
+public class PayloadEvictor<K, X extends Payload<K>> {
+
+    private static final int WINDOW_PERCENT = 1;
+
+    private final PayloadCache<K, X, ?> cache;
+    @Getter
+    private final EvictionStats stats = new EvictionStats();
+    private volatile FrequencySketch sketch = null;
+
+    public PayloadEvictor(@Nonnull PayloadCache<K, X, ?> cache) {
+        Preconditions.checkNotNull(cache);
+        this.cache = cache;
+    }
+
+    /**
+     * Record an access (local store hit) to a payload, for the frequency-based policies
+     * @param key The local store key
+     */
+    public void recordAccess(@Nonnull K key) {
+        EvictionPolicy policy = cache.getSettings().getEvictionPolicy();
+        if (policy == EvictionPolicy.LFU || policy == EvictionPolicy.TINY_LFU) {
+            sketch().increment(key);
+        }
+    }
+
+    /**
+     * Run eviction over a local store
+     * @param entries The local store's map
+     * @return The number of payloads evicted
+     */
+    public int evict(@Nonnull Map<K, X> entries) {
+        Preconditions.checkNotNull(entries);
+        final long start = System.currentTimeMillis();
+        final CacheSettings settings = cache.getSettings();
+        final EvictionPolicy policy = settings.getEvictionPolicy();
+        final long expiryMs = settings.getLocalExpiryTimeSeconds() * 1000L;
+        final int maxSize = settings.getMaxLocalSize();
+
+        int evicted = 0;
+        List<Map.Entry<K, X>> candidates = new ArrayList<>();
+        for (Map.Entry<K, X> entry : entries.entrySet()) {
+            X payload = entry.getValue();
+            if (cache.isPinned(payload)) {
+                stats.skippedPinned.incrementAndGet();
+                continue;
+            }
+            if (expiryMs > 0 && start - timestamp(policy, payload) > expiryMs) {
+                if (tryEvict(entry.getKey(), payload)) {
+                    stats.expired.incrementAndGet();
+                    evicted++;
+                }
+                continue;
+            }
+            candidates.add(entry);
+        }
+
+        int excess = maxSize > 0 ? entries.size() - maxSize : 0;
+        if (excess > 0) {
+            if (policy == EvictionPolicy.TINY_LFU) {
+                // The most recently cached payloads are the admission window: they are not candidates for eviction
+                int window = Math.max(1, (maxSize * WINDOW_PERCENT) / 100);
+                candidates.sort(Comparator.comparingLong((Map.Entry<K, X> e) -> e.getValue().cachedTimestamp()).reversed());
+                candidates = new ArrayList<>(candidates.subList(Math.min(window, candidates.size()), candidates.size()));
+            }
+            candidates.sort(victimOrder(policy));
+            for (Map.Entry<K, X> entry : candidates) {
+                if (excess <= 0) {
+                    break;
+                }
+                if (tryEvict(entry.getKey(), entry.getValue())) {
+                    stats.evicted.incrementAndGet();
+                    evicted++;
+                    excess--;
+                }
+            }
+        }
+
+        stats.runs.incrementAndGet();
+        stats.lastOverCapacity = Math.max(0, excess);
+        stats.lastRunTimestamp = start;
+        stats.lastRunDurationMs = System.currentTimeMillis() - start;
+        return evicted;
+    }
+
+    private boolean tryEvict(K key, X payload) {
+        if (cache.getDirtyTracker().hasKnownChanges(payload)) {
+            stats.skippedDirty.incrementAndGet();
+            return false;
+        }
+        cache.uncache(key);
+        return true;
+    }
+
+    private Comparator<Map.Entry<K, X>> victimOrder(EvictionPolicy policy) {
+        Comparator<Map.Entry<K, X>> recency = Comparator.comparingLong(e -> timestamp(policy, e.getValue()));
+        if (policy == EvictionPolicy.LFU || policy == EvictionPolicy.TINY_LFU) {
+            final FrequencySketch sketch = sketch();
+            Comparator<Map.Entry<K, X>> frequency = Comparator.comparingInt(e -> sketch.frequency(e.getKey()));
+            return frequency.thenComparing(recency);
+        }
+        return recency;
+    }
+
+    private long timestamp(EvictionPolicy policy, X payload) {
+        return policy == EvictionPolicy.TTL ? payload.cachedTimestamp() : payload.getLastInteractionTimestamp();
+    }
+
+    private FrequencySketch sketch() {
+        FrequencySketch s = sketch;
+        if (s == null) {
+            synchronized (this) {
+                s = sketch;
+                if (s == null) {
+                    int maxSize = cache.getSettings().getMaxLocalSize();
+                    s = new FrequencySketch(maxSize > 0 ? maxSize : 1024);
+                    sketch = s;
+                }
+            }
+        }
+        return s;
+    }
+
+}
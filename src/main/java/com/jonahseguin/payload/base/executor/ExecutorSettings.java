@@ -0,0 +1,36 @@
+/*
+ * Copyright (c) 2019 Jonah Seguin.  All rights reserved.  You may not modify, decompile, distribute or use any code/text contained in this document(plugin) without explicit signed permission from Jonah Seguin.
+ * www.jonahseguin.com
+ */
+
+package com.jonahseguin.payload.base.executor;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.bukkit.configuration.ConfigurationSection;
+
+@Getter
+@Setter
+@NoArgsConstructor
+public class ExecutorSettings {
+
+    private int ioThreads = 32; // max concurrent blocking database calls
+    private int ioQueueSize = 2048; // tasks waiting beyond this run on the submitting thread (backpressure), or are rejected if submitted from the main or pub/sub subscriber thread
+    private int cpuThreads = Math.max(2, Runtime.getRuntime().availableProcessors());
+    private int cpuQueueSize = 1024;
+    private boolean virtualThreads = false; // use virtual threads for the I/O pool when running on JDK 21+
+
+    public static ExecutorSettings fromConfig(ConfigurationSection section) {
+        ExecutorSettings settings = new ExecutorSettings();
+        if (section != null) {
+            settings.setIoThreads(section.getInt("io-threads", settings.getIoThreads()));
+            settings.setIoQueueSize(section.getInt("io-queue-size", settings.getIoQueueSize()));
+            settings.setCpuThreads(section.getInt("cpu-threads", settings.getCpuThreads()));
+            settings.setCpuQueueSize(section.getInt("cpu-queue-size", settings.getCpuQueueSize()));
+            settings.setVirtualThreads(section.getBoolean("virtual-threads", settings.isVirtualThreads()));
+        }
+        return settings;
+    }
+
+}
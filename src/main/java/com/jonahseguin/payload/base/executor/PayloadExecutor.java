@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2019 Jonah Seguin.  All rights reserved.  You may not modify, decompile, distribute or use any code/text contained in this document(plugin) without explicit signed permission from Jonah Seguin.
+ * www.jonahseguin.com
+ */
+
+package com.jonahseguin.payload.base.executor;
+
+import com.jonahseguin.payload.base.Service;
+
+import javax.annotation.Nonnull;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The shared threading model for every Payload cache, handshake service and server service.
+ * Work is split between a bounded I/O pool (MongoDB/Redis calls) and a bounded CPU pool (mapping, dispatch),
+ * so that thread count stays flat no matter how many caches are registered or how many players log in at once.
+ */
+public interface PayloadExecutor extends Service {
+
+    /**
+     * Run a blocking (database/network) task in the I/O pool
+     * @param runnable The task to run
+     */
+    void io(@Nonnull Runnable runnable);
+
+    /**
+     * Run a blocking (database/network) task in the I/O pool
+     * @param callable The task to run
+     * @return {@link CompletableFuture} completed with the callable's result, or exceptionally with what it threw
+     */
+    @Nonnull
+    <T> CompletableFuture<T> io(@Nonnull Callable<T> callable);
+
+    /**
+     * Run a short, non-blocking task in the CPU pool
+     * @param runnable The task to run
+     */
+    void cpu(@Nonnull Runnable runnable);
+
+    /**
+     * Run a short, non-blocking task in the CPU pool
+     * @param callable The task to run
+     * @return {@link CompletableFuture} completed with the callable's result, or exceptionally with what it threw
+     */
+    @Nonnull
+    <T> CompletableFuture<T> cpu(@Nonnull Callable<T> callable);
+
+    /**
+     * Start a long-lived task (i.e a Redis subscriber) on its own named daemon thread.
+     * These never occupy a slot in the bounded pools.
+     * @param name The thread name
+     * @param runnable The task to run
+     */
+    void longRunning(@Nonnull String name, @Nonnull Runnable runnable);
+
+    /**
+     * Run a short task on the shared scheduler thread after a delay (i.e. timeouts).
+     * Scheduled tasks must not block; hand blocking work off to {@link #io(Runnable)}.
+     * @param runnable The task to run
+     * @param delay Delay before running
+     * @param unit Time unit
+     * @return {@link ScheduledFuture} that can be used to cancel the task
+     */
+    @Nonnull
+    ScheduledFuture<?> schedule(@Nonnull Runnable runnable, long delay, @Nonnull TimeUnit unit);
+
+    /**
+     * Block until both pools have no queued or active work, or until the timeout elapses
+     * @param timeout Max time to wait
+     * @param unit Time unit
+     * @return True if the pools became idle before the timeout
+     */
+    boolean awaitIdle(long timeout, @Nonnull TimeUnit unit);
+
+    @Nonnull
+    PayloadPool getIOPool();
+
+    @Nonnull
+    PayloadPool getCPUPool();
+
+    /**
+     * @return True if the I/O pool is backed by virtual threads (JDK 21+)
+     */
+    boolean isVirtual();
+
+}
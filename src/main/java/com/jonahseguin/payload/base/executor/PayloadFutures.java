@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2019 Jonah Seguin.  All rights reserved.  You may not modify, decompile, distribute or use any code/text contained in this document(plugin) without explicit signed permission from Jonah Seguin.
+ * www.jonahseguin.com
+ */
+
+package com.jonahseguin.payload.base.executor;
+
+import com.google.common.base.Preconditions;
+import org.bukkit.plugin.Plugin;
+
+import javax.annotation.Nonnull;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Helpers for composing Payload's {@link CompletableFuture}s: continuing on the server's main thread, and timeouts
+ * (which {@link CompletableFuture} only supports from Java 9).
+ */
+public final class PayloadFutures {
+
+    private PayloadFutures() {
+    }
+
+    /**
+     * An executor that runs tasks on the server's main thread: immediately if already on it, otherwise on the next tick.
+     * Use it to continue an async stage that touches the Bukkit API, i.e.
+     * {@code cache.getAsync(key).thenAcceptAsync(o -> ..., PayloadFutures.mainThread(plugin))}
+     * @param plugin The plugin to schedule the tasks for
+     * @return The executor
+     */
+    @Nonnull
+    public static Executor mainThread(@Nonnull Plugin plugin) {
+        Preconditions.checkNotNull(plugin);
+        return runnable -> {
+            if (plugin.getServer().isPrimaryThread()) {
+                runnable.run();
+            } else {
+                plugin.getServer().getScheduler().runTask(plugin, runnable);
+            }
+        };
+    }
+
+    /**
+     * Complete a future exceptionally with a {@link TimeoutException} if it hasn't completed in time
+     * @param future The future
+     * @param timeout Max time to wait
+     * @param unit Time unit
+     * @param executor Payload's executor, whose scheduler thread times the future out
+     * @return The same future
+     */
+    @Nonnull
+    public static <T> CompletableFuture<T> withTimeout(@Nonnull CompletableFuture<T> future, long timeout, @Nonnull TimeUnit unit, @Nonnull PayloadExecutor executor) {
+        Preconditions.checkNotNull(future);
+        Preconditions.checkNotNull(unit);
+        Preconditions.checkNotNull(executor);
+        if (!future.isDone()) {
+            ScheduledFuture<?> task = executor.schedule(() -> future.completeExceptionally(new TimeoutException("Timed out after " + timeout + " " + unit.name().toLowerCase())), timeout, unit);
+            future.whenComplete((result, ex) -> task.cancel(false));
+        }
+        return future;
+    }
+
+    /**
+     * @param ex The failure
+     * @return A future already completed exceptionally
+     */
+    @Nonnull
+    public static <T> CompletableFuture<T> failed(@Nonnull Throwable ex) {
+        Preconditions.checkNotNull(ex);
+        CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(ex);
+        return future;
+    }
+
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright (c) 2019 Jonah Seguin.  All rights reserved.  You may not modify, decompile, distribute or use any code/text contained in this document(plugin) without explicit signed permission from Jonah Seguin.
+ * www.jonahseguin.com
+ */
+
+package com.jonahseguin.payload.base.executor;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.Getter;
+import org.bukkit.Bukkit;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded, named and instrumented pool.
+ * Platform pools are bounded by thread count + queue size, and run tasks on the submitting thread once the queue is full;
+ * except on the server's main thread and the pub/sub subscriber thread (see {@link #disallowCallerRuns()}), which wait
+ * briefly for room in the queue and are otherwise rejected, as pool tasks block.
+ * Virtual pools (JDK 21+) are bounded by a semaphore on concurrently running tasks.
+ */
+@Getter
+public class PayloadPool implements Executor {
+
+    private static final long MAIN_THREAD_WAIT_MS = 50; // How long the main (or an exempt) thread waits for room in a full queue before the task is rejected
+    private static final ThreadLocal<Boolean> NO_CALLER_RUNS = ThreadLocal.withInitial(() -> false);
+
+    private final String name;
+    private final ExecutorService delegate;
+    private final int maxConcurrency;
+    private final boolean virtual;
+    @Nullable
+    private final Semaphore permits;
+    private final AtomicInteger queued = new AtomicInteger(0);
+    private final AtomicInteger active = new AtomicInteger(0);
+    private final AtomicInteger peakActive = new AtomicInteger(0);
+    private final AtomicLong submitted = new AtomicLong(0);
+    private final AtomicLong completed = new AtomicLong(0);
+    private final AtomicLong failed = new AtomicLong(0);
+    private final AtomicLong callerRuns = new AtomicLong(0);
+    private final AtomicLong rejected = new AtomicLong(0);
+
+    private PayloadPool(String name, ExecutorService delegate, int maxConcurrency, boolean virtual) {
+        this.name = name;
+        this.delegate = delegate;
+        this.maxConcurrency = maxConcurrency;
+        this.virtual = virtual;
+        this.permits = virtual ? new Semaphore(maxConcurrency) : null;
+    }
+
+    public static PayloadPool platform(@Nonnull String name, int threads, int queueSize) {
+        Preconditions.checkNotNull(name);
+        Preconditions.checkArgument(threads > 0, "Pool " + name + " must have at least 1 thread");
+        Preconditions.checkArgument(queueSize > 0, "Pool " + name + " must have a queue size of at least 1");
+        ThreadFactory factory = new ThreadFactoryBuilder().setNameFormat("payload-" + name + "-%d").setDaemon(true).build();
+        PayloadPool[] self = new PayloadPool[1];
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueSize), factory, (r, e) -> {
+            if (e.isShutdown()) {
+                throw new RejectedExecutionException("Payload pool " + name + " is shut down");
+            }
+            if (isPrimaryThread() || NO_CALLER_RUNS.get()) {
+                // Never run (blocking) pool tasks inline on these threads; hand it off once there's room, or fail fast
+                try {
+                    if (e.getQueue().offer(r, MAIN_THREAD_WAIT_MS, TimeUnit.MILLISECONDS)) {
+                        return;
+                    }
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                self[0].rejected.incrementAndGet();
+                throw new RejectedExecutionException("Payload pool " + name + " is saturated; rejected a task submitted from " + Thread.currentThread().getName());
+            }
+            // Backpressure: once the queue is full, the submitting thread runs the task itself
+            self[0].callerRuns.incrementAndGet();
+            r.run();
+        });
+        executor.allowCoreThreadTimeOut(true);
+        self[0] = new PayloadPool(name, executor, threads, false);
+        return self[0];
+    }
+
+    /**
+     * Create a pool backed by virtual threads.  Only available on JDK 21+
+     * @param name Pool name
+     * @param maxConcurrency Max tasks running at once
+     * @return The pool, or null if virtual threads are not supported by this JVM
+     */
+    @Nullable
+    public static PayloadPool virtual(@Nonnull String name, int maxConcurrency) {
+        Preconditions.checkNotNull(name);
+        Preconditions.checkArgument(maxConcurrency > 0, "Pool " + name + " must allow at least 1 concurrent task");
+        try {
+            // Reflective so that Payload still compiles against and runs on Java 8
+            ExecutorService executor = (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            return new PayloadPool(name, executor, maxConcurrency, true);
+        } catch (ReflectiveOperationException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Never run tasks inline on the calling thread when a pool's queue is full, as on the main thread: for threads that
+     * others wait on, i.e. the pub/sub subscriber thread, which every channel (including the handshake replies that
+     * free pool threads) is dispatched from
+     */
+    public static void disallowCallerRuns() {
+        NO_CALLER_RUNS.set(true);
+    }
+
+    @Override
+    public void execute(@Nonnull Runnable runnable) {
+        Preconditions.checkNotNull(runnable);
+        submitted.incrementAndGet();
+        queued.incrementAndGet();
+        try {
+            delegate.execute(() -> run(runnable));
+        } catch (RejectedExecutionException ex) {
+            queued.decrementAndGet();
+            throw ex;
+        }
+    }
+
+    @Nonnull
+    public <T> CompletableFuture<T> submit(@Nonnull Callable<T> callable) {
+        Preconditions.checkNotNull(callable);
+        CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            execute(() -> {
+                if (future.isDone()) {
+                    return; // Cancelled before it started
+                }
+                try {
+                    future.complete(callable.call());
+                } catch (Throwable ex) {
+                    future.completeExceptionally(ex);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            future.completeExceptionally(ex);
+        }
+        return future;
+    }
+
+    private void run(Runnable runnable) {
+        boolean acquired = false;
+        try {
+            if (permits != null) {
+                permits.acquire();
+                acquired = true;
+            }
+            queued.decrementAndGet();
+            int now = active.incrementAndGet();
+            peakActive.accumulateAndGet(now, Math::max);
+            try {
+                runnable.run();
+                completed.incrementAndGet();
+            } catch (Throwable ex) {
+                failed.incrementAndGet();
+                throw ex;
+            } finally {
+                active.decrementAndGet();
+            }
+        } catch (InterruptedException ex) {
+            queued.decrementAndGet();
+            Thread.currentThread().interrupt();
+        } finally {
+            if (acquired) {
+                permits.release();
+            }
+        }
+    }
+
+    private static boolean isPrimaryThread() {
+        return Bukkit.getServer() != null && Bukkit.getServer().isPrimaryThread();
+    }
+
+    public int getQueueDepth() {
+        return queued.get();
+    }
+
+    public int getActiveCount() {
+        return active.get();
+    }
+
+    public boolean isIdle() {
+        return queued.get() == 0 && active.get() == 0;
+    }
+
+    public void shutdown() {
+        delegate.shutdown();
+    }
+
+    public boolean awaitTermination(long timeout, @Nonnull TimeUnit unit) throws InterruptedException {
+        return delegate.awaitTermination(timeout, unit);
+    }
+
+    public void shutdownNow() {
+        delegate.shutdownNow();
+    }
+
+}
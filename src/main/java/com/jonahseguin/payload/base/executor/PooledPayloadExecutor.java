@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) 2019 Jonah Seguin.  All rights reserved.  You may not modify, decompile, distribute or use any code/text contained in this document(plugin) without explicit signed permission from Jonah Seguin.
+ * www.jonahseguin.com
+ */
+
+package com.jonahseguin.payload.base.executor;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.Getter;
+
+import javax.annotation.Nonnull;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+public class PooledPayloadExecutor implements PayloadExecutor {
+
+    @Getter
+    private final ExecutorSettings settings;
+    private final Logger logger;
+    private PayloadPool ioPool = null;
+    private PayloadPool cpuPool = null;
+    private ScheduledThreadPoolExecutor scheduler = null;
+    private boolean virtual = false;
+    private boolean running = false;
+
+    public PooledPayloadExecutor(@Nonnull ExecutorSettings settings, @Nonnull Logger logger) {
+        Preconditions.checkNotNull(settings);
+        Preconditions.checkNotNull(logger);
+        this.settings = settings;
+        this.logger = logger;
+    }
+
+    @Override
+    public boolean start() {
+        Preconditions.checkState(!running, "Payload executor is already running");
+        if (settings.isVirtualThreads()) {
+            ioPool = PayloadPool.virtual("io", settings.getIoThreads());
+            if (ioPool == null) {
+                logger.warning("[Payload] Virtual threads were requested but are not supported by this JVM (requires JDK 21+); using platform threads");
+            } else {
+                virtual = true;
+            }
+        }
+        if (ioPool == null) {
+            ioPool = PayloadPool.platform("io", settings.getIoThreads(), settings.getIoQueueSize());
+        }
+        cpuPool = PayloadPool.platform("cpu", settings.getCpuThreads(), settings.getCpuQueueSize());
+        scheduler = new ScheduledThreadPoolExecutor(1, new ThreadFactoryBuilder().setNameFormat("payload-scheduler-%d").setDaemon(true).build());
+        scheduler.setRemoveOnCancelPolicy(true);
+        running = true;
+        return true;
+    }
+
+    @Override
+    public boolean shutdown() {
+        Preconditions.checkState(running, "Payload executor is not running");
+        boolean success = shutdownPool(ioPool);
+        if (!shutdownPool(cpuPool)) {
+            success = false;
+        }
+        scheduler.shutdownNow();
+        running = false;
+        return success;
+    }
+
+    private boolean shutdownPool(PayloadPool pool) {
+        try {
+            pool.shutdown();
+            return pool.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            logger.warning("[Payload] Interrupted during shutdown of executor pool " + pool.getName());
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Override
+    public void io(@Nonnull Runnable runnable) {
+        Preconditions.checkNotNull(runnable);
+        ioPool.execute(runnable);
+    }
+
+    @Nonnull
+    @Override
+    public <T> CompletableFuture<T> io(@Nonnull Callable<T> callable) {
+        Preconditions.checkNotNull(callable);
+        return ioPool.submit(callable);
+    }
+
+    @Override
+    public void cpu(@Nonnull Runnable runnable) {
+        Preconditions.checkNotNull(runnable);
+        cpuPool.execute(runnable);
+    }
+
+    @Nonnull
+    @Override
+    public <T> CompletableFuture<T> cpu(@Nonnull Callable<T> callable) {
+        Preconditions.checkNotNull(callable);
+        return cpuPool.submit(callable);
+    }
+
+    @Override
+    public void longRunning(@Nonnull String name, @Nonnull Runnable runnable) {
+        Preconditions.checkNotNull(name);
+        Preconditions.checkNotNull(runnable);
+        Thread thread = new Thread(runnable, "payload-" + name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Nonnull
+    @Override
+    public ScheduledFuture<?> schedule(@Nonnull Runnable runnable, long delay, @Nonnull TimeUnit unit) {
+        Preconditions.checkNotNull(runnable);
+        Preconditions.checkNotNull(unit);
+        return scheduler.schedule(runnable, delay, unit);
+    }
+
+    @Override
+    public boolean awaitIdle(long timeout, @Nonnull TimeUnit unit) {
+        Preconditions.checkNotNull(unit);
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (!ioPool.isIdle() || !cpuPool.isIdle()) {
+            if (System.nanoTime() >= deadline) {
+                return false;
+            }
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Nonnull
+    @Override
+    public PayloadPool getIOPool() {
+        return ioPool;
+    }
+
+    @Nonnull
+    @Override
+    public PayloadPool getCPUPool() {
+        return cpuPool;
+    }
+
+    @Override
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+}
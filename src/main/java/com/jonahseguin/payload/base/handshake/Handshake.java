@@ -8,7 +8,6 @@ package com.jonahseguin.payload.base.handshake;
 import com.google.inject.Inject;
 import com.jonahseguin.payload.database.DatabaseService;
 import lombok.Getter;
-import redis.clients.jedis.Jedis;
 
 import javax.annotation.Nonnull;
 
@@ -19,7 +18,6 @@ public abstract class Handshake {
     protected HandshakeService handshakeService;
     @Inject
     protected DatabaseService database;
-    protected HandshakeListener listener;
     protected HandshakeHandler handler;
 
     @Inject
@@ -42,6 +40,14 @@ public abstract class Handshake {
 
     public abstract boolean shouldAccept();
 
+    /**
+     * Called after {@link #receive()}, to add data to the reply.  Async.
+     * @param data The handshake's data, as received; sent back as the reply
+     */
+    public void writeReply(@Nonnull HandshakeData data) {
+        // Replies echo the received data by default
+    }
+
     public boolean shouldReply() {
         return true;
     }
@@ -57,23 +63,6 @@ public abstract class Handshake {
         }
     }
 
-    public void listen() {
-        listener = new HandshakeListener(handshakeService, this);
-        try (Jedis subscriber = database.getJedisResource()) {
-            subscriber.subscribe(listener, channelPublish(), channelReply());
-        } catch (Exception ex) {
-            database.getErrorService().capture(ex, "Error during listening for handshake " + this.getClass().getSimpleName());
-        }
-    }
-
-    public void stopListening() {
-        if (listener != null) {
-            if (listener.isSubscribed()) {
-                listener.unsubscribe();
-            }
-        }
-    }
-
     public abstract Handshake create();
 
 }
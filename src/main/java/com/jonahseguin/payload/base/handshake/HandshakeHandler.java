@@ -1,50 +1,110 @@
 package com.jonahseguin.payload.base.handshake;
 
+import com.google.common.base.Preconditions;
 import com.jonahseguin.payload.base.PayloadCallback;
+import com.jonahseguin.payload.base.executor.PayloadExecutor;
 import lombok.Getter;
 
+import javax.annotation.Nonnull;
 import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
+/**
+ * The pending reply to a published handshake.
+ * The future is completed by the reply listener as soon as the reply is received, or exceptionally with a
+ * {@link TimeoutException} if a timeout elapses first.
+ */
 @Getter
 public class HandshakeHandler<H extends Handshake> {
 
-    private volatile H controller = null;
+    private final CompletableFuture<H> future = new CompletableFuture<>();
     final HandshakeData data;
-    PayloadCallback<H> callback = object -> {
-    };
-    private boolean timedOut = false;
+    private final PayloadExecutor executor;
+    private volatile boolean timedOut = false;
 
-    public HandshakeHandler(HandshakeData data) {
+    public HandshakeHandler(@Nonnull HandshakeData data, @Nonnull PayloadExecutor executor) {
+        Preconditions.checkNotNull(data);
+        Preconditions.checkNotNull(executor);
         this.data = data;
+        this.executor = executor;
     }
 
     void call(H controller) {
-        this.controller = controller;
-        if (this.callback != null) {
-            this.callback.callback(controller);
+        future.complete(controller);
+    }
+
+    /**
+     * @return The reply controller, if the reply has been received
+     */
+    public H getController() {
+        return future.isDone() && !future.isCompletedExceptionally() ? future.getNow(null) : null;
+    }
+
+    /**
+     * Complete this handshake exceptionally if no reply is received within the timeout
+     * @param timeout Max time to wait for a reply
+     * @param unit Time unit
+     * @return This handler
+     */
+    public HandshakeHandler<H> timeout(long timeout, @Nonnull TimeUnit unit) {
+        Preconditions.checkNotNull(unit);
+        if (!future.isDone()) {
+            ScheduledFuture<?> task = executor.schedule(() -> {
+                if (future.completeExceptionally(new TimeoutException("No handshake reply within " + timeout + " " + unit.name().toLowerCase()))) {
+                    timedOut = true;
+                }
+            }, timeout, unit);
+            future.whenComplete((h, ex) -> task.cancel(false));
         }
+        return this;
+    }
+
+    /**
+     * Stop waiting for a reply.  Dependent stages and any blocked {@link #waitForReply(int)} are released.
+     * @return True if this handshake was cancelled before a reply was received
+     */
+    public boolean cancel() {
+        return future.cancel(false);
     }
 
+    /**
+     * Run a callback once the reply is received, without blocking.  Not called if the handshake times out or is cancelled.
+     * @param callback The callback, run in the I/O pool (callbacks may block, i.e. read the database), so that it never
+     * holds up the CPU pool that replies are dispatched on
+     * @return This handler
+     */
     public HandshakeHandler<H> afterReply(PayloadCallback<H> callback) {
-        this.callback = callback;
+        Preconditions.checkNotNull(callback);
+        future.thenAcceptAsync(callback::callback, executor::io);
         return this;
     }
 
-    public synchronized Optional<H> waitForReply(int maxSeconds) {
-        double waited = 0;
-        while (controller == null) {
-            if (waited >= maxSeconds) {
+    /**
+     * Block until the reply is received, or the timeout elapses.
+     * Returns as soon as the reply lands.
+     * @param maxSeconds Max seconds to wait
+     * @return The reply controller, or empty if timed out/cancelled
+     */
+    public Optional<H> waitForReply(int maxSeconds) {
+        try {
+            return Optional.ofNullable(future.get(maxSeconds, TimeUnit.SECONDS));
+        } catch (TimeoutException ex) {
+            timedOut = true;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof TimeoutException) {
                 timedOut = true;
-                break;
-            }
-            try {
-                Thread.sleep(100);
-                waited += 0.1;
-            } catch (InterruptedException ex) {
-                this.controller.getDatabase().getErrorService().capture(ex, "Interrupted while waiting for reply in handshake handler");
             }
+        } catch (CancellationException ignored) {
+            // Cancelled: no reply
         }
-        return Optional.ofNullable(controller);
+        return Optional.empty();
     }
 
 }
@@ -1,9 +1,14 @@
 package com.jonahseguin.payload.base.handshake;
 
+import com.jonahseguin.payload.base.pubsub.PubSubListener;
 import org.bson.Document;
-import redis.clients.jedis.JedisPubSub;
 
-public class HandshakeListener extends JedisPubSub {
+import javax.annotation.Nonnull;
+
+/**
+ * Routes a handshake's publish and reply channels from the shared {@link com.jonahseguin.payload.base.pubsub.PubSubService}
+ */
+public class HandshakeListener implements PubSubListener {
 
     private final Handshake controller;
     private final HandshakeService service;
@@ -14,13 +19,13 @@ public class HandshakeListener extends JedisPubSub {
     }
 
     @Override
-    public void onMessage(String channel, String json) {
+    public void onMessage(@Nonnull String channel, @Nonnull String json) {
         if (channel.equalsIgnoreCase(controller.channelPublish())) {
             // Receiving init. handshake
             service.receive(controller.channelPublish(), mapData(json));
         } else if (channel.equalsIgnoreCase(controller.channelReply())) {
             // Receiving handshake reply
-            service.receive(controller.channelReply(), mapData(json));
+            service.receiveReply(controller.channelReply(), mapData(json));
 
         }
     }
@@ -7,25 +7,35 @@ package com.jonahseguin.payload.base.handshake;
 
 import com.google.common.base.Preconditions;
 import com.google.inject.Inject;
+import com.jonahseguin.payload.base.executor.PayloadExecutor;
+import com.jonahseguin.payload.base.pubsub.PubSubService;
 import com.jonahseguin.payload.database.DatabaseService;
 import org.bson.Document;
 import redis.clients.jedis.Jedis;
 
 import javax.annotation.Nonnull;
-import java.util.concurrent.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
 public class PayloadHandshakeService implements HandshakeService {
 
+    private static final int MAX_REPLY_WAIT_SECONDS = 30; // Pending replies are discarded after this, even if nobody is waiting on them
+
     private final String name;
     private final ConcurrentMap<String, Handshake> replyControllers = new ConcurrentHashMap<>();
     private final ConcurrentMap<String, HandshakeContainer> containers = new ConcurrentHashMap<>();
     private boolean running = false;
     private final DatabaseService database;
-    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final PayloadExecutor executor;
+    private final PubSubService pubSub;
 
     @Inject
-    public PayloadHandshakeService(DatabaseService database) {
+    public PayloadHandshakeService(DatabaseService database, PayloadExecutor executor, PubSubService pubSub) {
         this.database = database;
+        this.executor = executor;
+        this.pubSub = pubSub;
         this.name = database.getName();
     }
 
@@ -42,40 +52,24 @@ public class PayloadHandshakeService implements HandshakeService {
 
     @Override
     public boolean shutdown() {
-        this.containers.values().stream()
-                .map(HandshakeContainer::getSubscriberController)
-                .forEach(Handshake::stopListening);
-        shutdownExecutor();
+        this.containers.keySet().forEach(pubSub::unsubscribe);
         this.containers.clear();
         this.replyControllers.clear();
         running = false;
         return true;
     }
 
-    private void shutdownExecutor() {
-        try {
-            executor.shutdown();
-            executor.awaitTermination(5, TimeUnit.SECONDS);
-        } catch (InterruptedException ex) {
-            database.getErrorService().capture(ex, "Interrupted during shutdown of handshake service's executor service");
-        } finally {
-            executor.shutdownNow();
-        }
-    }
-
     @Override
     public void receiveReply(@Nonnull String channel, @Nonnull HandshakeData data) {
         Preconditions.checkNotNull(channel);
         Preconditions.checkNotNull(data);
-        if (replyControllers.containsKey(data.getID())) {
-            Handshake controller = replyControllers.get(data.getID());
-            if (controller != null) {
-                executor.submit(() -> {
-                    controller.load(data);
-                    controller.executeHandler();
-                });
-            }
-            replyControllers.remove(data.getID());
+        Handshake controller = replyControllers.remove(data.getID());
+        if (controller != null) {
+            // Replies are dispatched on the CPU pool so they are never starved by I/O tasks waiting on them
+            executor.cpu(() -> {
+                controller.load(data);
+                controller.executeHandler();
+            });
         }
     }
 
@@ -87,19 +81,25 @@ public class PayloadHandshakeService implements HandshakeService {
         if (containers.containsKey(channel)) {
             HandshakeContainer container = containers.get(channel);
             Handshake controller = container.createInstance();
-            executor.submit(() -> {
-                controller.load(data);
-                if (controller.shouldAccept()) {
-                    controller.receive();
-                    if (controller.shouldReply()) {
-                        try (Jedis jedis = database.getJedisResource()) {
-                            jedis.publish(controller.channelReply(), data.getDocument().toJson());
-                        } catch (Exception ex) {
-                            database.getErrorService().capture(ex, "Error with Jedis resource during handshake receive (sending reply) for " + controller.getClass().getSimpleName());
+            try {
+                executor.io(() -> {
+                    controller.load(data);
+                    if (controller.shouldAccept()) {
+                        controller.receive();
+                        if (controller.shouldReply()) {
+                            controller.writeReply(data);
+                            try (Jedis jedis = database.getJedisResource()) {
+                                jedis.publish(controller.channelReply(), data.getDocument().toJson());
+                            } catch (Exception ex) {
+                                database.getErrorService().capture(ex, "Error with Jedis resource during handshake receive (sending reply) for " + controller.getClass().getSimpleName());
+                            }
                         }
                     }
-                }
-            });
+                });
+            } catch (RejectedExecutionException ex) {
+                // Never handled on the subscriber thread; the other server times out waiting for the reply
+                database.getErrorService().capture(ex, "Dropped handshake on " + channel + ", the I/O pool is saturated");
+            }
         }
     }
 
@@ -110,7 +110,9 @@ public class PayloadHandshakeService implements HandshakeService {
         Handshake controller = container.getSubscriberController();
         containers.put(controller.channelPublish(), container);
         containers.put(controller.channelReply(), container);
-        executor.submit(controller::listen);
+        HandshakeListener listener = new HandshakeListener(this, controller);
+        pubSub.subscribe(controller.channelPublish(), listener);
+        pubSub.subscribe(controller.channelReply(), listener);
     }
 
     @Override
@@ -119,13 +121,16 @@ public class PayloadHandshakeService implements HandshakeService {
         HandshakeData data = new HandshakeData(new Document());
         data.writeID();
         controller.write(data);
-        HandshakeHandler<H> handler = new HandshakeHandler<>(data);
+        HandshakeHandler<H> handler = new HandshakeHandler<>(data, executor);
         controller.setHandler(handler);
         replyControllers.put(data.getID(), controller);
+        handler.getFuture().whenComplete((h, ex) -> replyControllers.remove(data.getID()));
+        handler.timeout(MAX_REPLY_WAIT_SECONDS, TimeUnit.SECONDS);
         try (Jedis jedis = database.getJedisResource()) {
             jedis.publish(controller.channelPublish(), data.getDocument().toJson());
         } catch (Exception ex) {
             database.getErrorService().capture(ex, "Error with Jedis resource during handshake publish for " + controller.getClass().getSimpleName());
+            handler.getFuture().completeExceptionally(ex);
         }
         return handler;
     }
@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2019 Jonah Seguin.  All rights reserved.  You may not modify, decompile, distribute or use any code/text contained in this document(plugin) without explicit signed permission from Jonah Seguin.
+ * www.jonahseguin.com
+ */
+
+package com.jonahseguin.payload.base.network;
+
+import com.jonahseguin.payload.base.Service;
+
+import javax.annotation.Nonnull;
+import java.util.Collection;
+import java.util.Optional;
+
+/**
+ * Lease-based ownership of payload keys across servers.  A lease is a Redis key set with SET NX PX, so at most one
+ * server owns a key at a time, and ownership lapses on its own if that server dies.  Leases held by this server are
+ * kept in memory and renewed in batches in the background, so ownership checks never touch Redis.
+ */
+public interface LeaseService<K> extends Service {
+
+    /**
+     * Acquire this server's lease on a key, or extend it if this server already holds it
+     * @param key The key
+     * @return The lease, or empty if another server holds it (or Redis is unavailable)
+     */
+    Optional<PayloadLease<K>> acquire(@Nonnull K key);
+
+    /**
+     * Check from local memory whether this server currently holds a valid lease on a key
+     * @param key The key
+     * @return True if this server owns the key
+     */
+    boolean isOwner(@Nonnull K key);
+
+    /**
+     * @param key The key
+     * @return This server's valid lease on the key, from local memory
+     */
+    Optional<PayloadLease<K>> getLease(@Nonnull K key);
+
+    /**
+     * @return Every lease held by this server
+     */
+    @Nonnull
+    Collection<PayloadLease<K>> getLeases();
+
+    /**
+     * Look up which server owns a key (reads Redis)
+     * @param key The key
+     * @return The owning server's name, or empty if nobody holds a lease
+     */
+    Optional<String> getOwner(@Nonnull K key);
+
+    /**
+     * Atomically hand this server's lease on a key over to another server, with a new token.
+     * The other server picks it up with {@link #acquire(Object)}.
+     * @param key The key
+     * @param server The name of the server taking over
+     * @return True if transferred; false if this server didn't hold the lease (anymore)
+     */
+    boolean transfer(@Nonnull K key, @Nonnull String server);
+
+    /**
+     * Give up this server's lease on a key, if it holds it
+     * @param key The key
+     */
+    void release(@Nonnull K key);
+
+    /**
+     * Renew every lease held by this server in one batch; leases that were lost are dropped.
+     * Called by the background renewal task.
+     * @return The number of leases that were lost
+     */
+    int renewAll();
+
+}
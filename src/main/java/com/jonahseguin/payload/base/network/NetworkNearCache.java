@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2019 Jonah Seguin.  All rights reserved.  You may not modify, decompile, distribute or use any code/text contained in this document(plugin) without explicit signed permission from Jonah Seguin.
+ * www.jonahseguin.com
+ */
+
+package com.jonahseguin.payload.base.network;
+
+import com.google.common.base.Preconditions;
+import lombok.Getter;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A short-lived in-process cache of encoded network payloads, so that repeated reads of the same network payload during
+ * one login/quit/save flow don't each cost a Redis round-trip.
+ * Entries are stamped with the network payload's version: an invalidation only removes entries at or below the
+ * invalidated version, and leaves a tombstone behind so that a slower, concurrent read of an older version can't
+ * re-populate the entry.
+ */
+public class NetworkNearCache<K> {
+
+    private static final int PRUNE_THRESHOLD = 1024;
+
+    private final ConcurrentMap<K, Entry> entries = new ConcurrentHashMap<>();
+    private final long expiryMillis;
+    @Getter private final AtomicLong hits = new AtomicLong(0);
+    @Getter private final AtomicLong misses = new AtomicLong(0);
+    @Getter private final AtomicLong invalidations = new AtomicLong(0);
+
+    /**
+     * @param expiryMillis How long an entry is served for, 0 to disable the near-cache
+     */
+    public NetworkNearCache(long expiryMillis) {
+        this.expiryMillis = Math.max(0, expiryMillis);
+    }
+
+    public boolean isEnabled() {
+        return expiryMillis > 0;
+    }
+
+    /**
+     * @param key Identifier
+     * @return The encoded network payload, or null if not cached (or expired/invalidated)
+     */
+    @Nullable
+    public byte[] get(@Nonnull K key) {
+        Preconditions.checkNotNull(key);
+        if (!isEnabled()) {
+            return null;
+        }
+        Entry entry = entries.get(key);
+        if (entry != null && entry.data != null && !entry.isExpired()) {
+            hits.incrementAndGet();
+            return entry.data;
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Cache an encoded network payload, unless a newer version has already been cached or invalidated
+     * @param key Identifier
+     * @param version The network payload's version
+     * @param data The encoded network payload
+     */
+    public void put(@Nonnull K key, long version, @Nonnull byte[] data) {
+        Preconditions.checkNotNull(key);
+        Preconditions.checkNotNull(data);
+        if (!isEnabled()) {
+            return;
+        }
+        Entry entry = new Entry(version, data);
+        entries.merge(key, entry, (existing, updated) -> existing.isExpired() || existing.version <= updated.version ? updated : existing);
+        prune();
+    }
+
+    /**
+     * Invalidate a key if the cached version is at or below the given version
+     * @param key Identifier
+     * @param version The version written by another node
+     */
+    public void invalidate(@Nonnull K key, long version) {
+        Preconditions.checkNotNull(key);
+        if (!isEnabled()) {
+            return;
+        }
+        invalidations.incrementAndGet();
+        Entry tombstone = new Entry(version, null);
+        entries.merge(key, tombstone, (existing, updated) -> existing.isExpired() || existing.version <= updated.version ? updated : existing);
+        prune();
+    }
+
+    /**
+     * Invalidate a key regardless of version; nothing is cached for it again until the tombstone expires
+     * @param key Identifier
+     */
+    public void invalidate(@Nonnull K key) {
+        invalidate(key, Long.MAX_VALUE);
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private void prune() {
+        if (entries.size() > PRUNE_THRESHOLD) {
+            entries.values().removeIf(Entry::isExpired);
+        }
+    }
+
+    private class Entry {
+
+        private final long version;
+        private final byte[] data;
+        private final long expiresAt;
+
+        private Entry(long version, byte[] data) {
+            this.version = version;
+            this.data = data;
+            this.expiresAt = System.currentTimeMillis() + expiryMillis;
+        }
+
+        private boolean isExpired() {
+            return System.currentTimeMillis() >= expiresAt;
+        }
+
+    }
+
+}
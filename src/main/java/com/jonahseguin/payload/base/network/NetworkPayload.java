@@ -35,6 +35,7 @@ public abstract class NetworkPayload<K> {
     @Embedded
     protected Set<String> loadedServers = new HashSet<>();
     protected String mostRecentServer;
+    protected long version = 0; // Incremented on every save; used to invalidate stale near-cached copies on other nodes
 
     @Inject
     public NetworkPayload(ServerService serverService) {
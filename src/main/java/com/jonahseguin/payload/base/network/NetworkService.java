@@ -9,7 +9,10 @@ import com.jonahseguin.payload.base.Service;
 import com.jonahseguin.payload.base.type.Payload;
 
 import javax.annotation.Nonnull;
+import java.util.Collection;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 public interface NetworkService<K, X extends Payload<K>, N extends NetworkPayload<K>> extends Service {
 
@@ -21,6 +24,78 @@ public interface NetworkService<K, X extends Payload<K>, N extends NetworkPayloa
 
     boolean save(@Nonnull N payload);
 
+    /**
+     * Async. variants, run in Payload's I/O pool
+     */
+    @Nonnull
+    CompletableFuture<Optional<N>> getAsync(@Nonnull K key);
+
+    @Nonnull
+    CompletableFuture<Map<K, N>> getAllByKeyAsync(@Nonnull Collection<K> keys);
+
+    @Nonnull
+    CompletableFuture<Boolean> saveAsync(@Nonnull N payload);
+
+    @Nonnull
+    CompletableFuture<Boolean> saveAllAsync(@Nonnull Collection<N> payloads);
+
+    /**
+     * Get the network payloads for many identifiers in one round-trip.
+     * Unlike {@link #getAll(Collection)}, network payloads that don't exist are left out rather than created.
+     * @param keys Identifiers
+     * @return Map of identifier to network payload
+     */
+    @Nonnull
+    Map<K, N> getAllByKey(@Nonnull Collection<K> keys);
+
+    /**
+     * Get the network payloads for many payloads in one round-trip.
+     * Network payloads that don't exist yet are created, but not saved.
+     * @param payloads Payloads
+     * @return Map of identifier to network payload
+     */
+    @Nonnull
+    Map<K, N> getAll(@Nonnull Collection<X> payloads);
+
+    /**
+     * Save many network payloads in one round-trip
+     * @param payloads Network payloads
+     * @return True if successful
+     */
+    boolean saveAll(@Nonnull Collection<N> payloads);
+
+    /**
+     * Drop any locally cached copy of a network payload, so the next read goes to the network
+     * @param key Identifier
+     */
+    void invalidate(@Nonnull K key);
+
+    /**
+     * Background maintenance of the network store: migrates the storage layout if configured to, and refreshes the
+     * entry counts in {@link #getStorageStats()}.  Can be slow; never call on the main thread.
+     * @return Number of entries migrated
+     */
+    int cleanup();
+
+    /**
+     * Reset the Redis expiry of network payloads that are still in use (i.e. cached on this server), so that entries
+     * of payloads that aren't being written because they haven't changed don't expire while in use
+     * @param keys Identifiers
+     * @return Number of entries whose expiry was reset
+     */
+    int touch(@Nonnull Collection<K> keys);
+
+    /**
+     * Spread the network store over a different number of shards, online.  Can be slow; never call on the main thread.
+     * @param shards New number of shards
+     * @return Number of entries moved
+     * @throws IllegalStateException If the store can't be resharded, or is already being resharded
+     */
+    int reshard(int shards);
+
+    @Nonnull
+    NetworkStorageStats getStorageStats();
+
     Optional<X> get(@Nonnull N payload);
 
     N create(@Nonnull X payload);
@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2019 Jonah Seguin.  All rights reserved.  You may not modify, decompile, distribute or use any code/text contained in this document(plugin) without explicit signed permission from Jonah Seguin.
+ * www.jonahseguin.com
+ */
+
+package com.jonahseguin.payload.base.network;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters for a cache's network payload storage in Redis
+ */
+public class NetworkStorageStats {
+
+    final AtomicLong reads = new AtomicLong(0);
+    final AtomicLong misses = new AtomicLong(0);
+    final AtomicLong writes = new AtomicLong(0);
+    final AtomicLong migrated = new AtomicLong(0);
+    final AtomicLong resharded = new AtomicLong(0);
+    volatile int shards = 0;
+    volatile int previousShards = 0;
+    volatile long liveEntries = -1;
+    volatile long legacyEntries = -1;
+    volatile long lastCleanupTimestamp = 0;
+
+    /**
+     * @return Number of network payloads read from Redis (excluding near-cache hits)
+     */
+    public long getReads() {
+        return reads.get();
+    }
+
+    /**
+     * @return Number of reads that found no entry, because it expired or was never written
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return Number of network payloads written to Redis
+     */
+    public long getWrites() {
+        return writes.get();
+    }
+
+    /**
+     * @return Number of entries moved from the legacy hash to their own key
+     */
+    public long getMigrated() {
+        return migrated.get();
+    }
+
+    /**
+     * @return Number of entries moved to another bucket by resharding on this node
+     */
+    public long getResharded() {
+        return resharded.get();
+    }
+
+    /**
+     * @return Number of hash-tag buckets entries are spread over, 0 if not sharded
+     */
+    public int getShards() {
+        return shards;
+    }
+
+    /**
+     * @return Number of buckets being resharded from, 0 if not resharding
+     */
+    public int getPreviousShards() {
+        return previousShards;
+    }
+
+    /**
+     * @return Number of unexpired entries as of the last cleanup, or -1 if not yet counted
+     */
+    public long getLiveEntries() {
+        return liveEntries;
+    }
+
+    /**
+     * @return Number of entries left in the legacy hash as of the last cleanup, or -1 if not yet counted
+     */
+    public long getLegacyEntries() {
+        return legacyEntries;
+    }
+
+    public long getLastCleanupTimestamp() {
+        return lastCleanupTimestamp;
+    }
+
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2019 Jonah Seguin.  All rights reserved.  You may not modify, decompile, distribute or use any code/text contained in this document(plugin) without explicit signed permission from Jonah Seguin.
+ * www.jonahseguin.com
+ */
+
+package com.jonahseguin.payload.base.network;
+
+import lombok.Getter;
+
+import javax.annotation.Nonnull;
+
+/**
+ * A time-limited claim of ownership of a payload key by one server, as held in local memory.
+ * The token is strictly increasing per key across owners, so it tells whether ownership moved on since a lease was
+ * seen.  Writes aren't fenced by it: saves are guarded by the payload version.
+ */
+@Getter
+public class PayloadLease<K> {
+
+    private final K key;
+    private final String owner;
+    private final long token;
+    private volatile long expiresAt; // Local clock; slightly before the expiry in Redis
+
+    PayloadLease(@Nonnull K key, @Nonnull String owner, long token, long expiresAt) {
+        this.key = key;
+        this.owner = owner;
+        this.token = token;
+        this.expiresAt = expiresAt;
+    }
+
+    /**
+     * @return True if this lease has not expired yet (from local memory)
+     */
+    public boolean isValid() {
+        return System.currentTimeMillis() < expiresAt;
+    }
+
+    void renew(long expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+
+    /**
+     * @return The value stored in Redis for this lease
+     */
+    String value() {
+        return owner + "|" + token;
+    }
+
+}
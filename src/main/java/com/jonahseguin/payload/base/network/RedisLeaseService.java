@@ -0,0 +1,229 @@
+/*
+ * Copyright (c) 2019 Jonah Seguin.  All rights reserved.  You may not modify, decompile, distribute or use any code/text contained in this document(plugin) without explicit signed permission from Jonah Seguin.
+ * www.jonahseguin.com
+ */
+
+package com.jonahseguin.payload.base.network;
+
+import com.google.common.base.Preconditions;
+import com.jonahseguin.payload.base.PayloadCache;
+import com.jonahseguin.payload.database.redis.RedisBatch;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.util.SafeEncoder;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * Leases stored as "server|token" under payload-lease:{cache:key}, with the key's token counter in
+ * payload-lease-token:{cache:key} (same hash tag, so both live in the same Redis Cluster slot).
+ * Every state change is a Lua script, so it is atomic against concurrent servers.
+ */
+public class RedisLeaseService<K> implements LeaseService<K> {
+
+    private static final long TOKEN_EXPIRY_MS = 24 * 60 * 60 * 1000; // Token counters outlive any lease by far, so tokens keep increasing
+
+    // KEYS: lease, token; ARGV: server, lease ms, token ms.  Returns the token, or -1 if held by another server
+    private static final String ACQUIRE = "local current = redis.call('GET', KEYS[1]) "
+            + "if current then "
+            + "  local owner, token = string.match(current, '^(.*)|(%d+)$') "
+            + "  if owner == ARGV[1] then redis.call('PEXPIRE', KEYS[1], ARGV[2]) return tonumber(token) end "
+            + "  return -1 "
+            + "end "
+            + "local token = redis.call('INCR', KEYS[2]) "
+            + "redis.call('PEXPIRE', KEYS[2], ARGV[3]) "
+            + "redis.call('SET', KEYS[1], ARGV[1] .. '|' .. token, 'NX', 'PX', ARGV[2]) "
+            + "return token";
+    // KEYS: lease; ARGV: value, lease ms.  Returns 1 if renewed
+    private static final String RENEW = "if redis.call('GET', KEYS[1]) == ARGV[1] then "
+            + "redis.call('PEXPIRE', KEYS[1], ARGV[2]) return 1 end return 0";
+    // KEYS: lease; ARGV: value.  Returns 1 if released
+    private static final String RELEASE = "if redis.call('GET', KEYS[1]) == ARGV[1] then "
+            + "redis.call('DEL', KEYS[1]) return 1 end return 0";
+    // KEYS: lease, token; ARGV: value, target server, lease ms, token ms.  Returns the new token, or -1 if not held
+    private static final String TRANSFER = "if redis.call('GET', KEYS[1]) == ARGV[1] then "
+            + "local token = redis.call('INCR', KEYS[2]) "
+            + "redis.call('PEXPIRE', KEYS[2], ARGV[4]) "
+            + "redis.call('SET', KEYS[1], ARGV[2] .. '|' .. token, 'PX', ARGV[3]) "
+            + "return token end return -1";
+
+    private final PayloadCache<K, ?, ?> cache;
+    private final ConcurrentMap<K, PayloadLease<K>> leases = new ConcurrentHashMap<>();
+    private boolean running = false;
+
+    public RedisLeaseService(@Nonnull PayloadCache<K, ?, ?> cache) {
+        Preconditions.checkNotNull(cache);
+        this.cache = cache;
+    }
+
+    @Override
+    public Optional<PayloadLease<K>> acquire(@Nonnull K key) {
+        Preconditions.checkNotNull(key);
+        String server = server();
+        long leaseTime = cache.getSettings().getLeaseTimeMillis();
+        long start = System.currentTimeMillis();
+        try (Jedis jedis = cache.getDatabase().getRedisResource(SafeEncoder.encode(leaseKey(key)))) {
+            Object result = jedis.eval(ACQUIRE, Arrays.asList(leaseKey(key), tokenKey(key)),
+                    Arrays.asList(server, String.valueOf(leaseTime), String.valueOf(TOKEN_EXPIRY_MS)));
+            long token = ((Number) result).longValue();
+            if (token < 0) {
+                leases.remove(key);
+                return Optional.empty();
+            }
+            PayloadLease<K> lease = leases.compute(key, (k, held) -> held != null && held.getToken() == token ? held : new PayloadLease<>(k, server, token, 0));
+            lease.renew(expiry(start, leaseTime));
+            return Optional.of(lease);
+        } catch (Exception ex) {
+            cache.getErrorService().capture(ex, "Error acquiring lease for " + cache.keyToString(key));
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    public boolean isOwner(@Nonnull K key) {
+        return getLease(key).isPresent();
+    }
+
+    @Override
+    public Optional<PayloadLease<K>> getLease(@Nonnull K key) {
+        Preconditions.checkNotNull(key);
+        PayloadLease<K> lease = leases.get(key);
+        return lease != null && lease.isValid() ? Optional.of(lease) : Optional.empty();
+    }
+
+    @Nonnull
+    @Override
+    public Collection<PayloadLease<K>> getLeases() {
+        return Collections.unmodifiableCollection(leases.values());
+    }
+
+    @Override
+    public Optional<String> getOwner(@Nonnull K key) {
+        Preconditions.checkNotNull(key);
+        try (Jedis jedis = cache.getDatabase().getRedisResource(SafeEncoder.encode(leaseKey(key)))) {
+            String value = jedis.get(leaseKey(key));
+            return value != null ? Optional.of(value.substring(0, value.lastIndexOf('|'))) : Optional.empty();
+        } catch (Exception ex) {
+            cache.getErrorService().capture(ex, "Error getting lease owner for " + cache.keyToString(key));
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    public boolean transfer(@Nonnull K key, @Nonnull String server) {
+        Preconditions.checkNotNull(key);
+        Preconditions.checkNotNull(server);
+        PayloadLease<K> lease = leases.remove(key);
+        if (lease == null) {
+            return false;
+        }
+        try (Jedis jedis = cache.getDatabase().getRedisResource(SafeEncoder.encode(leaseKey(key)))) {
+            Object result = jedis.eval(TRANSFER, Arrays.asList(leaseKey(key), tokenKey(key)),
+                    Arrays.asList(lease.value(), server, String.valueOf(cache.getSettings().getLeaseTimeMillis()), String.valueOf(TOKEN_EXPIRY_MS)));
+            return ((Number) result).longValue() >= 0;
+        } catch (Exception ex) {
+            cache.getErrorService().capture(ex, "Error transferring lease for " + cache.keyToString(key) + " to " + server);
+            return false;
+        }
+    }
+
+    @Override
+    public void release(@Nonnull K key) {
+        Preconditions.checkNotNull(key);
+        PayloadLease<K> lease = leases.remove(key);
+        if (lease == null) {
+            return;
+        }
+        try (Jedis jedis = cache.getDatabase().getRedisResource(SafeEncoder.encode(leaseKey(key)))) {
+            jedis.eval(RELEASE, Collections.singletonList(leaseKey(key)), Collections.singletonList(lease.value()));
+        } catch (Exception ex) {
+            cache.getErrorService().capture(ex, "Error releasing lease for " + cache.keyToString(key));
+        }
+    }
+
+    @Override
+    public int renewAll() {
+        if (leases.isEmpty()) {
+            return 0;
+        }
+        long leaseTime = cache.getSettings().getLeaseTimeMillis();
+        long start = System.currentTimeMillis();
+        RedisBatch batch = cache.getDatabase().createRedisBatch();
+        Map<PayloadLease<K>, Supplier<Object>> results = new LinkedHashMap<>();
+        for (PayloadLease<K> lease : leases.values()) {
+            String leaseKey = leaseKey(lease.getKey());
+            List<String> leaseArgs = Arrays.asList(lease.value(), String.valueOf(leaseTime));
+            results.put(lease, batch.add(SafeEncoder.encode(leaseKey), p -> p.eval(RENEW, Collections.singletonList(leaseKey), leaseArgs)));
+        }
+        try {
+            batch.execute();
+        } catch (Exception ex) {
+            cache.getErrorService().capture(ex, "Error renewing " + results.size() + " leases");
+            return 0; // Leases stay valid locally until they expire
+        }
+        int lost = 0;
+        long expiresAt = expiry(start, leaseTime);
+        for (Map.Entry<PayloadLease<K>, Supplier<Object>> entry : results.entrySet()) {
+            PayloadLease<K> lease = entry.getKey();
+            if (((Number) entry.getValue().get()).longValue() == 1) {
+                lease.renew(expiresAt);
+            } else if (leases.remove(lease.getKey(), lease)) {
+                lost++;
+                cache.getErrorService().debug("Lost lease for " + cache.keyToString(lease.getKey()));
+            }
+        }
+        return lost;
+    }
+
+    @Override
+    public boolean start() {
+        running = true;
+        return true;
+    }
+
+    @Override
+    public boolean shutdown() {
+        // Release everything, so other servers can take over immediately rather than after the leases expire
+        for (K key : new ArrayList<>(leases.keySet())) {
+            release(key);
+        }
+        running = false;
+        return true;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private String server() {
+        return cache.getServerService().getThisServer().getName();
+    }
+
+    private String leaseKey(K key) {
+        return "payload-lease:{" + cache.getName() + ":" + cache.keyToString(key) + "}";
+    }
+
+    private String tokenKey(K key) {
+        return "payload-lease-token:{" + cache.getName() + ":" + cache.keyToString(key) + "}";
+    }
+
+    /**
+     * The local expiry is taken from before the request was sent, minus a margin for clock drift between this
+     * server and Redis, so a lease is never considered valid locally after it expired in Redis
+     */
+    private static long expiry(long start, long leaseTime) {
+        return start + leaseTime - Math.max(leaseTime / 10, 100);
+    }
+
+}
@@ -8,19 +8,43 @@ package com.jonahseguin.payload.base.network;
 import com.google.common.base.Preconditions;
 import com.google.inject.Inject;
 import com.jonahseguin.payload.base.PayloadCache;
+import com.jonahseguin.payload.base.network.codec.MigratingNetworkCodec;
+import com.jonahseguin.payload.base.network.codec.NetworkPayloadCodec;
 import com.jonahseguin.payload.base.type.Payload;
 import com.jonahseguin.payload.database.DatabaseService;
-import com.mongodb.BasicDBObject;
+import com.jonahseguin.payload.database.redis.RedisBatch;
+import com.mongodb.DBObject;
+import lombok.Getter;
 import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.ScanParams;
+import redis.clients.jedis.ScanResult;
+import redis.clients.jedis.params.SetParams;
+import redis.clients.jedis.util.SafeEncoder;
 
 import javax.annotation.Nonnull;
-import java.util.Optional;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 public class RedisNetworkService<K, X extends Payload<K>, N extends NetworkPayload<K>, D> implements NetworkService<K, X, N> {
 
+    private static final String LAYOUT_MESSAGE = "layout";
+    private static final long RESHARD_GRACE_MS = 5000; // Time for every node to pick up a new shard layout before entries are moved
+    // KEYS: legacy hash; ARGV: field, value read.  Removes the field only if it still holds that value
+    private static final byte[] HDEL_IF_EQUAL = SafeEncoder.encode("if redis.call('HGET', KEYS[1], ARGV[1]) == ARGV[2] then "
+            + "return redis.call('HDEL', KEYS[1], ARGV[1]) end return 0");
+
     private final PayloadCache<K, X, N> cache;
     private final DatabaseService database;
     private final Class<N> type;
+    private final String origin = UUID.randomUUID().toString(); // Identifies invalidations published by this instance
+    private volatile NetworkPayloadCodec codec = null;
+    @Getter private NetworkNearCache<K> nearCache = new NetworkNearCache<>(0);
+    private final NetworkStorageStats storageStats = new NetworkStorageStats();
+    private volatile int shards = 1; // Current number of hash-tag buckets entry keys are spread over
+    private volatile int previousShards = 0; // Bucket count being resharded from, 0 if not resharding
     private boolean running = false;
 
     @Inject
@@ -33,12 +57,14 @@ public class RedisNetworkService<K, X extends Payload<K>, N extends NetworkPaylo
     @Override
     public Optional<N> get(@Nonnull K key) {
         Preconditions.checkNotNull(key);
-        try (Jedis jedis = database.getJedisResource()) {
-            String json = jedis.hget(cache.getServerSpecificName(), cache.keyToString(key));
-            if (json != null) {
-                BasicDBObject dbObject = BasicDBObject.parse(json);
-                N np = database.getMorphia().fromDBObject(database.getDatastore(), type, dbObject);
-                return Optional.ofNullable(np);
+        byte[] cached = nearCache.get(key);
+        if (cached != null) {
+            return Optional.ofNullable(decode(cached));
+        }
+        try {
+            byte[] data = read(key);
+            if (data != null && data.length > 0) {
+                return Optional.ofNullable(decodeAndCache(key, data));
             }
         } catch (Exception ex) {
             cache.getErrorService().capture(ex, "Error getting network payload in Redis Network Service");
@@ -49,11 +75,18 @@ public class RedisNetworkService<K, X extends Payload<K>, N extends NetworkPaylo
     @Override
     public Optional<N> get(@Nonnull X payload) {
         Preconditions.checkNotNull(payload);
-        try (Jedis jedis = database.getJedisResource()) {
-            String json = jedis.hget(cache.getServerSpecificName(), cache.keyToString(payload.getIdentifier()));
-            if (json != null && json.length() > 0) {
-                BasicDBObject dbObject = BasicDBObject.parse(json);
-                N np = database.getMorphia().fromDBObject(database.getDatastore(), type, dbObject);
+        byte[] cached = nearCache.get(payload.getIdentifier());
+        if (cached != null) {
+            N np = decode(cached);
+            if (np != null) {
+                np.setIdentifier(payload.getIdentifier());
+                return Optional.of(np);
+            }
+        }
+        try {
+            byte[] data = read(payload.getIdentifier());
+            if (data != null && data.length > 0) {
+                N np = decodeAndCache(payload.getIdentifier(), data);
                 if (np != null) {
                     np.setIdentifier(payload.getIdentifier());
                 }
@@ -75,10 +108,19 @@ public class RedisNetworkService<K, X extends Payload<K>, N extends NetworkPaylo
     @Override
     public boolean has(@Nonnull K key) {
         Preconditions.checkNotNull(key);
-        try (Jedis jedis = database.getJedisResource()) {
-            return jedis.hexists(cache.getServerSpecificName(), cache.keyToString(key));
+        if (nearCache.get(key) != null) {
+            return true;
+        }
+        try {
+            if (storageMode() == RedisStorageMode.HASH) {
+                RedisBatch batch = database.createRedisBatch();
+                Supplier<Boolean> exists = batch.add(hashKey(), p -> p.hexists(hashKey(), field(key)));
+                batch.execute();
+                return exists.get();
+            }
+            return read(key) != null;
         } catch (Exception ex) {
-            cache.getErrorService().capture(ex, "Error checking if hexists() in Redis Network Service: " + cache.keyToString(key));
+            cache.getErrorService().capture(ex, "Error checking if network payload exists in Redis Network Service: " + cache.keyToString(key));
         }
         return false;
     }
@@ -86,15 +128,18 @@ public class RedisNetworkService<K, X extends Payload<K>, N extends NetworkPaylo
     @Override
     public boolean save(@Nonnull N payload) {
         Preconditions.checkNotNull(payload);
-        BasicDBObject object = (BasicDBObject) database.getMorphia().toDBObject(payload);
-        if (object != null) {
-            String json = object.toJson();
-            Preconditions.checkNotNull(json, "JSON is null");
-            Preconditions.checkNotNull(cache.getServerSpecificName(), "Server specific cache name is null");
-            Preconditions.checkNotNull(payload.getIdentifier());
-            Preconditions.checkNotNull(cache.keyToString(payload.getIdentifier()), "Payload identifier key is null");
-            try (Jedis jedis = database.getJedisResource()) {
-                jedis.hset(cache.getServerSpecificName(), cache.keyToString(payload.getIdentifier()), json);
+        Preconditions.checkNotNull(cache.getServerSpecificName(), "Server specific cache name is null");
+        Preconditions.checkNotNull(payload.getIdentifier());
+        Preconditions.checkNotNull(cache.keyToString(payload.getIdentifier()), "Payload identifier key is null");
+        payload.setVersion(payload.getVersion() + 1);
+        byte[] data = encode(payload);
+        if (data != null) {
+            try {
+                RedisBatch batch = database.createRedisBatch();
+                write(batch, cache.keyToString(payload.getIdentifier()), data);
+                publishInvalidation(batch, payload);
+                batch.execute();
+                nearCache.put(payload.getIdentifier(), payload.getVersion(), data);
                 return true;
             } catch (Exception ex) {
                 cache.getErrorService().capture(ex, "Error saving in Redis Network Service: " + cache.keyToString(payload.getIdentifier()));
@@ -103,6 +148,612 @@ public class RedisNetworkService<K, X extends Payload<K>, N extends NetworkPaylo
         return false;
     }
 
+    @Nonnull
+    @Override
+    public CompletableFuture<Optional<N>> getAsync(@Nonnull K key) {
+        Preconditions.checkNotNull(key);
+        return cache.runAsync(() -> get(key));
+    }
+
+    @Nonnull
+    @Override
+    public CompletableFuture<Map<K, N>> getAllByKeyAsync(@Nonnull Collection<K> keys) {
+        Preconditions.checkNotNull(keys);
+        return cache.runAsync(() -> getAllByKey(keys));
+    }
+
+    @Nonnull
+    @Override
+    public CompletableFuture<Boolean> saveAsync(@Nonnull N payload) {
+        Preconditions.checkNotNull(payload);
+        return cache.runAsync(() -> save(payload));
+    }
+
+    @Nonnull
+    @Override
+    public CompletableFuture<Boolean> saveAllAsync(@Nonnull Collection<N> payloads) {
+        Preconditions.checkNotNull(payloads);
+        return cache.runAsync(() -> saveAll(payloads));
+    }
+
+    @Nonnull
+    @Override
+    public Map<K, N> getAllByKey(@Nonnull Collection<K> keys) {
+        Preconditions.checkNotNull(keys);
+        Map<K, N> networked = new HashMap<>();
+        getAllInto(keys, networked);
+        return networked;
+    }
+
+    @Nonnull
+    @Override
+    public Map<K, N> getAll(@Nonnull Collection<X> payloads) {
+        Preconditions.checkNotNull(payloads);
+        Map<K, N> networked = new HashMap<>();
+        if (getAllInto(payloads.stream().map(X::getIdentifier).collect(Collectors.toList()), networked)) {
+            // Only create the missing ones if the read succeeded, so existing network payloads are never overwritten
+            for (X payload : payloads) {
+                networked.computeIfAbsent(payload.getIdentifier(), key -> create(payload));
+            }
+        }
+        return networked;
+    }
+
+    /**
+     * Read the network payloads that exist for the keys into a map, from the near cache where possible, and the rest
+     * in one round-trip per Redis node
+     * @return False if the read from Redis failed
+     */
+    private boolean getAllInto(Collection<K> keys, Map<K, N> networked) {
+        if (keys.isEmpty()) {
+            return true;
+        }
+        List<K> list = new ArrayList<>(keys.size());
+        for (K key : keys) {
+            byte[] cached = nearCache.get(key);
+            N np = cached != null ? decode(cached) : null;
+            if (np != null) {
+                np.setIdentifier(key);
+                networked.put(key, np);
+            } else {
+                list.add(key);
+            }
+        }
+        if (list.isEmpty()) {
+            return true;
+        }
+        try {
+            List<byte[]> values = readAll(list.stream().map(cache::keyToString).collect(Collectors.toList()));
+            for (int i = 0; i < list.size(); i++) {
+                K key = list.get(i);
+                byte[] data = values.get(i);
+                if (data != null && data.length > 0) {
+                    N np = decodeAndCache(key, data);
+                    if (np != null) {
+                        np.setIdentifier(key);
+                        networked.put(key, np);
+                    }
+                }
+            }
+            return true;
+        } catch (Exception ex) {
+            cache.getErrorService().capture(ex, "Error getting " + list.size() + " network payloads in Redis Network Service");
+        }
+        return false;
+    }
+
+    @Override
+    public boolean saveAll(@Nonnull Collection<N> payloads) {
+        Preconditions.checkNotNull(payloads);
+        if (payloads.isEmpty()) {
+            return true;
+        }
+        Map<N, byte[]> encoded = new LinkedHashMap<>();
+        for (N payload : payloads) {
+            Preconditions.checkNotNull(payload.getIdentifier());
+            payload.setVersion(payload.getVersion() + 1);
+            byte[] data = encode(payload);
+            if (data == null) {
+                cache.getErrorService().capture("Failed to map network payload during saveAll in Redis Network Service: " + cache.keyToString(payload.getIdentifier()));
+                return false;
+            }
+            encoded.put(payload, data);
+        }
+        try {
+            RedisBatch batch = database.createRedisBatch();
+            if (storageMode() == RedisStorageMode.HASH) {
+                Map<byte[], byte[]> hash = new HashMap<>();
+                encoded.forEach((payload, data) -> hash.put(field(payload.getIdentifier()), data));
+                batch.add(hashKey(), p -> p.hmset(hashKey(), hash));
+                storageStats.writes.addAndGet(hash.size());
+            } else {
+                encoded.forEach((payload, data) -> write(batch, cache.keyToString(payload.getIdentifier()), data));
+            }
+            encoded.keySet().forEach(payload -> publishInvalidation(batch, payload));
+            batch.execute();
+            encoded.forEach((payload, data) -> nearCache.put(payload.getIdentifier(), payload.getVersion(), data));
+            return true;
+        } catch (Exception ex) {
+            cache.getErrorService().capture(ex, "Error saving " + encoded.size() + " network payloads in Redis Network Service");
+        }
+        return false;
+    }
+
+    @Override
+    public void invalidate(@Nonnull K key) {
+        Preconditions.checkNotNull(key);
+        nearCache.invalidate(key);
+    }
+
+    private String invalidationChannel() {
+        return "payload-network-" + cache.getServerSpecificName();
+    }
+
+    /**
+     * Tell every other node that this network payload was written at its current version, so they drop any older
+     * copy from their near-cache.  Sent in the same pipeline as the write, so it costs no extra round-trip.
+     * Always published, as other nodes may have the near-cache enabled even if this one doesn't.
+     */
+    private void publishInvalidation(RedisBatch batch, N payload) {
+        String message = origin + " " + payload.getVersion() + " " + cache.keyToString(payload.getIdentifier());
+        // Pub/sub is cluster-wide; route it with the entry so it rides along in a pipeline that's being sent anyway
+        batch.add(entryKey(cache.keyToString(payload.getIdentifier()), shards), p -> p.publish(invalidationChannel(), message));
+    }
+
+    private void receiveInvalidation(@Nonnull String channel, @Nonnull String message) {
+        String[] parts = message.split(" ", 3);
+        if (parts[0].equals(origin)) {
+            return; // Our own writes are already in the near-cache
+        }
+        if (parts.length == 2 && parts[1].equals(LAYOUT_MESSAGE)) {
+            cache.runAsync(this::loadLayout);
+            return;
+        }
+        if (parts.length < 3) {
+            return;
+        }
+        try {
+            nearCache.invalidate(cache.keyFromString(parts[2]), Long.parseLong(parts[1]));
+        } catch (Exception ex) {
+            cache.getErrorService().capture(ex, "Error handling network payload invalidation in Redis Network Service: " + message);
+        }
+    }
+
+    @Override
+    public int cleanup() {
+        int migrated = 0;
+        try {
+            loadLayout();
+            if (storageMode() == RedisStorageMode.MIGRATE) {
+                migrated = migrateLegacyHash();
+            }
+            RedisBatch batch = database.createRedisBatch();
+            Supplier<Long> legacy = batch.add(hashKey(), p -> p.hlen(hashKey()));
+            batch.execute();
+            storageStats.legacyEntries = legacy.get();
+            storageStats.liveEntries = storageMode() == RedisStorageMode.HASH ? legacy.get() : legacy.get() + countEntryKeys();
+            storageStats.lastCleanupTimestamp = System.currentTimeMillis();
+        } catch (Exception ex) {
+            cache.getErrorService().capture(ex, "Error during cleanup in Redis Network Service");
+        }
+        return migrated;
+    }
+
+    @Override
+    public int touch(@Nonnull Collection<K> keys) {
+        Preconditions.checkNotNull(keys);
+        int expiry = cache.getSettings().getRedisExpiryTimeSeconds();
+        if (keys.isEmpty() || expiry <= 0 || storageMode() == RedisStorageMode.HASH) {
+            return 0; // Nothing expires
+        }
+        int shards = this.shards;
+        int touched = 0;
+        try {
+            RedisBatch batch = database.createRedisBatch();
+            List<Supplier<Long>> results = new ArrayList<>(keys.size());
+            for (K key : keys) {
+                byte[] entryKey = entryKey(cache.keyToString(key), shards);
+                results.add(batch.add(entryKey, p -> p.expire(entryKey, expiry)));
+            }
+            batch.execute();
+            for (Supplier<Long> result : results) {
+                if (result.get() == 1) {
+                    touched++;
+                }
+            }
+        } catch (Exception ex) {
+            cache.getErrorService().capture(ex, "Error resetting the expiry of " + keys.size() + " network payloads in Redis Network Service");
+        }
+        return touched;
+    }
+
+    /**
+     * Spread entry keys over a different number of hash-tag buckets, online: every node is told the new layout first, and
+     * until the move finishes, reads fall back to the old bucket and writes remove the old key.
+     * Blocks until every entry has been moved; never call on the main thread.
+     * @param shards New number of buckets
+     * @return Number of entries moved
+     */
+    @Override
+    public int reshard(int shards) {
+        Preconditions.checkArgument(shards > 0, "Shards must be at least 1");
+        Preconditions.checkState(storageMode() != RedisStorageMode.HASH, "Cache " + cache.getName() + " uses the single-hash layout, which is not sharded");
+        loadLayout();
+        Preconditions.checkState(previousShards == 0, "Cache " + cache.getName() + " is already being resharded from " + previousShards + " to " + this.shards + " shards");
+        int from = this.shards;
+        if (shards == from) {
+            return 0;
+        }
+        saveLayout(shards, from);
+        try {
+            Thread.sleep(RESHARD_GRACE_MS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while resharding cache " + cache.getName() + "; run the reshard again to finish it", ex);
+        }
+        int moved = 0;
+        for (JedisPool node : database.getRedisNodes()) {
+            try (Jedis jedis = node.getResource()) {
+                ScanParams params = new ScanParams().match(SafeEncoder.encode(escapeGlob(entryKeyPrefix()) + "*")).count(Math.max(1, cache.getSettings().getSaveBatchSize()));
+                byte[] cursor = ScanParams.SCAN_POINTER_START_BINARY;
+                do {
+                    ScanResult<byte[]> result = jedis.scan(cursor, params);
+                    moved += moveToBucket(result.getResult(), shards);
+                    cursor = result.getCursorAsBytes();
+                } while (!Arrays.equals(cursor, ScanParams.SCAN_POINTER_START_BINARY));
+            }
+        }
+        saveLayout(shards, 0);
+        storageStats.resharded.addAndGet(moved);
+        return moved;
+    }
+
+    /**
+     * Move entries to their bucket in the new layout.  An entry already present in the new bucket was written after
+     * the reshard started, so it is kept and the old one dropped.
+     */
+    private int moveToBucket(List<byte[]> keys, int shards) {
+        Map<byte[], byte[]> moves = new LinkedHashMap<>();
+        for (byte[] key : keys) {
+            String id = idFromEntryKey(SafeEncoder.encode(key));
+            if (id != null) {
+                byte[] target = entryKey(id, shards);
+                if (!Arrays.equals(key, target)) {
+                    moves.put(key, target);
+                }
+            }
+        }
+        if (moves.isEmpty()) {
+            return 0;
+        }
+        RedisBatch read = database.createRedisBatch();
+        Map<byte[], Supplier<byte[]>> values = new LinkedHashMap<>();
+        Map<byte[], Supplier<Long>> ttls = new LinkedHashMap<>();
+        for (byte[] key : moves.keySet()) {
+            values.put(key, read.add(key, p -> p.get(key)));
+            ttls.put(key, read.add(key, p -> p.pttl(key)));
+        }
+        read.execute();
+        RedisBatch write = database.createRedisBatch();
+        int moved = 0;
+        for (Map.Entry<byte[], byte[]> move : moves.entrySet()) {
+            byte[] value = values.get(move.getKey()).get();
+            long ttl = ttls.get(move.getKey()).get();
+            if (value != null) {
+                SetParams params = SetParams.setParams().nx();
+                if (ttl > 0) {
+                    params.px(ttl);
+                }
+                write.add(move.getValue(), p -> p.set(move.getValue(), value, params));
+                moved++;
+            }
+            write.add(move.getKey(), p -> p.del(move.getKey()));
+        }
+        write.execute();
+        return moved;
+    }
+
+    @Nonnull
+    @Override
+    public NetworkStorageStats getStorageStats() {
+        return storageStats;
+    }
+
+    private RedisStorageMode storageMode() {
+        return cache.getSettings().getRedisStorageMode();
+    }
+
+    /**
+     * Load the shard layout shared by every node, storing the configured shard count if this is the first node to use it
+     */
+    private void loadLayout() {
+        if (storageMode() == RedisStorageMode.HASH) {
+            return;
+        }
+        byte[] key = layoutKey();
+        RedisBatch batch = database.createRedisBatch();
+        batch.add(key, p -> p.hsetnx(key, SafeEncoder.encode("shards"), SafeEncoder.encode(Math.max(1, cache.getSettings().getRedisShards()) + "")));
+        Supplier<byte[]> current = batch.add(key, p -> p.hget(key, SafeEncoder.encode("shards")));
+        Supplier<byte[]> previous = batch.add(key, p -> p.hget(key, SafeEncoder.encode("previous")));
+        batch.execute();
+        this.shards = Integer.parseInt(SafeEncoder.encode(current.get()));
+        this.previousShards = previous.get() != null ? Integer.parseInt(SafeEncoder.encode(previous.get())) : 0;
+        storageStats.shards = this.shards;
+        storageStats.previousShards = this.previousShards;
+    }
+
+    private void saveLayout(int shards, int previous) {
+        byte[] key = layoutKey();
+        RedisBatch batch = database.createRedisBatch();
+        batch.add(key, p -> p.hset(key, SafeEncoder.encode("shards"), SafeEncoder.encode(shards + "")));
+        if (previous > 0) {
+            batch.add(key, p -> p.hset(key, SafeEncoder.encode("previous"), SafeEncoder.encode(previous + "")));
+        } else {
+            batch.add(key, p -> p.hdel(key, SafeEncoder.encode("previous")));
+        }
+        batch.add(key, p -> p.publish(invalidationChannel(), origin + " " + LAYOUT_MESSAGE));
+        batch.execute();
+        this.shards = shards;
+        this.previousShards = previous;
+        storageStats.shards = shards;
+        storageStats.previousShards = previous;
+    }
+
+    private byte[] read(K key) {
+        return readAll(Collections.singletonList(cache.keyToString(key))).get(0);
+    }
+
+    /**
+     * Read entries in one round-trip per Redis node.
+     * Entry keys are read with one MGET per hash-tag bucket, as keys sharing a bucket are always in the same slot.
+     */
+    private List<byte[]> readAll(List<String> keys) {
+        RedisStorageMode mode = storageMode();
+        int shards = this.shards;
+        int previous = this.previousShards;
+        RedisBatch batch = database.createRedisBatch();
+        List<Supplier<byte[]>> legacy = new ArrayList<>();
+        List<Supplier<byte[]>> current = new ArrayList<>();
+        List<Supplier<byte[]>> old = new ArrayList<>();
+        if (mode != RedisStorageMode.KEYS) {
+            byte[][] fields = keys.stream().map(SafeEncoder::encode).toArray(byte[][]::new);
+            Supplier<List<byte[]>> values = batch.add(hashKey(), p -> p.hmget(hashKey(), fields));
+            for (int i = 0; i < keys.size(); i++) {
+                int index = i;
+                legacy.add(() -> values.get().get(index));
+            }
+        }
+        if (mode != RedisStorageMode.HASH) {
+            current = getByBucket(batch, keys, shards);
+            if (previous > 0 && previous != shards) {
+                old = getByBucket(batch, keys, previous);
+            }
+        }
+        batch.execute();
+        List<byte[]> values = new ArrayList<>(keys.size());
+        Map<String, byte[]> move = new LinkedHashMap<>();
+        for (int i = 0; i < keys.size(); i++) {
+            byte[] value = null;
+            if (!legacy.isEmpty()) {
+                value = legacy.get(i).get();
+                if (value != null && mode == RedisStorageMode.MIGRATE) {
+                    // Only a node still on the legacy layout writes to the hash, so this is the most recent copy
+                    move.put(keys.get(i), value);
+                }
+            }
+            if (value == null && !current.isEmpty()) {
+                value = current.get(i).get();
+            }
+            if (value == null && !old.isEmpty()) {
+                value = old.get(i).get();
+            }
+            values.add(count(value));
+        }
+        moveToKeys(move);
+        return values;
+    }
+
+    private List<Supplier<byte[]>> getByBucket(RedisBatch batch, List<String> keys, int shards) {
+        Map<Integer, List<Integer>> buckets = new HashMap<>();
+        for (int i = 0; i < keys.size(); i++) {
+            buckets.computeIfAbsent(bucket(keys.get(i), shards), b -> new ArrayList<>()).add(i);
+        }
+        List<Supplier<byte[]>> results = new ArrayList<>(Collections.nCopies(keys.size(), null));
+        buckets.forEach((bucket, indexes) -> {
+            byte[][] entryKeys = indexes.stream().map(i -> entryKey(keys.get(i), shards)).toArray(byte[][]::new);
+            Supplier<List<byte[]>> values = batch.add(entryKeys[0], p -> p.mget(entryKeys));
+            for (int j = 0; j < indexes.size(); j++) {
+                int index = j;
+                results.set(indexes.get(j), () -> values.get().get(index));
+            }
+        });
+        return results;
+    }
+
+    private void write(RedisBatch batch, String key, byte[] data) {
+        storageStats.writes.incrementAndGet();
+        if (storageMode() == RedisStorageMode.HASH) {
+            batch.add(hashKey(), p -> p.hset(hashKey(), SafeEncoder.encode(key), data));
+            return;
+        }
+        byte[] entryKey = entryKey(key, shards);
+        setEntry(batch, entryKey, data);
+        int previous = this.previousShards;
+        if (previous > 0 && previous != shards) {
+            byte[] old = entryKey(key, previous);
+            if (!Arrays.equals(old, entryKey)) { // Same bucket under both shard counts: that's the entry just written
+                batch.add(old, p -> p.del(old));
+            }
+        }
+        if (storageMode() == RedisStorageMode.MIGRATE) {
+            batch.add(hashKey(), p -> p.hdel(hashKey(), SafeEncoder.encode(key)));
+        }
+    }
+
+    private void setEntry(RedisBatch batch, byte[] key, byte[] data) {
+        int expiry = cache.getSettings().getRedisExpiryTimeSeconds();
+        if (expiry > 0) {
+            batch.add(key, p -> p.setex(key, expiry, data));
+        } else {
+            batch.add(key, p -> p.set(key, data));
+        }
+    }
+
+    /**
+     * Move entries read from the legacy hash to their own keys.  The hash and the entry keys are in different cluster
+     * slots, so this can't be one script: a field is first removed from the hash only if it still holds the value that
+     * was read, and only the removed values are then written, with NX, so an entry another node wrote in the meantime
+     * (the newer copy) is never overwritten.
+     * @param entries Id to value read from the hash
+     * @return Number of entries moved
+     */
+    private int moveToKeys(Map<String, byte[]> entries) {
+        if (entries.isEmpty()) {
+            return 0;
+        }
+        RedisBatch deletes = database.createRedisBatch();
+        Map<String, Supplier<Object>> deleted = new LinkedHashMap<>();
+        entries.forEach((key, data) -> {
+            List<byte[]> args = Arrays.asList(SafeEncoder.encode(key), data);
+            deleted.put(key, deletes.add(hashKey(), p -> p.eval(HDEL_IF_EQUAL, Collections.singletonList(hashKey()), args)));
+        });
+        deletes.execute();
+        int moved = 0;
+        RedisBatch writes = database.createRedisBatch();
+        int expiry = cache.getSettings().getRedisExpiryTimeSeconds();
+        for (Map.Entry<String, Supplier<Object>> entry : deleted.entrySet()) {
+            if (((Number) entry.getValue().get()).longValue() == 1) {
+                byte[] key = entryKey(entry.getKey(), shards);
+                byte[] data = entries.get(entry.getKey());
+                SetParams params = expiry > 0 ? SetParams.setParams().nx().ex(expiry) : SetParams.setParams().nx();
+                writes.add(key, p -> p.set(key, data, params));
+                moved++;
+            }
+        }
+        writes.execute();
+        storageStats.migrated.addAndGet(moved);
+        return moved;
+    }
+
+    /**
+     * Move every entry of the legacy hash to its own key, in batches of {@link com.jonahseguin.payload.base.settings.CacheSettings#getSaveBatchSize()}
+     * @return Number of entries moved
+     */
+    private int migrateLegacyHash() {
+        int migrated = 0;
+        ScanParams params = new ScanParams().count(Math.max(1, cache.getSettings().getSaveBatchSize()));
+        byte[] cursor = ScanParams.SCAN_POINTER_START_BINARY;
+        try (Jedis jedis = database.getRedisResource(hashKey())) {
+            do {
+                ScanResult<Map.Entry<byte[], byte[]>> result = jedis.hscan(hashKey(), cursor, params);
+                if (!result.getResult().isEmpty()) {
+                    Map<String, byte[]> entries = new LinkedHashMap<>();
+                    for (Map.Entry<byte[], byte[]> entry : result.getResult()) {
+                        entries.put(SafeEncoder.encode(entry.getKey()), entry.getValue());
+                    }
+                    migrated += moveToKeys(entries);
+                }
+                cursor = result.getCursorAsBytes();
+            } while (!Arrays.equals(cursor, ScanParams.SCAN_POINTER_START_BINARY));
+        }
+        return migrated;
+    }
+
+    private long countEntryKeys() {
+        long count = 0;
+        ScanParams params = new ScanParams().match(SafeEncoder.encode(escapeGlob(entryKeyPrefix()) + "*")).count(1000);
+        for (JedisPool node : database.getRedisNodes()) {
+            try (Jedis jedis = node.getResource()) {
+                byte[] cursor = ScanParams.SCAN_POINTER_START_BINARY;
+                do {
+                    ScanResult<byte[]> result = jedis.scan(cursor, params);
+                    count += result.getResult().size();
+                    cursor = result.getCursorAsBytes();
+                } while (!Arrays.equals(cursor, ScanParams.SCAN_POINTER_START_BINARY));
+            }
+        }
+        return count;
+    }
+
+    private byte[] count(byte[] value) {
+        storageStats.reads.incrementAndGet();
+        if (value == null || value.length == 0) {
+            storageStats.misses.incrementAndGet();
+        }
+        return value;
+    }
+
+    private byte[] hashKey() {
+        return SafeEncoder.encode(cache.getServerSpecificName());
+    }
+
+    private byte[] field(K key) {
+        return SafeEncoder.encode(cache.keyToString(key));
+    }
+
+    private byte[] layoutKey() {
+        return SafeEncoder.encode("payload-network-layout:" + cache.getServerSpecificName());
+    }
+
+    private String entryKeyPrefix() {
+        return "payload-network:{" + cache.getServerSpecificName() + ":";
+    }
+
+    /**
+     * Key of an entry: payload-network:{cache:bucket}:id.  The {hash tag} keeps every entry of a bucket in one cluster slot,
+     * so buckets (rather than the whole cache) are spread over the cluster's nodes.
+     */
+    private byte[] entryKey(String key, int shards) {
+        return SafeEncoder.encode(entryKeyPrefix() + bucket(key, shards) + "}:" + key);
+    }
+
+    private String idFromEntryKey(String entryKey) {
+        String prefix = entryKeyPrefix();
+        int end = entryKey.indexOf("}:", prefix.length());
+        if (!entryKey.startsWith(prefix) || end < 0) {
+            return null;
+        }
+        String bucket = entryKey.substring(prefix.length(), end);
+        if (bucket.isEmpty() || !bucket.chars().allMatch(Character::isDigit)) {
+            return null; // Another cache whose name starts with this cache's name
+        }
+        return entryKey.substring(end + 2);
+    }
+
+    private static int bucket(String key, int shards) {
+        return Math.floorMod(key.hashCode(), shards);
+    }
+
+    private static String escapeGlob(String pattern) {
+        return pattern.replaceAll("([*?\\[\\]\\\\])", "\\\\$1");
+    }
+
+    private NetworkPayloadCodec codec() {
+        NetworkPayloadCodec c = codec;
+        if (c == null) {
+            c = new MigratingNetworkCodec(cache.getSettings().getNetworkCodec().createCodec());
+            codec = c;
+        }
+        return c;
+    }
+
+    private byte[] encode(N payload) {
+        DBObject object = database.getMorphia().toDBObject(payload);
+        return object != null ? codec().encode(object) : null;
+    }
+
+    private N decodeAndCache(K key, byte[] data) {
+        N np = decode(data);
+        if (np != null) {
+            nearCache.put(key, np.getVersion(), data);
+        }
+        return np;
+    }
+
+    private N decode(byte[] data) {
+        return database.getMorphia().fromDBObject(database.getDatastore(), type, codec().decode(data));
+    }
+
     @Override
     public Optional<X> get(@Nonnull N payload) {
         Preconditions.checkNotNull(payload);
@@ -120,12 +771,23 @@ public class RedisNetworkService<K, X extends Payload<K>, N extends NetworkPaylo
     @Override
     public boolean start() {
         running = true;
+        try {
+            loadLayout();
+        } catch (Exception ex) {
+            cache.getErrorService().capture(ex, "Error loading shard layout in Redis Network Service");
+            return false;
+        }
+        nearCache = new NetworkNearCache<>(cache.getSettings().getNetworkNearCacheMillis());
+        // Also carries layout changes, so always subscribed
+        database.getPubSubService().subscribe(invalidationChannel(), this::receiveInvalidation);
         return true;
     }
 
     @Override
     public boolean shutdown() {
         running = false;
+        database.getPubSubService().unsubscribe(invalidationChannel());
+        nearCache.clear();
         return true;
     }
 
@@ -0,0 +1,30 @@
+/*
+ * Copyright (c) 2019 Jonah Seguin.  All rights reserved.  You may not modify, decompile, distribute or use any code/text contained in this document(plugin) without explicit signed permission from Jonah Seguin.
+ * www.jonahseguin.com
+ */
+
+package com.jonahseguin.payload.base.network;
+
+/**
+ * How network payloads are laid out in Redis.
+ * To move an existing network from {@link #HASH} to {@link #KEYS}: switch every node to {@link #MIGRATE}, wait until
+ * the legacy hash is empty (see /payload cache), then switch every node to {@link #KEYS}.
+ */
+public enum RedisStorageMode {
+
+    /**
+     * Legacy layout: one Redis hash per cache, one field per network payload.  Entries never expire.
+     */
+    HASH,
+    /**
+     * Writes go to per-payload keys with a TTL; reads check both layouts in one round-trip, preferring the legacy hash
+     * entry (which can only have been written by a node still using {@link #HASH}) and moving it to its own key.
+     * The legacy hash is also drained in the background.
+     */
+    MIGRATE,
+    /**
+     * One Redis key per network payload, expiring after the cache's redis expiry time since it was last written.
+     */
+    KEYS
+
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 2019 Jonah Seguin.  All rights reserved.  You may not modify, decompile, distribute or use any code/text contained in this document(plugin) without explicit signed permission from Jonah Seguin.
+ * www.jonahseguin.com
+ */
+
+package com.jonahseguin.payload.base.network.codec;
+
+import com.mongodb.DBObject;
+import com.mongodb.DBObjectCodec;
+import com.mongodb.MongoClient;
+import org.bson.BsonBinaryReader;
+import org.bson.BsonBinaryWriter;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.io.BasicOutputBuffer;
+
+import javax.annotation.Nonnull;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Raw BSON wire format: smaller than JSON and without text parsing
+ */
+public class BsonNetworkCodec implements NetworkPayloadCodec {
+
+    private final DBObjectCodec codec = new DBObjectCodec(MongoClient.getDefaultCodecRegistry());
+
+    @Nonnull
+    @Override
+    public byte[] encode(@Nonnull DBObject document) {
+        BasicOutputBuffer buffer = new BasicOutputBuffer(256);
+        try (BsonBinaryWriter writer = new BsonBinaryWriter(buffer)) {
+            codec.encode(writer, document, EncoderContext.builder().build());
+        }
+        return buffer.toByteArray();
+    }
+
+    @Nonnull
+    @Override
+    public DBObject decode(@Nonnull byte[] data) {
+        try (BsonBinaryReader reader = new BsonBinaryReader(ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN))) {
+            return codec.decode(reader, DecoderContext.builder().build());
+        }
+    }
+
+}
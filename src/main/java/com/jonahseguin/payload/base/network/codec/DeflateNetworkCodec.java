@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2019 Jonah Seguin.  All rights reserved.  You may not modify, decompile, distribute or use any code/text contained in this document(plugin) without explicit signed permission from Jonah Seguin.
+ * www.jonahseguin.com
+ */
+
+package com.jonahseguin.payload.base.network.codec;
+
+import com.google.common.base.Preconditions;
+import com.mongodb.DBObject;
+
+import javax.annotation.Nonnull;
+import java.io.ByteArrayOutputStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Deflate-compresses the output of another codec; used where a whole payload travels in a message (i.e. handshake
+ * replies), as repetitive field names and values compress well.
+ */
+public class DeflateNetworkCodec implements NetworkPayloadCodec {
+
+    private final NetworkPayloadCodec codec;
+
+    public DeflateNetworkCodec(@Nonnull NetworkPayloadCodec codec) {
+        Preconditions.checkNotNull(codec);
+        this.codec = codec;
+    }
+
+    @Nonnull
+    @Override
+    public byte[] encode(@Nonnull DBObject document) {
+        byte[] data = codec.encode(document);
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, data.length / 2));
+            byte[] buffer = new byte[4096];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    @Nonnull
+    @Override
+    public DBObject decode(@Nonnull byte[] data) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length * 3);
+            byte[] buffer = new byte[4096];
+            while (!inflater.finished()) {
+                int n = inflater.inflate(buffer);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IllegalArgumentException("Truncated deflate data");
+                }
+                out.write(buffer, 0, n);
+            }
+            return codec.decode(out.toByteArray());
+        } catch (DataFormatException ex) {
+            throw new IllegalArgumentException("Invalid deflate data", ex);
+        } finally {
+            inflater.end();
+        }
+    }
+
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright (c) 2019 Jonah Seguin.  All rights reserved.  You may not modify, decompile, distribute or use any code/text contained in this document(plugin) without explicit signed permission from Jonah Seguin.
+ * www.jonahseguin.com
+ */
+
+package com.jonahseguin.payload.base.network.codec;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
+
+import javax.annotation.Nonnull;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The original (extended JSON) wire format.  Readable by every version of Payload.
+ */
+public class JsonNetworkCodec implements NetworkPayloadCodec {
+
+    @Nonnull
+    @Override
+    public byte[] encode(@Nonnull DBObject document) {
+        BasicDBObject object = document instanceof BasicDBObject ? (BasicDBObject) document : new BasicDBObject(document.toMap());
+        return object.toJson().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Nonnull
+    @Override
+    public DBObject decode(@Nonnull byte[] data) {
+        return BasicDBObject.parse(new String(data, StandardCharsets.UTF_8));
+    }
+
+}
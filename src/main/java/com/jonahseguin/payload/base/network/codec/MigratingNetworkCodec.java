@@ -0,0 +1,45 @@
+/*
+ * Copyright (c) 2019 Jonah Seguin.  All rights reserved.  You may not modify, decompile, distribute or use any code/text contained in this document(plugin) without explicit signed permission from Jonah Seguin.
+ * www.jonahseguin.com
+ */
+
+package com.jonahseguin.payload.base.network.codec;
+
+import com.google.common.base.Preconditions;
+import com.mongodb.DBObject;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Writes with the configured codec, but reads both JSON and BSON so that values written by nodes on either format
+ * (or before the format was changed) stay readable.
+ * A BSON document always ends with a 0x00 terminator, which JSON text never does.
+ */
+public class MigratingNetworkCodec implements NetworkPayloadCodec {
+
+    private final NetworkPayloadCodec writer;
+    private final JsonNetworkCodec json = new JsonNetworkCodec();
+    private final BsonNetworkCodec bson = new BsonNetworkCodec();
+
+    public MigratingNetworkCodec(@Nonnull NetworkPayloadCodec writer) {
+        Preconditions.checkNotNull(writer);
+        this.writer = writer;
+    }
+
+    @Nonnull
+    @Override
+    public byte[] encode(@Nonnull DBObject document) {
+        return writer.encode(document);
+    }
+
+    @Nonnull
+    @Override
+    public DBObject decode(@Nonnull byte[] data) {
+        return isJson(data) ? json.decode(data) : bson.decode(data);
+    }
+
+    static boolean isJson(byte[] data) {
+        return data.length > 0 && data[data.length - 1] != 0;
+    }
+
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright (c) 2019 Jonah Seguin.  All rights reserved.  You may not modify, decompile, distribute or use any code/text contained in this document(plugin) without explicit signed permission from Jonah Seguin.
+ * www.jonahseguin.com
+ */
+
+package com.jonahseguin.payload.base.network.codec;
+
+import javax.annotation.Nonnull;
+
+/**
+ * The wire format used to write network payloads to Redis.  Both formats are always readable.
+ */
+public enum NetworkCodecType {
+
+    /**
+     * Extended JSON, readable by older versions of Payload
+     */
+    JSON {
+        @Nonnull
+        @Override
+        public NetworkPayloadCodec createCodec() {
+            return new JsonNetworkCodec();
+        }
+    },
+
+    /**
+     * Raw BSON: compact and faster to read/write.  Only enable once every node on the network reads BSON.
+     */
+    BSON {
+        @Nonnull
+        @Override
+        public NetworkPayloadCodec createCodec() {
+            return new BsonNetworkCodec();
+        }
+    };
+
+    @Nonnull
+    public abstract NetworkPayloadCodec createCodec();
+
+}
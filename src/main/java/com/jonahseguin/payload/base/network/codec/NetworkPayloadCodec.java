@@ -0,0 +1,23 @@
+/*
+ * Copyright (c) 2019 Jonah Seguin.  All rights reserved.  You may not modify, decompile, distribute or use any code/text contained in this document(plugin) without explicit signed permission from Jonah Seguin.
+ * www.jonahseguin.com
+ */
+
+package com.jonahseguin.payload.base.network.codec;
+
+import com.mongodb.DBObject;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Wire format for a mapped {@link com.jonahseguin.payload.base.network.NetworkPayload} stored as a Redis hash field
+ */
+public interface NetworkPayloadCodec {
+
+    @Nonnull
+    byte[] encode(@Nonnull DBObject document);
+
+    @Nonnull
+    DBObject decode(@Nonnull byte[] data);
+
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2019 Jonah Seguin.  All rights reserved.  You may not modify, decompile, distribute or use any code/text contained in this document(plugin) without explicit signed permission from Jonah Seguin.
+ * www.jonahseguin.com
+ */
+
+package com.jonahseguin.payload.base.pubsub;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Message counters for a single pub/sub channel
+ */
+public class ChannelStats {
+
+    private static final long WINDOW_MS = TimeUnit.SECONDS.toMillis(10);
+
+    private final AtomicLong messages = new AtomicLong(0);
+    private volatile long lastMessageTimestamp = 0;
+    private long windowStart = System.currentTimeMillis();
+    private long windowMessages = 0;
+    private volatile double rate = 0;
+
+    synchronized void record() {
+        long now = System.currentTimeMillis();
+        roll(now);
+        windowMessages++;
+        messages.incrementAndGet();
+        lastMessageTimestamp = now;
+    }
+
+    private void roll(long now) {
+        long elapsed = now - windowStart;
+        if (elapsed >= WINDOW_MS) {
+            // An idle period spanning several windows counts as a zero rate
+            rate = elapsed >= WINDOW_MS * 2 ? 0 : (windowMessages * 1000D) / elapsed;
+            windowStart = now;
+            windowMessages = 0;
+        }
+    }
+
+    /**
+     * @return Total messages received on this channel
+     */
+    public long getMessages() {
+        return messages.get();
+    }
+
+    public long getLastMessageTimestamp() {
+        return lastMessageTimestamp;
+    }
+
+    /**
+     * @return Messages per second over the last complete 10 second window
+     */
+    public synchronized double getRate() {
+        roll(System.currentTimeMillis());
+        return rate;
+    }
+
+}
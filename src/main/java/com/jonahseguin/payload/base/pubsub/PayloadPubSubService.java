@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2019 Jonah Seguin.  All rights reserved.  You may not modify, decompile, distribute or use any code/text contained in this document(plugin) without explicit signed permission from Jonah Seguin.
+ * www.jonahseguin.com
+ */
+
+package com.jonahseguin.payload.base.pubsub;
+
+import com.google.common.base.Preconditions;
+import com.google.inject.Inject;
+import com.jonahseguin.payload.annotation.Database;
+import com.jonahseguin.payload.base.error.ErrorService;
+import com.jonahseguin.payload.base.executor.PayloadExecutor;
+import com.jonahseguin.payload.base.executor.PayloadPool;
+import com.jonahseguin.payload.database.DatabaseService;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPubSub;
+
+import javax.annotation.Nonnull;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+public class PayloadPubSubService implements PubSubService {
+
+    private static final long MIN_RECONNECT_DELAY_MS = 500;
+    private static final long MAX_RECONNECT_DELAY_MS = 30000;
+
+    private final String name;
+    private final DatabaseService database;
+    private final PayloadExecutor executor;
+    private final ErrorService error;
+    private final String controlChannel;
+    private final ConcurrentMap<String, PubSubListener> listeners = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, ChannelStats> stats = new ConcurrentHashMap<>();
+    private final Object writeLock = new Object();
+    private volatile Subscriber subscriber = null;
+    private volatile boolean running = false;
+
+    @Inject
+    public PayloadPubSubService(DatabaseService database, PayloadExecutor executor, @Database ErrorService error, @Database String name) {
+        this.database = database;
+        this.executor = executor;
+        this.error = error;
+        this.name = name;
+        // Jedis requires at least one channel to subscribe; this one keeps the connection open while nothing else is subscribed
+        this.controlChannel = "payload-pubsub-" + name;
+    }
+
+    @Override
+    public boolean start() {
+        Preconditions.checkState(!running, "Pub/sub service for database " + name + " is already running");
+        running = true;
+        executor.longRunning("pubsub-" + name, this::listen);
+        return true;
+    }
+
+    @Override
+    public boolean shutdown() {
+        running = false;
+        Subscriber s = subscriber;
+        if (s != null && s.isSubscribed()) {
+            synchronized (writeLock) {
+                s.unsubscribe();
+            }
+        }
+        listeners.clear();
+        return true;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public void subscribe(@Nonnull String channel, @Nonnull PubSubListener listener) {
+        Preconditions.checkNotNull(channel);
+        Preconditions.checkNotNull(listener);
+        stats.putIfAbsent(channel, new ChannelStats());
+        if (listeners.put(channel, listener) == null) {
+            Subscriber s = subscriber;
+            if (s != null && s.isSubscribed()) {
+                synchronized (writeLock) {
+                    s.subscribe(channel);
+                }
+            }
+            // else: subscribed with all registered channels once the connection is (re-)established
+        }
+    }
+
+    @Override
+    public void unsubscribe(@Nonnull String channel) {
+        Preconditions.checkNotNull(channel);
+        if (listeners.remove(channel) != null) {
+            Subscriber s = subscriber;
+            if (s != null && s.isSubscribed()) {
+                synchronized (writeLock) {
+                    s.unsubscribe(channel);
+                }
+            }
+        }
+    }
+
+    @Override
+    public boolean isConnected() {
+        Subscriber s = subscriber;
+        return s != null && s.connected;
+    }
+
+    @Nonnull
+    @Override
+    public Map<String, ChannelStats> getChannelStats() {
+        return Collections.unmodifiableMap(stats);
+    }
+
+    @Nonnull
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    private void listen() {
+        PayloadPool.disallowCallerRuns(); // Listeners hand work to the pools from this thread; it must never run it
+        long delay = MIN_RECONNECT_DELAY_MS;
+        while (running) {
+            Subscriber s = new Subscriber();
+            try (Jedis jedis = database.getJedisResource()) {
+                subscriber = s;
+                jedis.subscribe(s, controlChannel); // Blocks until unsubscribed or the connection drops
+            } catch (Exception ex) {
+                if (running) {
+                    error.capture(ex, "Redis pub/sub connection lost for database " + name + "; reconnecting in " + delay + "ms");
+                }
+            } finally {
+                s.connected = false;
+                subscriber = null;
+            }
+            if (!running) {
+                break;
+            }
+            delay = s.established ? MIN_RECONNECT_DELAY_MS : Math.min(delay * 2, MAX_RECONNECT_DELAY_MS);
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+    }
+
+    private class Subscriber extends JedisPubSub {
+
+        private volatile boolean connected = false;
+        private volatile boolean established = false;
+
+        @Override
+        public void onSubscribe(String channel, int subscribedChannels) {
+            if (channel.equals(controlChannel) && !established) {
+                connected = true;
+                established = true;
+                if (!listeners.isEmpty()) {
+                    // (Re-)subscribe to every registered channel on the new connection
+                    synchronized (writeLock) {
+                        subscribe(listeners.keySet().toArray(new String[0]));
+                    }
+                }
+            }
+        }
+
+        @Override
+        public void onMessage(String channel, String message) {
+            ChannelStats channelStats = stats.get(channel);
+            if (channelStats != null) {
+                channelStats.record();
+            }
+            PubSubListener listener = listeners.get(channel);
+            if (listener != null) {
+                try {
+                    listener.onMessage(channel, message);
+                } catch (Exception ex) {
+                    error.capture(ex, "Error handling pub/sub message on channel " + channel);
+                }
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,19 @@
+/*
+ * Copyright (c) 2019 Jonah Seguin.  All rights reserved.  You may not modify, decompile, distribute or use any code/text contained in this document(plugin) without explicit signed permission from Jonah Seguin.
+ * www.jonahseguin.com
+ */
+
+package com.jonahseguin.payload.base.pubsub;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Receives messages for a channel from the {@link PubSubService}.
+ * Called on the subscriber thread: implementations must hand any blocking work off to the executor.
+ */
+@FunctionalInterface
+public interface PubSubListener {
+
+    void onMessage(@Nonnull String channel, @Nonnull String message);
+
+}
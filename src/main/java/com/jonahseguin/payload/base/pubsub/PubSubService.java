@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2019 Jonah Seguin.  All rights reserved.  You may not modify, decompile, distribute or use any code/text contained in this document(plugin) without explicit signed permission from Jonah Seguin.
+ * www.jonahseguin.com
+ */
+
+package com.jonahseguin.payload.base.pubsub;
+
+import com.jonahseguin.payload.base.Service;
+
+import javax.annotation.Nonnull;
+import java.util.Map;
+
+/**
+ * A single Redis pub/sub connection per database, shared by every handshake and the server service.
+ * Channels are routed to their registered {@link PubSubListener}; the connection is re-established and all channels
+ * re-subscribed automatically if it drops.
+ */
+public interface PubSubService extends Service {
+
+    /**
+     * Route messages on a channel to a listener, subscribing to the channel if not already subscribed
+     * @param channel The channel
+     * @param listener The listener (replaces any existing listener for this channel)
+     */
+    void subscribe(@Nonnull String channel, @Nonnull PubSubListener listener);
+
+    /**
+     * Stop routing messages on a channel, and unsubscribe from it
+     * @param channel The channel
+     */
+    void unsubscribe(@Nonnull String channel);
+
+    /**
+     * @return True if the subscriber connection is currently established
+     */
+    boolean isConnected();
+
+    /**
+     * @return Message counters and rates for each subscribed channel
+     */
+    @Nonnull
+    Map<String, ChannelStats> getChannelStats();
+
+    @Nonnull
+    String getName();
+
+}
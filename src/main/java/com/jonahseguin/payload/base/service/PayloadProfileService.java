@@ -14,7 +14,7 @@ import javax.annotation.Nonnull;
 import java.util.Collection;
 import java.util.Optional;
 import java.util.UUID;
-import java.util.concurrent.Future;
+import java.util.concurrent.CompletableFuture;
 
 public interface PayloadProfileService<X extends PayloadProfile> extends PayloadService<UUID, X, NetworkProfile> {
 
@@ -22,9 +22,9 @@ public interface PayloadProfileService<X extends PayloadProfile> extends Payload
 
     Optional<X> get(@Nonnull Player player);
 
-    Future<Optional<X>> getAsync(@Nonnull String username);
+    CompletableFuture<Optional<X>> getAsync(@Nonnull String username);
 
-    Future<Optional<X>> getAsync(@Nonnull Player player);
+    CompletableFuture<Optional<X>> getAsync(@Nonnull Player player);
 
     Optional<X> getFromCache(@Nonnull String username);
 
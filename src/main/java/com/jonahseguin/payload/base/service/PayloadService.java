@@ -9,11 +9,13 @@ import com.jonahseguin.payload.base.PayloadCallback;
 import com.jonahseguin.payload.base.Service;
 import com.jonahseguin.payload.base.network.NetworkPayload;
 import com.jonahseguin.payload.base.type.Payload;
+import com.jonahseguin.payload.base.update.UpdateOps;
 
 import javax.annotation.Nonnull;
 import java.util.Collection;
+import java.util.Map;
 import java.util.Optional;
-import java.util.concurrent.Future;
+import java.util.concurrent.CompletableFuture;
 
 public interface PayloadService<K, X extends Payload<K>, N extends NetworkPayload<K>> extends Service {
 
@@ -23,7 +25,20 @@ public interface PayloadService<K, X extends Payload<K>, N extends NetworkPayloa
 
     Optional<X> get(@Nonnull K key);
 
-    Future<Optional<X>> getAsync(@Nonnull K key);
+    CompletableFuture<Optional<X>> getAsync(@Nonnull K key);
+
+    /**
+     * Get many Payloads at once, in the order of the given keys.
+     * Payloads cached locally are returned directly; the rest are read with one query to the database, and their network
+     * payloads with one round-trip to Redis.  Only Payloads held by another server are loaded one at a time (handshake).
+     * @param keys Identifiers
+     * @return Map of identifier to Payload, in the order of the keys; keys that aren't found are left out
+     */
+    @Nonnull
+    Map<K, X> getAll(@Nonnull Collection<K> keys);
+
+    @Nonnull
+    CompletableFuture<Map<K, X>> getAllAsync(@Nonnull Collection<K> keys);
 
     Optional<X> getFromCache(@Nonnull K key);
 
@@ -31,10 +46,22 @@ public interface PayloadService<K, X extends Payload<K>, N extends NetworkPayloa
 
     boolean save(@Nonnull X payload);
 
-    Future<Boolean> saveAsync(@Nonnull X payload);
+    CompletableFuture<Boolean> saveAsync(@Nonnull X payload);
 
     boolean saveNoSync(@Nonnull X payload);
 
+    /**
+     * Atomically apply field-level update operators ($set, $inc, $push, $pull) to a Payload in the database, then apply
+     * the changed fields to the locally cached copy and broadcast only those fields to other servers.
+     * Unlike {@link #save}, the rest of the document isn't re-written, and concurrent updates from other servers aren't lost.
+     * @param key Identifier
+     * @param ops The update operators
+     * @return The updated Payload (the cached copy if cached), or empty if it doesn't exist or the update failed
+     */
+    Optional<X> update(@Nonnull K key, @Nonnull UpdateOps ops);
+
+    CompletableFuture<Optional<X>> updateAsync(@Nonnull K key, @Nonnull UpdateOps ops);
+
     void cache(@Nonnull X payload);
 
     void uncache(@Nonnull K key);
@@ -51,6 +78,15 @@ public interface PayloadService<K, X extends Payload<K>, N extends NetworkPayloa
 
     void prepareUpdateAsync(@Nonnull X payload, @Nonnull PayloadCallback<Optional<X>> callback);
 
+    /**
+     * Prepare a Payload for an update asynchronously: if another server holds a newer copy, it saves it first and the
+     * future completes with the newest copy from the database.  Times out after the handshake timeout.
+     * @param payload The Payload
+     * @return Future completed with the Payload to update, or empty if it has no network payload
+     */
+    @Nonnull
+    CompletableFuture<Optional<X>> prepareUpdateAsync(@Nonnull X payload);
+
     void cacheAll();
 
     X create();
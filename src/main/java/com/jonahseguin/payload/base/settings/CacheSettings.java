@@ -5,6 +5,10 @@
 
 package com.jonahseguin.payload.base.settings;
 
+import com.jonahseguin.payload.base.eviction.EvictionPolicy;
+import com.jonahseguin.payload.base.network.RedisStorageMode;
+import com.jonahseguin.payload.base.network.codec.NetworkCodecType;
+import com.jonahseguin.payload.database.mongo.MongoDriverType;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
@@ -16,7 +20,31 @@ public abstract class CacheSettings {
 
     private int failureRetryIntervalSeconds = 30;
     private int autoSaveIntervalSeconds = 600; // 10 minutes
-    private int cleanupIntervalSeconds = 1200;
+    private int cleanupIntervalSeconds = 1200; // How often the local store is checked for payloads to evict
+    private int maxLocalSize = 0; // Max. payloads held in the local store before evicting by the eviction policy, 0 = unbounded
+    private EvictionPolicy evictionPolicy = EvictionPolicy.LRU;
     private boolean serverSpecific = false; // should we associate each object with a server, and only cache objects that match this server
+    private int saveBatchSize = 500; // Max. payloads per MongoDB bulk write / Redis pipeline when saving all payloads (i.e. during shutdown)
+    private MongoDriverType mongoDriver = MongoDriverType.SYNC; // Driver used for the database store's async. operations (getAsync/getAllAsync/saveAsync); ASYNC doesn't hold a thread per in-flight query
+    private int readBatchSize = 500; // Documents fetched per MongoDB cursor batch when iterating over all stored payloads (getAll, cacheAll)
+    private NetworkCodecType networkCodec = NetworkCodecType.JSON; // Format network payloads are written to Redis in (both are always readable); use BSON once every node supports it
+    private long networkNearCacheMillis = 2000; // How long network payloads are served from memory before being re-read from Redis (invalidated early by writes on other nodes), 0 = disabled
+    private RedisStorageMode redisStorageMode = RedisStorageMode.HASH; // Layout of network payloads in Redis; only KEYS/MIGRATE apply the redis expiry time (see RedisStorageMode for how to migrate)
+    private int redisShards = 64; // Number of {hash tag} buckets network payload keys are spread over (KEYS/MIGRATE), so they spread across a Redis Cluster; only used the first time, change with /payload reshard
+    private int redisCleanupIntervalSeconds = 1800; // How often the legacy Redis hash is migrated (in MIGRATE mode) and Redis entry counts are refreshed
+    private int saveConflictRetries = 3; // How often a save that conflicts with a newer version (saved by another server) is resolved and retried before failing
+    private boolean enableLeases = false; // Track which server owns each payload with Redis leases (network node only), so ownership checks don't need a Redis read
+    private long leaseTimeMillis = 30000; // How long a lease lasts without renewal; leases are renewed in the background three times per lease time
+    private int handshakeTimeoutSeconds = 5; // How long to wait for another server to save a payload before loading it
     private boolean enableSync = true; // Enable the payload sync service.  This will sync objects/profiles (Payloads) across multiple servers, in a policy specific to the SyncMode
+
+    /**
+     * @return How long a payload may go without interaction before it is evicted from the local store, 0 = never
+     */
+    public abstract int getLocalExpiryTimeSeconds();
+
+    /**
+     * @return How long a network payload is kept in Redis after it was last written, 0 = never expire
+     */
+    public abstract int getRedisExpiryTimeSeconds();
 }
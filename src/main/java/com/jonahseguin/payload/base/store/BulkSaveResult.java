@@ -0,0 +1,31 @@
+/*
+ * Copyright (c) 2019 Jonah Seguin.  All rights reserved.  You may not modify, decompile, distribute or use any code/text contained in this document(plugin) without explicit signed permission from Jonah Seguin.
+ * www.jonahseguin.com
+ */
+
+package com.jonahseguin.payload.base.store;
+
+import com.jonahseguin.payload.base.type.Payload;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Per-item outcome of a batched save, i.e. a MongoDB bulk write
+ */
+@Getter
+public class BulkSaveResult<X extends Payload> {
+
+    private final List<X> saved = new ArrayList<>();
+    private final List<X> failed = new ArrayList<>();
+
+    public int getFailureCount() {
+        return failed.size();
+    }
+
+    public boolean isSuccess() {
+        return failed.isEmpty();
+    }
+
+}
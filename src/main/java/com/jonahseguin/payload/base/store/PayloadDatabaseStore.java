@@ -0,0 +1,33 @@
+/*
+ * Copyright (c) 2019 Jonah Seguin.  All rights reserved.  You may not modify, decompile, distribute or use any code/text contained in this document(plugin) without explicit signed permission from Jonah Seguin.
+ * www.jonahseguin.com
+ */
+
+package com.jonahseguin.payload.base.store;
+
+import com.jonahseguin.payload.base.type.Payload;
+import com.jonahseguin.payload.base.update.UpdateOps;
+
+import javax.annotation.Nonnull;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A store backed by the database, which (unlike local stores) can apply field-level updates in place
+ */
+public interface PayloadDatabaseStore<K, X extends Payload> extends PayloadStore<K, X> {
+
+    /**
+     * Atomically apply field-level update operators to a stored Payload, without re-writing the rest of the document.
+     * The locally cached copy is updated by {@link com.jonahseguin.payload.base.Cache#update}.
+     * @param key Identifier
+     * @param ops The update operators
+     * @return A new instance of the Payload as stored after the update, or empty if it doesn't exist or the update failed
+     * @throws IllegalArgumentException If an operator names a field that is not persistent
+     */
+    Optional<X> update(@Nonnull K key, @Nonnull UpdateOps ops);
+
+    @Nonnull
+    CompletableFuture<Optional<X>> updateAsync(@Nonnull K key, @Nonnull UpdateOps ops);
+
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2019 Jonah Seguin.  All rights reserved.  You may not modify, decompile, distribute or use any code/text contained in this document(plugin) without explicit signed permission from Jonah Seguin.
+ * www.jonahseguin.com
+ */
+
+package com.jonahseguin.payload.base.store;
+
+import com.google.common.base.Preconditions;
+import com.jonahseguin.payload.base.PayloadCache;
+import com.jonahseguin.payload.base.type.Payload;
+import com.jonahseguin.payload.base.update.PayloadChanges;
+import com.jonahseguin.payload.base.update.PayloadVersions;
+import com.mongodb.BasicDBObject;
+import com.mongodb.BulkWriteError;
+import com.mongodb.BulkWriteException;
+import com.mongodb.BulkWriteOperation;
+import com.mongodb.DBCollection;
+import com.mongodb.DBObject;
+import com.mongodb.MongoException;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * The batched and partial MongoDB writes shared by the profile and object MongoDB stores.  Both are conditional on
+ * the version a Payload was loaded at, and fall back to the store's full save (which resolves conflicts).
+ */
+public class PayloadMongoWriter<X extends Payload<?>> {
+
+    private final PayloadCache<?, X, ?> cache;
+    private final String type; // "Profile" or "Object", for error messages
+    private final Function<X, String> name;
+    private final Predicate<X> save;
+
+    /**
+     * @param cache The cache
+     * @param type The kind of Payload, for error messages
+     * @param name The name of a Payload, for error messages
+     * @param save The store's full save, used to resolve conflicts and when a partial save doesn't apply
+     */
+    public PayloadMongoWriter(@Nonnull PayloadCache<?, X, ?> cache, @Nonnull String type, @Nonnull Function<X, String> name, @Nonnull Predicate<X> save) {
+        Preconditions.checkNotNull(cache);
+        Preconditions.checkNotNull(type);
+        Preconditions.checkNotNull(name);
+        Preconditions.checkNotNull(save);
+        this.cache = cache;
+        this.type = type;
+        this.name = name;
+        this.save = save;
+    }
+
+    /**
+     * Save many Payloads at once using a single unordered MongoDB bulk write of replace/upsert operations.
+     * Payloads that conflict with a newer stored version are resolved and retried one at a time.
+     * @param payloads The Payloads to save
+     * @return The per-item result
+     */
+    @Nonnull
+    public BulkSaveResult<X> saveAll(@Nonnull Collection<X> payloads) {
+        Preconditions.checkNotNull(payloads);
+        BulkSaveResult<X> result = new BulkSaveResult<>();
+        if (payloads.isEmpty()) {
+            return result;
+        }
+        List<X> batch = new ArrayList<>(payloads.size());
+        List<DBObject> documents = new ArrayList<>(payloads.size());
+        BulkWriteOperation bulk = getCollection().initializeUnorderedBulkOperation();
+        for (X payload : payloads) {
+            payload.interact();
+            long version = payload.getPayloadVersion();
+            payload.setPayloadVersion(version + 1);
+            try {
+                DBObject document = cache.getDatabase().getMorphia().toDBObject(payload);
+                bulk.find(PayloadVersions.query(payload.getObjectId(), version)).upsert().replaceOne(document);
+                batch.add(payload);
+                documents.add(document);
+            } catch (Exception ex) {
+                cache.getErrorService().capture(ex, "Error mapping " + type + " for bulk save to MongoDB Layer: " + name.apply(payload));
+                payload.setPayloadVersion(version);
+                result.getFailed().add(payload);
+            }
+        }
+        if (batch.isEmpty()) {
+            return result;
+        }
+        Set<Integer> failedIndexes = new HashSet<>();
+        Set<Integer> conflictIndexes = new HashSet<>(); // Saved by another server since loaded
+        try {
+            bulk.execute();
+        } catch (BulkWriteException ex) {
+            if (ex.getWriteConcernError() != null) {
+                cache.getErrorService().capture(ex, "MongoDB write concern error during bulk save of " + batch.size() + " " + type + "s");
+                failAll(batch, result);
+                return result;
+            }
+            for (BulkWriteError error : ex.getWriteErrors()) {
+                failedIndexes.add(error.getIndex());
+                if (PayloadVersions.isConflict(error.getCode())) {
+                    conflictIndexes.add(error.getIndex());
+                }
+            }
+            if (failedIndexes.size() > conflictIndexes.size()) {
+                cache.getErrorService().capture(ex, (failedIndexes.size() - conflictIndexes.size()) + " of " + batch.size() + " " + type + "s failed during bulk save to MongoDB Layer");
+            }
+        } catch (MongoException ex) {
+            cache.getErrorService().capture(ex, "MongoDB error during bulk save of " + batch.size() + " " + type + "s");
+            failAll(batch, result);
+            return result;
+        } catch (Exception expected) {
+            cache.getErrorService().capture(expected, "Error during bulk save of " + batch.size() + " " + type + "s");
+            failAll(batch, result);
+            return result;
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            X payload = batch.get(i);
+            if (failedIndexes.contains(i)) {
+                payload.setPayloadVersion(payload.getPayloadVersion() - 1);
+                if (conflictIndexes.contains(i) && save.test(payload)) {
+                    // Conflicts are resolved (and retried) one at a time
+                    result.getSaved().add(payload);
+                } else {
+                    result.getFailed().add(payload);
+                }
+            } else {
+                cache.getDirtyTracker().snapshot(payload, documents.get(i));
+                result.getSaved().add(payload);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Save only the changed persistent fields of a Payload via $set/$unset, incrementing its version.
+     * Only applied while the stored document still has the version this copy is based on; otherwise (or if the
+     * document no longer exists) falls back to a full save, which resolves the conflict.
+     * @param payload The Payload
+     * @param changes The changed fields, from {@link com.jonahseguin.payload.base.update.PayloadDirtyTracker#changes}
+     * @return True if successful
+     */
+    public boolean saveChanges(@Nonnull X payload, @Nonnull PayloadChanges changes) {
+        Preconditions.checkNotNull(payload);
+        Preconditions.checkNotNull(changes);
+        if (changes.isEmpty()) {
+            cache.getDirtyTracker().commit(payload, changes);
+            return true;
+        }
+        payload.interact();
+        try {
+            DBObject update = changes.toUpdate();
+            update.put("$inc", new BasicDBObject(PayloadVersions.FIELD, 1));
+            long version = payload.getPayloadVersion();
+            if (getCollection().update(PayloadVersions.query(payload.getObjectId(), version), update).getN() == 0) {
+                // It no longer exists, or another server saved a newer version: save in full (resolving the conflict)
+                return save.test(payload);
+            }
+            payload.setPayloadVersion(version + 1);
+            cache.getDirtyTracker().commit(payload, changes);
+            return true;
+        } catch (MongoException ex) {
+            cache.getErrorService().capture(ex, "MongoDB error saving " + type + " changes to MongoDB Layer: " + name.apply(payload));
+            return false;
+        } catch (Exception expected) {
+            cache.getErrorService().capture(expected, "Error saving " + type + " changes to MongoDB Layer: " + name.apply(payload));
+            return false;
+        }
+    }
+
+    private DBCollection getCollection() {
+        return cache.getDatabase().getDatastore().getCollection(cache.getPayloadClass());
+    }
+
+    private void failAll(List<X> batch, BulkSaveResult<X> result) {
+        for (X payload : batch) {
+            payload.setPayloadVersion(payload.getPayloadVersion() - 1);
+            result.getFailed().add(payload);
+        }
+    }
+
+}
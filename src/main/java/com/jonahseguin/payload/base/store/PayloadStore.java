@@ -10,14 +10,37 @@ import com.jonahseguin.payload.base.type.Payload;
 
 import javax.annotation.Nonnull;
 import java.util.Collection;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
 
 public interface PayloadStore<K, X extends Payload> extends Service {
 
     Optional<X> get(@Nonnull K key);
 
+    /**
+     * Get many Payloads at once.  Keys that aren't found are left out of the result.
+     * @param keys Identifiers
+     * @return Map of identifier to Payload
+     */
+    @Nonnull
+    Map<K, X> getAll(@Nonnull Collection<K> keys);
+
     boolean save(@Nonnull X payload);
 
+    /**
+     * Async. variants: database stores run in Payload's I/O pool, local stores complete immediately
+     */
+    @Nonnull
+    CompletableFuture<Optional<X>> getAsync(@Nonnull K key);
+
+    @Nonnull
+    CompletableFuture<Map<K, X>> getAllAsync(@Nonnull Collection<K> keys);
+
+    @Nonnull
+    CompletableFuture<Boolean> saveAsync(@Nonnull X payload);
+
     boolean has(@Nonnull K key);
 
     boolean has(@Nonnull X payload);
@@ -29,6 +52,14 @@ public interface PayloadStore<K, X extends Payload> extends Service {
     @Nonnull
     Collection<X> getAll();
 
+    /**
+     * Iterate over every stored Payload without holding them all in memory at once.
+     * For database stores this is backed by a cursor, so the stream must be closed (use try-with-resources).
+     * @return Stream of every stored Payload
+     */
+    @Nonnull
+    Stream<X> stream();
+
     int cleanup();
 
     long clear();
@@ -11,8 +11,13 @@ import com.jonahseguin.payload.base.PayloadCallback;
 import com.jonahseguin.payload.base.handshake.HandshakeService;
 import com.jonahseguin.payload.base.network.NetworkPayload;
 import com.jonahseguin.payload.base.type.Payload;
+import com.jonahseguin.payload.base.update.PayloadChanges;
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Collection;
 import java.util.Optional;
 
 public class CacheSyncService<K, X extends Payload<K>, N extends NetworkPayload<K>, D> implements SyncService<K, X, N> {
@@ -30,6 +35,11 @@ public class CacheSyncService<K, X extends Payload<K>, N extends NetworkPayload<
     public void prepareUpdate(@Nonnull X payload, @Nonnull PayloadCallback<Optional<X>> callback) {
         Preconditions.checkNotNull(payload);
         Preconditions.checkNotNull(callback);
+        if (cache.getLeaseService().isRunning() && cache.getLeaseService().isOwner(payload.getIdentifier())) {
+            // This server holds the lease, so nobody else can have a newer copy
+            callback.callback(Optional.of(payload));
+            return;
+        }
         Optional<N> o = cache.getNetworked(payload);
         if (o.isPresent()) {
             N np = o.get();
@@ -37,6 +47,7 @@ public class CacheSyncService<K, X extends Payload<K>, N extends NetworkPayload<
                 callback.callback(Optional.of(payload));
             } else {
                 handshakeService.publish(new SyncHandshake<>(cache, payload.getIdentifier(), SyncHandshakeMode.UPDATE)).afterReply(h -> {
+                    cache.getNetworkService().invalidate(payload.getIdentifier());
                     Optional<X> ox = cache.getFromDatabase(payload.getIdentifier());
                     callback.callback(ox);
                 });
@@ -52,6 +63,40 @@ public class CacheSyncService<K, X extends Payload<K>, N extends NetworkPayload<
         handshakeService.publish(new SyncHandshake<>(cache, key, SyncHandshakeMode.UPDATE));
     }
 
+    @Override
+    public void update(@Nonnull Collection<K> keys) {
+        Preconditions.checkNotNull(keys);
+        if (keys.isEmpty()) {
+            return;
+        }
+        if (keys.size() == 1) {
+            update(keys.iterator().next());
+            return;
+        }
+        handshakeService.publish(new SyncHandshake<>(cache, keys, SyncHandshakeMode.UPDATE));
+    }
+
+    @Override
+    public void update(@Nonnull X payload, @Nullable PayloadChanges changes) {
+        Preconditions.checkNotNull(payload);
+        if (changes == null) {
+            DBObject document = cache.getDatabase().getMorphia().toDBObject(payload);
+            handshakeService.publish(new SyncHandshake<>(cache, payload.getIdentifier(), payload.getPayloadVersion(), null, document));
+        } else if (!changes.isEmpty()) {
+            DBObject fields = new BasicDBObject(changes.getSet().toMap());
+            changes.getUnset().keySet().forEach(field -> fields.put(field, null));
+            update(payload.getIdentifier(), payload.getPayloadVersion(), fields);
+        }
+        // else: nothing was written
+    }
+
+    @Override
+    public void update(@Nonnull K key, long version, @Nonnull DBObject fields) {
+        Preconditions.checkNotNull(key);
+        Preconditions.checkNotNull(fields);
+        handshakeService.publish(new SyncHandshake<>(cache, key, version, fields, null));
+    }
+
     @Override
     public void uncache(@Nonnull K key) {
         Preconditions.checkNotNull(key);
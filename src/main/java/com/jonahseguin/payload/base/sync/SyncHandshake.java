@@ -11,20 +11,35 @@ import com.jonahseguin.payload.base.handshake.Handshake;
 import com.jonahseguin.payload.base.handshake.HandshakeData;
 import com.jonahseguin.payload.base.network.NetworkPayload;
 import com.jonahseguin.payload.base.type.Payload;
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
 import lombok.Getter;
 import lombok.Setter;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
 
 @Getter
 @Setter
 public class SyncHandshake<K, X extends Payload<K>, N extends NetworkPayload<K>> extends Handshake {
 
     public static final String KEY_IDENTIFIER = "sync-identifier";
+    public static final String KEY_IDENTIFIERS = "sync-identifiers";
     public static final String KEY_MODE = "sync-mode";
+    public static final String KEY_VERSION = "sync-version";
+    public static final String KEY_FIELDS = "sync-fields";
+    public static final String KEY_DOCUMENT = "sync-document";
     private final Cache<K, X, N> cache;
     private K identifier;
+    private List<K> identifiers = new ArrayList<>();
     private SyncHandshakeMode mode;
+    private long version = -1;
+    private DBObject fields = null; // Only the changed fields, applied without a database read
+    private DBObject document = null; // The full document, applied without a database read
 
     public SyncHandshake(Cache<K, X, N> cache) {
         this.cache = cache;
@@ -34,6 +49,24 @@ public class SyncHandshake<K, X extends Payload<K>, N extends NetworkPayload<K>>
         Preconditions.checkNotNull(identifier);
         this.cache = cache;
         this.identifier = identifier;
+        this.identifiers.add(identifier);
+        this.mode = mode;
+    }
+
+    public SyncHandshake(Cache<K, X, N> cache, @Nonnull K identifier, long version, @Nullable DBObject fields, @Nullable DBObject document) {
+        this(cache, identifier, SyncHandshakeMode.UPDATE);
+        Preconditions.checkArgument(fields != null || document != null, "Either the changed fields or the document are required");
+        this.version = version;
+        this.fields = fields;
+        this.document = document;
+    }
+
+    public SyncHandshake(Cache<K, X, N> cache, @Nonnull Collection<K> identifiers, @Nonnull SyncHandshakeMode mode) {
+        Preconditions.checkNotNull(identifiers);
+        Preconditions.checkArgument(!identifiers.isEmpty(), "Identifiers cannot be empty");
+        this.cache = cache;
+        this.identifiers.addAll(identifiers);
+        this.identifier = this.identifiers.get(0);
         this.mode = mode;
     }
 
@@ -54,32 +87,66 @@ public class SyncHandshake<K, X extends Payload<K>, N extends NetworkPayload<K>>
 
     @Override
     public void load(@Nonnull HandshakeData data) {
-        identifier = cache.keyFromString(data.getDocument().getString(KEY_IDENTIFIER));
+        identifiers.clear();
+        List<String> keys = data.getDocument().getList(KEY_IDENTIFIERS, String.class);
+        if (keys != null) {
+            keys.stream().map(cache::keyFromString).forEach(identifiers::add);
+        } else {
+            identifiers.add(cache.keyFromString(data.getDocument().getString(KEY_IDENTIFIER)));
+        }
+        identifier = identifiers.get(0);
         mode = SyncHandshakeMode.valueOf(data.getDocument().getString(KEY_MODE));
+        Number v = data.getDocument().get(KEY_VERSION, Number.class);
+        version = v != null ? v.longValue() : -1;
+        fields = parse(data.getDocument().getString(KEY_FIELDS));
+        document = parse(data.getDocument().getString(KEY_DOCUMENT));
     }
 
     @Override
     public void write(@Nonnull HandshakeData data) {
-        data.append(KEY_IDENTIFIER, cache.keyToString(identifier));
+        if (identifiers.size() > 1) {
+            data.append(KEY_IDENTIFIERS, identifiers.stream().map(cache::keyToString).collect(Collectors.toList()));
+        } else {
+            data.append(KEY_IDENTIFIER, cache.keyToString(identifier));
+        }
         data.append(KEY_MODE, mode.name());
+        if (fields != null || document != null) {
+            data.append(KEY_VERSION, version);
+        }
+        if (fields != null) {
+            data.append(KEY_FIELDS, new BasicDBObject(fields.toMap()).toJson());
+        }
+        if (document != null) {
+            data.append(KEY_DOCUMENT, new BasicDBObject(document.toMap()).toJson());
+        }
     }
 
     @Override
     public void receive() {
-        if (mode.equals(SyncHandshakeMode.UNCACHE)) {
-            if (cache.isCached(identifier)) {
-                cache.uncache(identifier);
-            }
-        } else if (mode.equals(SyncHandshakeMode.UPDATE)) {
-            if (cache.isCached(identifier) || cache.getSyncMode().equals(SyncMode.ALWAYS)) {
-                cache.getFromDatabase(identifier).ifPresent(cache::cache);
+        for (K key : identifiers) {
+            cache.getNetworkService().invalidate(key);
+            if (mode.equals(SyncHandshakeMode.UNCACHE)) {
+                if (cache.isCached(key)) {
+                    cache.uncache(key);
+                }
+            } else if (mode.equals(SyncHandshakeMode.UPDATE)) {
+                if (cache.isCached(key) || cache.getSyncMode().equals(SyncMode.ALWAYS)) {
+                    if (!cache.applyUpdate(key, version, fields, document)) {
+                        // No data in the message, or it doesn't directly follow our copy
+                        cache.getFromDatabase(key).ifPresent(cache::cache);
+                    }
+                }
             }
         }
     }
 
+    private static DBObject parse(String json) {
+        return json != null ? BasicDBObject.parse(json) : null;
+    }
+
     @Override
     public boolean shouldAccept() {
-        return cache.isCached(identifier);
+        return identifiers.stream().anyMatch(cache::isCached);
     }
 
     @Override
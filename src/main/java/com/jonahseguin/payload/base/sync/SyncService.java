@@ -9,16 +9,47 @@ import com.jonahseguin.payload.base.PayloadCallback;
 import com.jonahseguin.payload.base.Service;
 import com.jonahseguin.payload.base.network.NetworkPayload;
 import com.jonahseguin.payload.base.type.Payload;
+import com.jonahseguin.payload.base.update.PayloadChanges;
+import com.mongodb.DBObject;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Collection;
 import java.util.Optional;
 
 public interface SyncService<K, X extends Payload<K>, N extends NetworkPayload<K>> extends Service {
 
     void prepareUpdate(@Nonnull X payload, @Nonnull PayloadCallback<Optional<X>> callback);
 
+    /**
+     * Publish an UPDATE without any data; receivers reload the Payload from the database
+     * @param key The key that was updated
+     */
     void update(@Nonnull K key);
 
+    /**
+     * Publish an UPDATE after a Payload was saved, carrying its new version and either only the changed fields (partial
+     * save) or the full mapped document, so receivers can apply it without reading the database
+     * @param payload The saved Payload
+     * @param changes The changes that were written, or null if it was saved in full
+     */
+    void update(@Nonnull X payload, @Nullable PayloadChanges changes);
+
+    /**
+     * Publish a single UPDATE for many keys at once, i.e. after a batched save
+     * @param keys The keys that were updated
+     */
+    void update(@Nonnull Collection<K> keys);
+
+    /**
+     * Publish an UPDATE carrying only the fields changed by a field-level update; receivers apply them to their cached
+     * copy instead of reloading the Payload from the database
+     * @param key The key that was updated
+     * @param version The version of the Payload after the update
+     * @param fields Stored field names and their mapped values
+     */
+    void update(@Nonnull K key, long version, @Nonnull DBObject fields);
+
     void uncache(@Nonnull K key);
 
 }
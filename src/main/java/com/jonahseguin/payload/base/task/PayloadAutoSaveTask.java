@@ -6,12 +6,14 @@
 package com.jonahseguin.payload.base.task;
 
 import com.google.common.base.Preconditions;
+import com.jonahseguin.payload.PayloadMode;
 import com.jonahseguin.payload.base.Cache;
 import com.jonahseguin.payload.base.network.NetworkPayload;
 import com.jonahseguin.payload.base.type.Payload;
 import org.bukkit.scheduler.BukkitTask;
 
 import javax.annotation.Nonnull;
+import java.util.stream.Collectors;
 
 public class PayloadAutoSaveTask<K, X extends Payload<K>, N extends NetworkPayload<K>> implements Runnable {
 
@@ -26,12 +28,16 @@ public class PayloadAutoSaveTask<K, X extends Payload<K>, N extends NetworkPaylo
 
     @Override
     public void run() {
-        int failures = cache.saveAll();
+        int failures = cache.saveAllChanged();
         if (failures > 0) {
             cache.getErrorService().capture(failures + " Payload objects failed to save during auto-save.");
         } else {
             cache.getErrorService().debug("Auto-save completed successfully with 0 failures.");
         }
+        if (cache.getMode().equals(PayloadMode.NETWORK_NODE)) {
+            // Unchanged payloads aren't written, so their network entries would otherwise expire while still cached
+            cache.getNetworkService().touch(cache.getCached().stream().map(Payload::getIdentifier).collect(Collectors.toList()));
+        }
     }
 
     public boolean isRunning() {
@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2019 Jonah Seguin.  All rights reserved.  You may not modify, decompile, distribute or use any code/text contained in this document(plugin) without explicit signed permission from Jonah Seguin.
+ * www.jonahseguin.com
+ */
+
+package com.jonahseguin.payload.base.task;
+
+import com.google.common.base.Preconditions;
+import com.jonahseguin.payload.base.Cache;
+import com.jonahseguin.payload.base.network.NetworkPayload;
+import com.jonahseguin.payload.base.type.Payload;
+import org.bukkit.scheduler.BukkitTask;
+
+import javax.annotation.Nonnull;
+
+public class PayloadEvictionTask<K, X extends Payload<K>, N extends NetworkPayload<K>> implements Runnable {
+
+    private final Cache<K, X, N> cache;
+
+    private BukkitTask task = null;
+
+    public PayloadEvictionTask(@Nonnull Cache<K, X, N> cache) {
+        Preconditions.checkNotNull(cache);
+        this.cache = cache;
+    }
+
+    @Override
+    public void run() {
+        try {
+            int evicted = cache.getLocalStore().cleanup();
+            if (evicted > 0) {
+                cache.getErrorService().debug("Eviction removed " + evicted + " Payload objects from the local store.");
+            }
+        } catch (Exception ex) {
+            cache.getErrorService().capture(ex, "Error during local store eviction");
+        }
+    }
+
+    public boolean isRunning() {
+        return this.task != null;
+    }
+
+    public void start() {
+        if (!this.isRunning() && cache.getSettings().getCleanupIntervalSeconds() > 0) {
+            this.task = cache.getPlugin().getServer().getScheduler().runTaskTimerAsynchronously(cache.getPlugin(), this, (cache.getSettings().getCleanupIntervalSeconds() * 20), (cache.getSettings().getCleanupIntervalSeconds() * 20));
+        }
+    }
+
+    public void stop() {
+        if (this.isRunning()) {
+            this.task.cancel();
+            this.task = null;
+        }
+    }
+
+}
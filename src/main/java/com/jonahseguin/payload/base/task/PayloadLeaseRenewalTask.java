@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) 2019 Jonah Seguin.  All rights reserved.  You may not modify, decompile, distribute or use any code/text contained in this document(plugin) without explicit signed permission from Jonah Seguin.
+ * www.jonahseguin.com
+ */
+
+package com.jonahseguin.payload.base.task;
+
+import com.google.common.base.Preconditions;
+import com.jonahseguin.payload.base.Cache;
+import com.jonahseguin.payload.base.network.NetworkPayload;
+import com.jonahseguin.payload.base.type.Payload;
+import org.bukkit.scheduler.BukkitTask;
+
+import javax.annotation.Nonnull;
+
+public class PayloadLeaseRenewalTask<K, X extends Payload<K>, N extends NetworkPayload<K>> implements Runnable {
+
+    private final Cache<K, X, N> cache;
+
+    private BukkitTask task = null;
+
+    public PayloadLeaseRenewalTask(@Nonnull Cache<K, X, N> cache) {
+        Preconditions.checkNotNull(cache);
+        this.cache = cache;
+    }
+
+    @Override
+    public void run() {
+        int lost = cache.getLeaseService().renewAll();
+        if (lost > 0) {
+            cache.getErrorService().debug(lost + " leases were lost during renewal.");
+        }
+    }
+
+    public boolean isRunning() {
+        return this.task != null;
+    }
+
+    public void start() {
+        if (!this.isRunning()) {
+            // Renew three times per lease time, so a lease survives a missed renewal
+            long period = Math.max(1, cache.getSettings().getLeaseTimeMillis() / 3 / 50);
+            this.task = cache.getPlugin().getServer().getScheduler().runTaskTimerAsynchronously(cache.getPlugin(), this, period, period);
+        }
+    }
+
+    public void stop() {
+        if (this.isRunning()) {
+            this.task.cancel();
+            this.task = null;
+        }
+    }
+
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2019 Jonah Seguin.  All rights reserved.  You may not modify, decompile, distribute or use any code/text contained in this document(plugin) without explicit signed permission from Jonah Seguin.
+ * www.jonahseguin.com
+ */
+
+package com.jonahseguin.payload.base.task;
+
+import com.google.common.base.Preconditions;
+import com.jonahseguin.payload.base.Cache;
+import com.jonahseguin.payload.base.network.NetworkPayload;
+import com.jonahseguin.payload.base.type.Payload;
+import org.bukkit.scheduler.BukkitTask;
+
+import javax.annotation.Nonnull;
+
+public class PayloadNetworkCleanupTask<K, X extends Payload<K>, N extends NetworkPayload<K>> implements Runnable {
+
+    private final Cache<K, X, N> cache;
+
+    private BukkitTask task = null;
+
+    public PayloadNetworkCleanupTask(@Nonnull Cache<K, X, N> cache) {
+        Preconditions.checkNotNull(cache);
+        this.cache = cache;
+    }
+
+    @Override
+    public void run() {
+        try {
+            int migrated = cache.getNetworkService().cleanup();
+            if (migrated > 0) {
+                cache.getErrorService().debug("Network cleanup migrated " + migrated + " network payloads from the legacy Redis hash.");
+            }
+        } catch (Exception ex) {
+            cache.getErrorService().capture(ex, "Error during network payload cleanup");
+        }
+    }
+
+    public boolean isRunning() {
+        return this.task != null;
+    }
+
+    public void start() {
+        // First run shortly after startup, so that a storage migration starts promptly
+        if (!this.isRunning() && cache.getSettings().getRedisCleanupIntervalSeconds() > 0) {
+            this.task = cache.getPlugin().getServer().getScheduler().runTaskTimerAsynchronously(cache.getPlugin(), this, 20 * 30, (cache.getSettings().getRedisCleanupIntervalSeconds() * 20));
+        }
+    }
+
+    public void stop() {
+        if (this.isRunning()) {
+            this.task.cancel();
+            this.task = null;
+        }
+    }
+
+}
@@ -5,10 +5,13 @@
 
 package com.jonahseguin.payload.base.type;
 
+import com.google.common.hash.HashCode;
 import com.jonahseguin.payload.base.Cache;
 import org.bson.types.ObjectId;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Map;
 
 /**
  * A Payload is an object that can be cached, saved, or loaded within the payload system.  Is it the functional
@@ -48,6 +51,13 @@ public interface Payload<K> {
      */
     long cachedTimestamp();
 
+    /**
+     * Get a timestamp of the last interaction with this object (see {@link #interact()})
+     *
+     * @return Timestamp of last interaction
+     */
+    long getLastInteractionTimestamp();
+
     /**
      * Called internally when this profile/payload/object is accessed.  Used for updating last-access times to handle cache expiry/object
      * cleanup internally.
@@ -78,4 +88,35 @@ public interface Payload<K> {
 
     boolean hasValidHandshake();
 
+    /**
+     * Explicitly mark this Payload as changed, so that it is written during the next auto-save.
+     * Payloads that are never marked dirty are still saved when their persistent fields differ from their last snapshot.
+     */
+    void markDirty();
+
+    /**
+     * @return True if this Payload was explicitly marked dirty since it was last saved
+     */
+    boolean isDirty();
+
+    void setDirty(boolean dirty);
+
+    /**
+     * Internal: the per-field digests of this Payload's persistent state at the time it was last loaded or saved.
+     * @return The snapshot, or null if none has been taken
+     */
+    @Nullable
+    Map<String, HashCode> getFieldSnapshot();
+
+    void setFieldSnapshot(@Nullable Map<String, HashCode> snapshot);
+
+    /**
+     * The version of this Payload as last written to (or read from) the database.  Incremented by every write, so that
+     * servers receiving a sync update can tell whether it directly follows the copy they hold.
+     * @return The version
+     */
+    long getPayloadVersion();
+
+    void setPayloadVersion(long version);
+
 }
@@ -0,0 +1,38 @@
+/*
+ * Copyright (c) 2019 Jonah Seguin.  All rights reserved.  You may not modify, decompile, distribute or use any code/text contained in this document(plugin) without explicit signed permission from Jonah Seguin.
+ * www.jonahseguin.com
+ */
+
+package com.jonahseguin.payload.base.update;
+
+import com.google.common.base.Preconditions;
+import com.jonahseguin.payload.base.type.Payload;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Set;
+
+/**
+ * Field-level merge: fields changed locally keep their local value, every other field takes the stored value.
+ * If the local changes are unknown (the local copy was never snapshotted), the local copy wins entirely.
+ */
+public class MergingConflictResolver<X extends Payload<?>> implements PayloadConflictResolver<X> {
+
+    private final PayloadFieldMapper<X> fieldMapper;
+
+    public MergingConflictResolver(@Nonnull PayloadFieldMapper<X> fieldMapper) {
+        Preconditions.checkNotNull(fieldMapper);
+        this.fieldMapper = fieldMapper;
+    }
+
+    @Override
+    public boolean resolve(@Nonnull X local, @Nonnull X stored, @Nullable PayloadChanges localChanges) {
+        if (localChanges != null) {
+            Set<String> fields = fieldMapper.getStoredFields();
+            fields.removeAll(localChanges.getChangedFields());
+            fieldMapper.copy(stored, local, fields);
+        }
+        return true;
+    }
+
+}
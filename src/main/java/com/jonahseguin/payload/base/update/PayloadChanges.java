@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2019 Jonah Seguin.  All rights reserved.  You may not modify, decompile, distribute or use any code/text contained in this document(plugin) without explicit signed permission from Jonah Seguin.
+ * www.jonahseguin.com
+ */
+
+package com.jonahseguin.payload.base.update;
+
+import com.google.common.hash.HashCode;
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
+import lombok.Getter;
+
+import javax.annotation.Nonnull;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The persistent fields of a Payload that changed since its last snapshot, as mapped document values.
+ */
+@Getter
+public class PayloadChanges {
+
+    private final DBObject set = new BasicDBObject();
+    private final DBObject unset = new BasicDBObject();
+    private final Map<String, HashCode> snapshot;
+
+    PayloadChanges(@Nonnull Map<String, HashCode> snapshot) {
+        this.snapshot = snapshot;
+    }
+
+    void set(@Nonnull String field, Object value) {
+        set.put(field, value);
+    }
+
+    void unset(@Nonnull String field) {
+        unset.put(field, "");
+    }
+
+    public boolean isEmpty() {
+        return set.keySet().isEmpty() && unset.keySet().isEmpty();
+    }
+
+    public Set<String> getChangedFields() {
+        Set<String> fields = new java.util.HashSet<>(set.keySet());
+        fields.addAll(unset.keySet());
+        return fields;
+    }
+
+    /**
+     * @return The MongoDB update document ($set / $unset) for these changes
+     */
+    public DBObject toUpdate() {
+        BasicDBObject update = new BasicDBObject();
+        if (!set.keySet().isEmpty()) {
+            update.put("$set", set);
+        }
+        if (!unset.keySet().isEmpty()) {
+            update.put("$unset", unset);
+        }
+        return update;
+    }
+
+}
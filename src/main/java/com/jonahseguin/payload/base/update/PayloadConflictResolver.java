@@ -0,0 +1,30 @@
+/*
+ * Copyright (c) 2019 Jonah Seguin.  All rights reserved.  You may not modify, decompile, distribute or use any code/text contained in this document(plugin) without explicit signed permission from Jonah Seguin.
+ * www.jonahseguin.com
+ */
+
+package com.jonahseguin.payload.base.update;
+
+import com.jonahseguin.payload.base.type.Payload;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Resolves a save that conflicts with a newer version of the same Payload in the database, i.e. one written by another
+ * server since the local copy was loaded or last saved.  The default is {@link MergingConflictResolver}.
+ */
+@FunctionalInterface
+public interface PayloadConflictResolver<X extends Payload<?>> {
+
+    /**
+     * Bring the local copy to the state that should be written; the save is then retried on top of the stored version.
+     * @param local The local copy that failed to save
+     * @param stored The copy currently in the database
+     * @param localChanges The fields changed locally since the local copy was loaded or last saved, or null if unknown
+     * @return True to retry the save with the resolved local copy; false to discard the local changes, in which case
+     * the local copy is replaced by the stored one
+     */
+    boolean resolve(@Nonnull X local, @Nonnull X stored, @Nullable PayloadChanges localChanges);
+
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2019 Jonah Seguin.  All rights reserved.  You may not modify, decompile, distribute or use any code/text contained in this document(plugin) without explicit signed permission from Jonah Seguin.
+ * www.jonahseguin.com
+ */
+
+package com.jonahseguin.payload.base.update;
+
+import com.google.common.base.Preconditions;
+import dev.morphia.mapping.MappedClass;
+import dev.morphia.mapping.MappedField;
+
+import javax.annotation.Nonnull;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Copies the persistent fields of one Payload class through method handles that are resolved once per class,
+ * instead of through Morphia's reflective {@link MappedField#getFieldValue(Object)}/{@link MappedField#setFieldValue(Object, Object)}
+ * on every copy.
+ */
+public class PayloadCopier {
+
+    private static final MethodType GETTER = MethodType.methodType(Object.class, Object.class);
+    private static final MethodType SETTER = MethodType.methodType(void.class, Object.class, Object.class);
+
+    private final Class<?> type;
+    private final String[] names; // Stored names
+    private final MethodHandle[] getters;
+    private final MethodHandle[] setters;
+    private final Map<String, Integer> indexes = new HashMap<>();
+
+    PayloadCopier(@Nonnull MappedClass mappedClass) {
+        Preconditions.checkNotNull(mappedClass);
+        this.type = mappedClass.getClazz();
+        List<MappedField> fields = mappedClass.getPersistenceFields();
+        this.names = new String[fields.size()];
+        this.getters = new MethodHandle[fields.size()];
+        this.setters = new MethodHandle[fields.size()];
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        for (int i = 0; i < fields.size(); i++) {
+            MappedField mf = fields.get(i);
+            Field field = mf.getField();
+            field.setAccessible(true);
+            try {
+                names[i] = mf.getNameToStore();
+                getters[i] = lookup.unreflectGetter(field).asType(GETTER);
+                setters[i] = lookup.unreflectSetter(field).asType(SETTER);
+            } catch (IllegalAccessException ex) {
+                throw new IllegalStateException("Cannot access field " + field.getName() + " of Payload " + type.getSimpleName(), ex);
+            }
+            indexes.put(names[i], i);
+        }
+    }
+
+    /**
+     * Copy every persistent field
+     * @param from The source
+     * @param to The target
+     */
+    public void copy(@Nonnull Object from, @Nonnull Object to) {
+        for (int i = 0; i < getters.length; i++) {
+            copy(i, from, to);
+        }
+    }
+
+    /**
+     * Copy a single persistent field
+     * @param storedField The field's stored name
+     * @param from The source
+     * @param to The target
+     * @throws IllegalArgumentException If it isn't a persistent field of this class
+     */
+    public void copy(@Nonnull String storedField, @Nonnull Object from, @Nonnull Object to) {
+        Integer i = indexes.get(storedField);
+        Preconditions.checkArgument(i != null, "Unknown persistent field '" + storedField + "' for Payload " + type.getSimpleName());
+        copy(i, from, to);
+    }
+
+    private void copy(int i, Object from, Object to) {
+        try {
+            setters[i].invokeExact(to, getters[i].invokeExact(from));
+        } catch (Throwable ex) {
+            throw new IllegalStateException("Error copying field " + names[i] + " of Payload " + type.getSimpleName(), ex);
+        }
+    }
+
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) 2019 Jonah Seguin.  All rights reserved.  You may not modify, decompile, distribute or use any code/text contained in this document(plugin) without explicit signed permission from Jonah Seguin.
+ * www.jonahseguin.com
+ */
+
+package com.jonahseguin.payload.base.update;
+
+import com.google.common.base.Preconditions;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import com.jonahseguin.payload.base.type.Payload;
+import com.jonahseguin.payload.database.DatabaseService;
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
+import com.mongodb.DefaultDBEncoder;
+import org.bson.BSONEncoder;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Detects which persistent fields of a Payload changed since it was last loaded from or saved to MongoDB.
+ * Payloads may be marked dirty explicitly via {@link Payload#markDirty()}; otherwise a snapshot of a SHA-256 digest
+ * of each field of the mapped document, encoded as BSON, is compared to the current state.  The version field is maintained by the stores and never
+ * counts as a change.
+ */
+public class PayloadDirtyTracker<X extends Payload<?>> {
+
+    private static final String ID = "_id";
+    private static final String CLASS_NAME = "className";
+    private static final HashFunction DIGEST = Hashing.sha256();
+
+    private final DatabaseService database;
+
+    public PayloadDirtyTracker(@Nonnull DatabaseService database) {
+        Preconditions.checkNotNull(database);
+        this.database = database;
+    }
+
+    /**
+     * Record the current persistent state of a payload as its clean state
+     * @param payload The payload, as it now exists in the database
+     */
+    public void snapshot(@Nonnull X payload) {
+        Preconditions.checkNotNull(payload);
+        payload.setFieldSnapshot(hash(map(payload)));
+        payload.setDirty(false);
+    }
+
+    /**
+     * Record the persistent state of a payload as its clean state, re-using a document that was already mapped
+     * @param payload The payload
+     * @param document The mapped document that was written to the database
+     */
+    public void snapshot(@Nonnull X payload, @Nonnull DBObject document) {
+        Preconditions.checkNotNull(payload);
+        Preconditions.checkNotNull(document);
+        payload.setFieldSnapshot(hash(document));
+        payload.setDirty(false);
+    }
+
+    /**
+     * Mark a payload as clean after a partial save, without re-mapping it
+     * @param payload The payload
+     * @param changes The changes that were written
+     */
+    public void commit(@Nonnull X payload, @Nonnull PayloadChanges changes) {
+        Preconditions.checkNotNull(payload);
+        Preconditions.checkNotNull(changes);
+        payload.setFieldSnapshot(changes.getSnapshot());
+        payload.setDirty(false);
+    }
+
+    /**
+     * Refresh the snapshot of only some fields after they were written by a field-level update; other fields keep
+     * their snapshot, so changes to them are still detected.
+     * @param payload The payload
+     * @param document The mapped document of the payload, after the update was applied to it
+     * @param storedFields The top-level stored fields that were updated
+     */
+    public void commit(@Nonnull X payload, @Nonnull DBObject document, @Nonnull Collection<String> storedFields) {
+        Preconditions.checkNotNull(payload);
+        Preconditions.checkNotNull(document);
+        Preconditions.checkNotNull(storedFields);
+        Map<String, HashCode> previous = payload.getFieldSnapshot();
+        if (previous == null) {
+            return; // Never snapshotted: will be saved in full anyways
+        }
+        Map<String, HashCode> snapshot = new HashMap<>(previous);
+        BSONEncoder encoder = new DefaultDBEncoder();
+        for (String field : storedFields) {
+            if (document.containsField(field)) {
+                snapshot.put(field, digest(encoder, field, document.get(field)));
+            } else {
+                snapshot.remove(field);
+            }
+        }
+        payload.setFieldSnapshot(snapshot);
+    }
+
+    /**
+     * Compute the changed persistent fields of a payload
+     * @param payload The payload
+     * @return The changes, or null if the payload has no snapshot (and must be saved in full)
+     */
+    @Nullable
+    public PayloadChanges changes(@Nonnull X payload) {
+        Preconditions.checkNotNull(payload);
+        Map<String, HashCode> previous = payload.getFieldSnapshot();
+        if (previous == null) {
+            return null;
+        }
+        DBObject document = map(payload);
+        Map<String, HashCode> current = hash(document);
+        PayloadChanges changes = new PayloadChanges(current);
+        for (Map.Entry<String, HashCode> entry : current.entrySet()) {
+            if (!Objects.equals(previous.get(entry.getKey()), entry.getValue())) {
+                changes.set(entry.getKey(), document.get(entry.getKey()));
+            }
+        }
+        for (String field : previous.keySet()) {
+            if (!current.containsKey(field)) {
+                changes.unset(field);
+            }
+        }
+        return changes;
+    }
+
+    /**
+     * Whether a payload needs to be written: either it was explicitly marked dirty, it has never been
+     * snapshotted, or its field digests differ from the snapshot.
+     * @param payload The payload
+     * @param changes The result of {@link #changes(Payload)} for this payload
+     * @return True if the payload should be saved
+     */
+    public boolean needsSave(@Nonnull X payload, @Nullable PayloadChanges changes) {
+        return payload.isDirty() || changes == null || !changes.isEmpty();
+    }
+
+    /**
+     * Whether a payload has unsaved changes, checked as cheaply as possible: a payload marked dirty has changes
+     * (without mapping it), and so does one that was never snapshotted, as every load and save path snapshots it,
+     * so it was never persisted (i.e. created and cached before its first save); otherwise the snapshot is compared.
+     * @param payload The payload
+     * @return True if it has unsaved changes
+     */
+    public boolean hasKnownChanges(@Nonnull X payload) {
+        Preconditions.checkNotNull(payload);
+        if (payload.isDirty() || payload.getFieldSnapshot() == null) {
+            return true;
+        }
+        PayloadChanges changes = changes(payload);
+        return changes != null && !changes.isEmpty();
+    }
+
+    private DBObject map(X payload) {
+        return database.getMorphia().toDBObject(payload);
+    }
+
+    private Map<String, HashCode> hash(DBObject document) {
+        Map<String, HashCode> hashes = new HashMap<>();
+        BSONEncoder encoder = new DefaultDBEncoder();
+        for (String key : document.keySet()) {
+            if (!key.equals(ID) && !key.equals(CLASS_NAME) && !key.equals(PayloadVersions.FIELD)) {
+                hashes.put(key, digest(encoder, key, document.get(key)));
+            }
+        }
+        return hashes;
+    }
+
+    /**
+     * Digest a field by its encoded BSON rather than its hashCode, so that a changed value is only missed if
+     * SHA-256 collides (equal 32-bit hashes of different values are common, i.e. "Aa" and "BB")
+     */
+    private static HashCode digest(BSONEncoder encoder, String field, Object value) {
+        return DIGEST.hashBytes(encoder.encode(new BasicDBObject(field, value)));
+    }
+
+}
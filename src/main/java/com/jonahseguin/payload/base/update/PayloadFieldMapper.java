@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2019 Jonah Seguin.  All rights reserved.  You may not modify, decompile, distribute or use any code/text contained in this document(plugin) without explicit signed permission from Jonah Seguin.
+ * www.jonahseguin.com
+ */
+
+package com.jonahseguin.payload.base.update;
+
+import com.google.common.base.Preconditions;
+import com.jonahseguin.payload.base.type.Payload;
+import com.jonahseguin.payload.database.DatabaseService;
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
+import dev.morphia.mapping.MappedClass;
+import dev.morphia.mapping.MappedField;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Resolves the persistent fields of a Payload class through its Morphia mapping, so that single fields can be
+ * written to and read from MongoDB documents without mapping (or copying) the whole Payload.
+ */
+public class PayloadFieldMapper<X extends Payload<?>> {
+
+    private static final String ID = "_id";
+
+    private final DatabaseService database;
+    private final Class<X> type;
+    private volatile MappedClass mappedClass = null;
+    private final ConcurrentMap<Class<?>, PayloadCopier> copiers = new ConcurrentHashMap<>(); // Also holds subclasses of the Payload class
+
+    public PayloadFieldMapper(@Nonnull DatabaseService database, @Nonnull Class<X> type) {
+        Preconditions.checkNotNull(database);
+        Preconditions.checkNotNull(type);
+        this.database = database;
+        this.type = type;
+    }
+
+    /**
+     * Resolve a field path to its stored path.  The first element may be the Java field name or the stored name;
+     * any further (dotted) elements address embedded documents and are left as-is.
+     * @param path The field path, i.e. "kills" or "stats.kills"
+     * @return The stored path
+     * @throws IllegalArgumentException If the first element is not a persistent field, or is the document id
+     */
+    @Nonnull
+    public String storedPath(@Nonnull String path) {
+        Preconditions.checkNotNull(path);
+        int dot = path.indexOf('.');
+        String field = dot < 0 ? path : path.substring(0, dot);
+        String stored = field(field).getNameToStore();
+        Preconditions.checkArgument(!stored.equals(ID), "Cannot update the id of a Payload");
+        Preconditions.checkArgument(!stored.equals(PayloadVersions.FIELD), "The version of a Payload is maintained by Payload");
+        return dot < 0 ? stored : stored + path.substring(dot);
+    }
+
+    /**
+     * @param storedPath A stored path, from {@link #storedPath(String)}
+     * @return The top-level stored field the path belongs to
+     */
+    @Nonnull
+    public String storedField(@Nonnull String storedPath) {
+        int dot = storedPath.indexOf('.');
+        return dot < 0 ? storedPath : storedPath.substring(0, dot);
+    }
+
+    /**
+     * Convert a Java value (embedded object, enum, collection, ...) to the value Morphia would store for it
+     * @param value The value
+     * @return The stored value
+     */
+    @Nullable
+    public Object toStored(@Nullable Object value) {
+        if (value == null) {
+            return null;
+        }
+        return database.getMorphia().getMapper().toMongoObject(null, null, value);
+    }
+
+    /**
+     * Map a (full or partial) document to a new, detached Payload instance.  Fields missing from the document keep
+     * their defaults.
+     * @param document The document
+     * @return The Payload
+     */
+    @Nonnull
+    public X decode(@Nonnull DBObject document) {
+        Preconditions.checkNotNull(document);
+        return database.getMorphia().fromDBObject(database.getDatastore(), type, document);
+    }
+
+    /**
+     * @return The top-level stored names of every persistent field, except the id and version
+     */
+    @Nonnull
+    public Set<String> getStoredFields() {
+        Set<String> fields = new LinkedHashSet<>();
+        for (MappedField mf : mappedClass().getPersistenceFields()) {
+            fields.add(mf.getNameToStore());
+        }
+        fields.remove(ID);
+        fields.remove(PayloadVersions.FIELD);
+        return fields;
+    }
+
+    /**
+     * Copy the values of some stored fields from one Payload to another
+     * @param from The source
+     * @param to The target
+     * @param storedFields Top-level stored field names
+     */
+    public void copy(@Nonnull X from, @Nonnull X to, @Nonnull Collection<String> storedFields) {
+        Preconditions.checkNotNull(from);
+        Preconditions.checkNotNull(to);
+        Preconditions.checkNotNull(storedFields);
+        PayloadCopier copier = copier(to.getClass());
+        for (String storedField : storedFields) {
+            copier.copy(field(storedField).getNameToStore(), from, to);
+        }
+    }
+
+    /**
+     * Copy every persistent field from one Payload to another
+     * @param from The source
+     * @param to The target
+     */
+    public void copyAll(@Nonnull X from, @Nonnull X to) {
+        Preconditions.checkNotNull(from);
+        Preconditions.checkNotNull(to);
+        copier(to.getClass()).copy(from, to);
+    }
+
+    /**
+     * @param type The Payload class (or a subclass of it)
+     * @return The copier for the class, created once per class
+     */
+    @Nonnull
+    public PayloadCopier copier(@Nonnull Class<?> type) {
+        Preconditions.checkNotNull(type);
+        PayloadCopier copier = copiers.get(type);
+        if (copier == null) {
+            copier = copiers.computeIfAbsent(type, t -> new PayloadCopier(database.getMorphia().getMapper().getMappedClass(t)));
+        }
+        return copier;
+    }
+
+    /**
+     * @param document A mapped document
+     * @param storedFields Top-level stored field names
+     * @return A document with only the given fields (missing fields are included as null)
+     */
+    @Nonnull
+    public DBObject select(@Nonnull DBObject document, @Nonnull Collection<String> storedFields) {
+        Preconditions.checkNotNull(document);
+        Preconditions.checkNotNull(storedFields);
+        DBObject selected = new BasicDBObject();
+        for (String storedField : storedFields) {
+            selected.put(storedField, document.get(storedField));
+        }
+        return selected;
+    }
+
+    private MappedClass mappedClass() {
+        MappedClass mc = mappedClass;
+        if (mc == null) {
+            mc = database.getMorphia().getMapper().getMappedClass(type);
+            mappedClass = mc;
+        }
+        return mc;
+    }
+
+    private MappedField field(String name) {
+        MappedClass mc = mappedClass();
+        MappedField mf = mc.getMappedField(name);
+        if (mf == null) {
+            mf = mc.getMappedFieldByJavaField(name);
+        }
+        Preconditions.checkArgument(mf != null, "Unknown persistent field '" + name + "' for Payload " + type.getSimpleName());
+        return mf;
+    }
+
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2019 Jonah Seguin.  All rights reserved.  You may not modify, decompile, distribute or use any code/text contained in this document(plugin) without explicit signed permission from Jonah Seguin.
+ * www.jonahseguin.com
+ */
+
+package com.jonahseguin.payload.base.update;
+
+import com.google.common.base.Preconditions;
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoException;
+import org.bson.types.ObjectId;
+
+import javax.annotation.Nonnull;
+import java.util.Arrays;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Helpers for the persisted version of Payloads ({@link com.jonahseguin.payload.base.type.Payload#getPayloadVersion()}).
+ * Writes are conditional on the version the local copy is based on: a write filtered by {@link #query(ObjectId, long)}
+ * with upsert enabled either replaces that exact version, inserts a new document, or fails with a duplicate key error
+ * because another server wrote a newer version in the meantime (a conflict).
+ */
+public final class PayloadVersions {
+
+    public static final String FIELD = "payloadVersion"; // Stored name of Payload#getPayloadVersion
+    private static final String ID = "_id";
+
+    private PayloadVersions() {
+    }
+
+    /**
+     * @param document A mapped document
+     * @return The version stored in the document (0 for documents written before versions existed)
+     */
+    public static long version(@Nonnull DBObject document) {
+        Object version = document.get(FIELD);
+        return version instanceof Number ? ((Number) version).longValue() : 0;
+    }
+
+    /**
+     * @param id The document id
+     * @param expected The version the write is based on
+     * @return A filter matching the document only while it still has the expected version; documents written before
+     * versions existed match version 0
+     */
+    @Nonnull
+    public static DBObject query(@Nonnull ObjectId id, long expected) {
+        Preconditions.checkNotNull(id);
+        Object version = expected == 0 ? new BasicDBObject("$in", Arrays.asList(0L, null)) : expected;
+        return new BasicDBObject(ID, id).append(FIELD, version);
+    }
+
+    /**
+     * @param ex An error from a conditional write
+     * @return True if the write failed because the document has a different version
+     */
+    public static boolean isConflict(@Nonnull Throwable ex) {
+        Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+        return cause instanceof MongoException && isConflict(((MongoException) cause).getCode());
+    }
+
+    /**
+     * @param code A MongoDB error code (i.e. of a bulk write error)
+     * @return True if it is a duplicate key error, which a conditional upsert raises on a version conflict
+     */
+    public static boolean isConflict(int code) {
+        return ErrorCategory.fromErrorCode(code) == ErrorCategory.DUPLICATE_KEY;
+    }
+
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2019 Jonah Seguin.  All rights reserved.  You may not modify, decompile, distribute or use any code/text contained in this document(plugin) without explicit signed permission from Jonah Seguin.
+ * www.jonahseguin.com
+ */
+
+package com.jonahseguin.payload.base.update;
+
+import com.google.common.base.Preconditions;
+import com.mongodb.BasicDBList;
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Field-level update operators ($set, $inc, $push, $pull) for {@link com.jonahseguin.payload.base.Cache#update},
+ * applied atomically by MongoDB instead of re-writing the whole document.
+ * Fields are named by their Java field name (or stored name); dotted paths into embedded documents are allowed.
+ * A field path may only be used by one operator per update.  Every update also increments the Payload's version.
+ */
+public class UpdateOps {
+
+    private final Map<String, Object> set = new LinkedHashMap<>();
+    private final Map<String, Number> inc = new LinkedHashMap<>();
+    private final Map<String, List<Object>> push = new LinkedHashMap<>();
+    private final Map<String, List<Object>> pull = new LinkedHashMap<>();
+
+    public UpdateOps set(@Nonnull String field, @Nullable Object value) {
+        claim(field, set);
+        set.put(field, value);
+        return this;
+    }
+
+    public UpdateOps inc(@Nonnull String field, @Nonnull Number amount) {
+        Preconditions.checkNotNull(amount);
+        claim(field, inc);
+        inc.merge(field, amount, UpdateOps::add);
+        return this;
+    }
+
+    public UpdateOps push(@Nonnull String field, @Nonnull Object value) {
+        Preconditions.checkNotNull(value);
+        claim(field, push);
+        push.computeIfAbsent(field, f -> new ArrayList<>()).add(value);
+        return this;
+    }
+
+    public UpdateOps pull(@Nonnull String field, @Nonnull Object value) {
+        Preconditions.checkNotNull(value);
+        claim(field, pull);
+        pull.computeIfAbsent(field, f -> new ArrayList<>()).add(value);
+        return this;
+    }
+
+    public boolean isEmpty() {
+        return set.isEmpty() && inc.isEmpty() && push.isEmpty() && pull.isEmpty();
+    }
+
+    /**
+     * @param fields The field mapper of the Payload class
+     * @return The top-level stored fields changed by this update
+     */
+    @Nonnull
+    public Set<String> getStoredFields(@Nonnull PayloadFieldMapper<?> fields) {
+        Set<String> stored = new LinkedHashSet<>();
+        for (Map<String, ?> operator : operators()) {
+            for (String field : operator.keySet()) {
+                stored.add(fields.storedField(fields.storedPath(field)));
+            }
+        }
+        return stored;
+    }
+
+    /**
+     * @param fields The field mapper of the Payload class
+     * @return The MongoDB update document
+     * @throws IllegalArgumentException If a field is not a persistent field of the Payload
+     */
+    @Nonnull
+    public DBObject toUpdate(@Nonnull PayloadFieldMapper<?> fields) {
+        Preconditions.checkNotNull(fields);
+        BasicDBObject update = new BasicDBObject();
+        if (!set.isEmpty()) {
+            BasicDBObject doc = new BasicDBObject();
+            set.forEach((field, value) -> doc.put(fields.storedPath(field), fields.toStored(value)));
+            update.put("$set", doc);
+        }
+        BasicDBObject increments = new BasicDBObject();
+        inc.forEach((field, amount) -> increments.put(fields.storedPath(field), amount));
+        increments.put(PayloadVersions.FIELD, 1);
+        update.put("$inc", increments);
+        if (!push.isEmpty()) {
+            BasicDBObject doc = new BasicDBObject();
+            push.forEach((field, values) -> doc.put(fields.storedPath(field), new BasicDBObject("$each", toStored(fields, values))));
+            update.put("$push", doc);
+        }
+        if (!pull.isEmpty()) {
+            BasicDBObject doc = new BasicDBObject();
+            pull.forEach((field, values) -> doc.put(fields.storedPath(field), new BasicDBObject("$in", toStored(fields, values))));
+            update.put("$pull", doc);
+        }
+        return update;
+    }
+
+    private List<Map<String, ?>> operators() {
+        List<Map<String, ?>> operators = new ArrayList<>(4);
+        Collections.addAll(operators, set, inc, push, pull);
+        return operators;
+    }
+
+    private void claim(String field, Map<String, ?> operator) {
+        Preconditions.checkNotNull(field);
+        for (Map<String, ?> other : operators()) {
+            Preconditions.checkArgument(other == operator || !other.containsKey(field), "Field '" + field + "' is already used by another operator in this update");
+        }
+    }
+
+    private static BasicDBList toStored(PayloadFieldMapper<?> fields, List<Object> values) {
+        BasicDBList list = new BasicDBList();
+        for (Object value : values) {
+            list.add(fields.toStored(value));
+        }
+        return list;
+    }
+
+    private static Number add(Number a, Number b) {
+        if (a instanceof Double || a instanceof Float || b instanceof Double || b instanceof Float) {
+            return a.doubleValue() + b.doubleValue();
+        }
+        if (a instanceof Long || b instanceof Long) {
+            return a.longValue() + b.longValue();
+        }
+        return a.intValue() + b.intValue();
+    }
+
+}
@@ -53,6 +53,8 @@ public class PCommandHandler implements CommandExecutor, LangModule {
         register(injector.getInstance(CmdDatabaseList.class));
         register(injector.getInstance(CmdDatabase.class));
         register(injector.getInstance(CmdServers.class));
+        register(injector.getInstance(CmdExecutor.class));
+        register(injector.getInstance(CmdReshard.class));
     }
 
     @Override
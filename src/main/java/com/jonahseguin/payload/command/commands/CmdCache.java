@@ -7,11 +7,16 @@ package com.jonahseguin.payload.command.commands;
 
 import com.google.inject.Inject;
 import com.jonahseguin.payload.PayloadAPI;
+import com.jonahseguin.payload.PayloadMode;
 import com.jonahseguin.payload.base.Cache;
 import com.jonahseguin.payload.base.PayloadCache;
 import com.jonahseguin.payload.base.PayloadPermission;
+import com.jonahseguin.payload.base.eviction.EvictionStats;
+import com.jonahseguin.payload.base.network.NetworkStorageStats;
 import com.jonahseguin.payload.command.CmdArgs;
 import com.jonahseguin.payload.command.PayloadCommand;
+import com.jonahseguin.payload.mode.profile.ProfileCache;
+import com.jonahseguin.payload.mode.profile.ProfileLoginStats;
 
 public class CmdCache implements PayloadCommand {
 
@@ -34,6 +39,27 @@ public class CmdCache implements PayloadCommand {
         args.msg("&7***** &6Payload Cache: {0} &7*****", cacheName);
         args.msg("&7{0} objects currently cached", cache.cachedObjectCount() + "");
         args.msg("&7Current State: {0}", cache.isRunning() ? "&aRunning" : "&cNot running");
+        if (cache.getEvictor() != null) {
+            EvictionStats eviction = cache.getEvictor().getStats();
+            args.msg("&7Eviction ({0}&7, max. {1}): &e{2} &7expired, &e{3} &7evicted, &e{4} &7kept (online), &e{5} &7kept (unsaved)",
+                    cache.getSettings().getEvictionPolicy().name(), (cache.getSettings().getMaxLocalSize() > 0 ? cache.getSettings().getMaxLocalSize() + "" : "unbounded"),
+                    eviction.getExpired() + "", eviction.getEvicted() + "", eviction.getSkippedPinned() + "", eviction.getSkippedDirty() + "");
+        }
+        if (cache instanceof ProfileCache) {
+            ProfileLoginStats login = ((ProfileCache) cache).getLoginStats();
+            args.msg("&7Login: &e{0} &7loaded, avg. &e{1}ms&7, max. &e{2}ms&7, last &e{3}ms&7, &e{4} &7timed out",
+                    login.getLogins() + "", login.getAverageMillis() + "", login.getMaxMillis() + "", login.getLastMillis() + "", login.getTimeouts() + "");
+        }
+        if (cache.getMode().equals(PayloadMode.NETWORK_NODE)) {
+            NetworkStorageStats network = cache.getNetworkService().getStorageStats();
+            args.msg("&7Redis ({0}&7, expiry {1}): &e{2} &7live, &e{3} &7legacy, &e{4}&7/&e{5} &7reads missed (expired/absent), &e{6} &7migrated",
+                    cache.getSettings().getRedisStorageMode().name(), (cache.getSettings().getRedisExpiryTimeSeconds() > 0 ? cache.getSettings().getRedisExpiryTimeSeconds() + "s" : "never"),
+                    (network.getLiveEntries() >= 0 ? network.getLiveEntries() + "" : "?"), (network.getLegacyEntries() >= 0 ? network.getLegacyEntries() + "" : "?"),
+                    network.getMisses() + "", network.getReads() + "", network.getMigrated() + "");
+            if (network.getShards() > 0) {
+                args.msg("&7Redis shards: &e{0}{1}", network.getShards() + "", (network.getPreviousShards() > 0 ? " &7(resharding from &e" + network.getPreviousShards() + "&7)" : ""));
+            }
+        }
         if (cache.getDatabase() != null) {
             if (cache.requireMongoDb()) {
                 args.msg("&7MongoDB Status: {0} &7(Init: {1}&7)", (cache.getDatabase().getState().isMongoConnected() ? "&aConnected" : "&cDisconnected"), (cache.getDatabase().getState().isMongoInitConnect() ? "&aYes" : "&cNo"));
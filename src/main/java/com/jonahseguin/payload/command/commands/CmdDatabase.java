@@ -36,6 +36,11 @@ public class CmdDatabase implements PayloadCommand {
         args.msg("&7MongoDB: {0}", (database.getState().isMongoConnected() ? "&aConnected" : "&cDisconnected"));
         args.msg("&7Redis: {0}", (database.getState().isRedisConnected() ? "&aConnected" : "&cDisconnected"));
         args.msg("&7Registered Servers: &6{0}", database.getServerService().getServers().size() + "");
+        if (database.getPubSubService() != null) {
+            args.msg("&7Pub/Sub: {0}", (database.getPubSubService().isConnected() ? "&aConnected" : "&cDisconnected"));
+            database.getPubSubService().getChannelStats().forEach((channel, stats) ->
+                    args.msg("&7- {0}: &6{1} &7msgs, &6{2}&7/s", channel, stats.getMessages() + "", String.format("%.2f", stats.getRate())));
+        }
         args.msg("&7Use '/payload servers {0}' to view a list of registered servers in this database for this network", database.getName());
     }
 
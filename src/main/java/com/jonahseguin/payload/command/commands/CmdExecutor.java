@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2019 Jonah Seguin.  All rights reserved.  You may not modify, decompile, distribute or use any code/text contained in this document(plugin) without explicit signed permission from Jonah Seguin.
+ * www.jonahseguin.com
+ */
+
+package com.jonahseguin.payload.command.commands;
+
+import com.google.inject.Inject;
+import com.jonahseguin.payload.base.PayloadPermission;
+import com.jonahseguin.payload.base.executor.PayloadExecutor;
+import com.jonahseguin.payload.base.executor.PayloadPool;
+import com.jonahseguin.payload.command.CmdArgs;
+import com.jonahseguin.payload.command.PayloadCommand;
+
+public class CmdExecutor implements PayloadCommand {
+
+    private final PayloadExecutor executor;
+
+    @Inject
+    public CmdExecutor(PayloadExecutor executor) {
+        this.executor = executor;
+    }
+
+    @Override
+    public void execute(CmdArgs args) {
+        args.msg("&7***** &6Payload Executor &7*****");
+        args.msg("&7Mode: {0}", executor.isVirtual() ? "&aVirtual threads" : "&ePlatform threads");
+        showPool(args, executor.getIOPool());
+        showPool(args, executor.getCPUPool());
+    }
+
+    private void showPool(CmdArgs args, PayloadPool pool) {
+        args.msg("&7- &e{0}&7: &6{1}&7/{2} active (peak {3}), &6{4} &7queued",
+                pool.getName(), pool.getActiveCount() + "", pool.getMaxConcurrency() + "", pool.getPeakActive().get() + "", pool.getQueueDepth() + "");
+        args.msg("&7    {0} submitted, {1} completed, {2} failed, {3} ran on caller (backpressure), {4} rejected on main thread",
+                pool.getSubmitted().get() + "", pool.getCompleted().get() + "", pool.getFailed().get() + "", pool.getCallerRuns().get() + "", pool.getRejected().get() + "");
+    }
+
+    @Override
+    public String name() {
+        return "executor";
+    }
+
+    @Override
+    public String[] aliases() {
+        return new String[]{"exec", "threads", "pools"};
+    }
+
+    @Override
+    public String desc() {
+        return "View thread pool metrics";
+    }
+
+    @Override
+    public PayloadPermission permission() {
+        return PayloadPermission.ADMIN;
+    }
+
+    @Override
+    public String usage() {
+        return "";
+    }
+
+    @Override
+    public boolean playerOnly() {
+        return false;
+    }
+
+    @Override
+    public int minArgs() {
+        return 0;
+    }
+}
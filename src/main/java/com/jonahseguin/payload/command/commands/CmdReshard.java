@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2019 Jonah Seguin.  All rights reserved.  You may not modify, decompile, distribute or use any code/text contained in this document(plugin) without explicit signed permission from Jonah Seguin.
+ * www.jonahseguin.com
+ */
+
+package com.jonahseguin.payload.command.commands;
+
+import com.google.inject.Inject;
+import com.jonahseguin.payload.PayloadAPI;
+import com.jonahseguin.payload.PayloadMode;
+import com.jonahseguin.payload.PayloadPlugin;
+import com.jonahseguin.payload.base.Cache;
+import com.jonahseguin.payload.base.PayloadPermission;
+import com.jonahseguin.payload.command.CmdArgs;
+import com.jonahseguin.payload.command.PayloadCommand;
+
+public class CmdReshard implements PayloadCommand {
+
+    private final PayloadAPI api;
+    private final PayloadPlugin payloadPlugin;
+
+    @Inject
+    public CmdReshard(PayloadAPI api, PayloadPlugin payloadPlugin) {
+        this.api = api;
+        this.payloadPlugin = payloadPlugin;
+    }
+
+    @Override
+    public void execute(CmdArgs args) {
+        String cacheName = args.arg(0);
+        Cache cache = api.getCache(cacheName);
+        if (cache == null) {
+            args.msg("&cA cache with the name '{0}' does not exist.  Type /payload caches for a list of caches.", cacheName);
+            return;
+        }
+        if (!cache.getMode().equals(PayloadMode.NETWORK_NODE)) {
+            args.msg("&cCache '{0}' is not in network node mode, and does not store anything in Redis.", cacheName);
+            return;
+        }
+        int shards;
+        try {
+            shards = Integer.parseInt(args.arg(1));
+        } catch (NumberFormatException ex) {
+            args.msg("&cShards must be a number: {0}", args.arg(1));
+            return;
+        }
+        if (shards < 1) {
+            args.msg("&cShards must be at least 1.");
+            return;
+        }
+        args.msg("&7Payload: &6Resharding cache '{0}' to {1} shards...", cacheName, shards + "");
+        payloadPlugin.getServer().getScheduler().runTaskAsynchronously(payloadPlugin, () -> {
+            try {
+                int moved = cache.getNetworkService().reshard(shards);
+                args.msg("&7Payload: &6Reshard of cache '{0}' complete, &a{1} &6entries moved.", cacheName, moved + "");
+            } catch (IllegalStateException ex) {
+                args.msg("&cCould not reshard cache '{0}': {1}", cacheName, ex.getMessage());
+            } catch (Exception ex) {
+                cache.getErrorService().capture(ex, "Error resharding cache " + cacheName);
+                args.msg("&cError resharding cache '{0}', see console.  Run the reshard again to finish it.", cacheName);
+            }
+        });
+    }
+
+    @Override
+    public String name() {
+        return "reshard";
+    }
+
+    @Override
+    public String[] aliases() {
+        return new String[]{"shards"};
+    }
+
+    @Override
+    public String desc() {
+        return "Spread a cache's Redis entries over a different number of shards (online)";
+    }
+
+    @Override
+    public PayloadPermission permission() {
+        return PayloadPermission.ADMIN;
+    }
+
+    @Override
+    public String usage() {
+        return "<cache> <shards>";
+    }
+
+    @Override
+    public boolean playerOnly() {
+        return false;
+    }
+
+    @Override
+    public int minArgs() {
+        return 2;
+    }
+}
@@ -15,6 +15,8 @@ import com.jonahseguin.payload.annotation.Database;
 import com.jonahseguin.payload.base.error.ErrorService;
 import com.jonahseguin.payload.base.handshake.HandshakeService;
 import com.jonahseguin.payload.base.handshake.PayloadHandshakeService;
+import com.jonahseguin.payload.base.pubsub.PayloadPubSubService;
+import com.jonahseguin.payload.base.pubsub.PubSubService;
 import com.jonahseguin.payload.server.PayloadServerService;
 import com.jonahseguin.payload.server.ServerService;
 
@@ -60,6 +62,18 @@ public class DatabaseModule extends AbstractModule {
         }
     }
 
+    @Provides
+    @Singleton
+    PubSubService providePubSubService(PayloadAPI api, Injector injector) {
+        if (api.isPubSubServiceRegistered(name)) {
+            return api.getPubSubService(name);
+        } else {
+            PubSubService service = injector.getInstance(PayloadPubSubService.class);
+            api.registerPubSubService(service);
+            return service;
+        }
+    }
+
     @Provides
     @Singleton
     HandshakeService provideHandshakeService(PayloadAPI api, Injector injector) {
@@ -7,6 +7,8 @@ package com.jonahseguin.payload.database;
 
 import com.jonahseguin.payload.base.Service;
 import com.jonahseguin.payload.base.error.ErrorService;
+import com.jonahseguin.payload.base.pubsub.PubSubService;
+import com.jonahseguin.payload.database.redis.RedisBatch;
 import com.jonahseguin.payload.server.ServerService;
 import com.mongodb.MongoClient;
 import com.mongodb.client.MongoDatabase;
@@ -16,6 +18,7 @@ import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisPool;
 
 import javax.annotation.Nonnull;
+import java.util.List;
 import java.util.Set;
 
 public interface DatabaseService extends Service {
@@ -28,14 +31,43 @@ public interface DatabaseService extends Service {
 
     MongoDatabase getDatabase();
 
+    /**
+     * @return The database the datastore uses, for the async. MongoDB driver
+     */
+    com.mongodb.async.client.MongoDatabase getAsyncDatabase();
+
     Jedis getJedisResource();
 
     Jedis getMonitorJedis();
 
     JedisPool getJedisPool();
 
+    /**
+     * @return True if data is stored in a Redis Cluster; {@link #getJedisResource()} is then only suitable for pub/sub
+     */
+    boolean isRedisCluster();
+
+    /**
+     * Create a batch of Redis data commands, routed to the right node when using a Redis Cluster
+     * @return A new batch
+     */
+    RedisBatch createRedisBatch();
+
+    /**
+     * @param key A key
+     * @return A connection to the node holding the key (for commands that can't be batched, i.e. HSCAN)
+     */
+    Jedis getRedisResource(@Nonnull byte[] key);
+
+    /**
+     * @return Connection pools of every node holding data: the standalone Redis, or every cluster master
+     */
+    List<JedisPool> getRedisNodes();
+
     ServerService getServerService();
 
+    PubSubService getPubSubService();
+
     boolean isConnected();
 
     boolean canFunction(@Nonnull DatabaseDependent dependent);
@@ -13,12 +13,15 @@ import com.jonahseguin.payload.PayloadPlugin;
 import com.jonahseguin.payload.annotation.Database;
 import com.jonahseguin.payload.base.error.ErrorService;
 import com.jonahseguin.payload.base.exception.runtime.PayloadConfigException;
+import com.jonahseguin.payload.base.pubsub.PubSubService;
 import com.jonahseguin.payload.database.mongo.PayloadMongo;
 import com.jonahseguin.payload.database.mongo.PayloadMongoMonitor;
 import com.jonahseguin.payload.database.redis.PayloadRedis;
+import com.jonahseguin.payload.database.redis.PayloadRedisCluster;
 import com.jonahseguin.payload.database.redis.PayloadRedisMonitor;
 import com.jonahseguin.payload.server.ServerService;
 import com.mongodb.*;
+import com.mongodb.async.client.MongoClients;
 import com.mongodb.client.MongoDatabase;
 import lombok.Getter;
 import lombok.Setter;
@@ -27,6 +30,7 @@ import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.configuration.InvalidConfigurationException;
 import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.plugin.Plugin;
+import redis.clients.jedis.HostAndPort;
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisPool;
 
@@ -34,8 +38,11 @@ import java.io.*;
 import java.net.URI;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 @Getter
 @Setter
@@ -51,16 +58,19 @@ public class InternalPayloadDatabase implements PayloadDatabase {
     private final Injector injector;
 
     private ServerService serverService = null;
+    private PubSubService pubSubService = null;
     private boolean running = false;
 
     // MongoDB
     private PayloadMongo payloadMongo = null;
     private MongoClient mongoClient = null;
     private MongoDatabase database = null;
+    private com.mongodb.async.client.MongoClient asyncMongoClient = null;
 
     // Redis
     private PayloadRedis payloadRedis = null;
     private JedisPool jedisPool = null;
+    private PayloadRedisCluster redisCluster = null; // Only when connecting to a Redis Cluster
     private Jedis monitorJedis = null;
     private PayloadRedisMonitor redisMonitor = null;
 
@@ -80,6 +90,12 @@ public class InternalPayloadDatabase implements PayloadDatabase {
         boolean mongo = this.connectMongo();
         boolean redis = this.connectRedis();
         boolean server = true;
+        if (pubSubService == null) {
+            pubSubService = injector.getInstance(PubSubService.class);
+        }
+        if (!pubSubService.isRunning()) {
+            pubSubService.start();
+        }
         if (serverService == null) {
             serverService = injector.getInstance(ServerService.class);
         }
@@ -97,6 +113,9 @@ public class InternalPayloadDatabase implements PayloadDatabase {
         if (serverService != null) {
             server = serverService.shutdown();
         }
+        if (pubSubService != null && pubSubService.isRunning()) {
+            pubSubService.shutdown();
+        }
         if (this.redisMonitor != null) {
             this.redisMonitor.stop();
         }
@@ -171,6 +190,16 @@ public class InternalPayloadDatabase implements PayloadDatabase {
                 }
             }
 
+            if (this.redisCluster == null && payloadRedis.isCluster()) {
+                Preconditions.checkState(!payloadRedis.getClusterNodes().isEmpty(), "Redis cluster is enabled but no cluster nodes are configured for database " + name);
+                List<HostAndPort> nodes = payloadRedis.getClusterNodes().stream().map(HostAndPort::parseString).collect(Collectors.toList());
+                GenericObjectPoolConfig clusterPoolConfig = new GenericObjectPoolConfig();
+                clusterPoolConfig.setMaxTotal(64);
+                clusterPoolConfig.setMaxIdle(16);
+                clusterPoolConfig.setMinIdle(1);
+                this.redisCluster = PayloadRedisCluster.create(nodes, payloadRedis.isAuth() ? payloadRedis.getPassword() : null, clusterPoolConfig);
+            }
+
             if (this.monitorJedis == null) {
                 this.monitorJedis = this.jedisPool.getResource();
                 this.monitorJedis.ping();
@@ -191,10 +220,37 @@ public class InternalPayloadDatabase implements PayloadDatabase {
         }
     }
 
+    @Override
+    public synchronized com.mongodb.async.client.MongoClient getAsyncMongoClient() {
+        Preconditions.checkNotNull(payloadMongo, "Please load database " + name + " data from config before connecting");
+        if (this.asyncMongoClient == null) {
+            // Same connection details as the synchronous client
+            MongoClientSettings.Builder settings = MongoClientSettings.builder();
+            if (payloadMongo.useURI()) {
+                settings.applyConnectionString(new ConnectionString(payloadMongo.getUri()));
+            } else {
+                ServerAddress address = new ServerAddress(payloadMongo.getAddress(), payloadMongo.getPort());
+                settings.applyToClusterSettings(cluster -> cluster.hosts(Collections.singletonList(address)));
+                if (payloadMongo.isAuth()) {
+                    settings.credential(MongoCredential.createCredential(payloadMongo.getUsername(),
+                            payloadMongo.getAuthDatabase(), payloadMongo.getPassword().toCharArray()));
+                }
+            }
+            this.asyncMongoClient = MongoClients.create(settings.build());
+        }
+        return this.asyncMongoClient;
+    }
+
     private boolean disconnectMongo() {
         if (this.mongoClient != null) {
             this.mongoClient.close();
         }
+        synchronized (this) {
+            if (this.asyncMongoClient != null) {
+                this.asyncMongoClient.close();
+                this.asyncMongoClient = null;
+            }
+        }
         return true; // MongoClient will handle the disconnecting and do it safely
     }
 
@@ -202,6 +258,9 @@ public class InternalPayloadDatabase implements PayloadDatabase {
         if (this.redisMonitor != null) {
             this.redisMonitor.stop();
         }
+        if (this.redisCluster != null) {
+            this.redisCluster.close();
+        }
         this.jedisPool.close();
         return true;
     }
@@ -8,8 +8,10 @@ package com.jonahseguin.payload.database;
 
 import com.jonahseguin.payload.PayloadPlugin;
 import com.jonahseguin.payload.base.error.ErrorService;
+import com.jonahseguin.payload.base.pubsub.PubSubService;
 import com.jonahseguin.payload.database.mongo.PayloadMongo;
 import com.jonahseguin.payload.database.redis.PayloadRedis;
+import com.jonahseguin.payload.database.redis.PayloadRedisCluster;
 import com.jonahseguin.payload.database.redis.PayloadRedisMonitor;
 import com.jonahseguin.payload.server.ServerService;
 import com.mongodb.MongoClient;
@@ -44,6 +46,8 @@ public interface PayloadDatabase {
 
     ServerService getServerService();
 
+    PubSubService getPubSubService();
+
     boolean isRunning();
 
     PayloadMongo getPayloadMongo();
@@ -52,10 +56,21 @@ public interface PayloadDatabase {
 
     MongoDatabase getDatabase();
 
+    /**
+     * @return The client for the async. MongoDB driver, connected on first use (only caches using
+     * {@link com.jonahseguin.payload.database.mongo.MongoDriverType#ASYNC} need it)
+     */
+    com.mongodb.async.client.MongoClient getAsyncMongoClient();
+
     PayloadRedis getPayloadRedis();
 
     JedisPool getJedisPool();
 
+    /**
+     * @return The Redis Cluster connection, or null if not connecting to a Redis Cluster
+     */
+    PayloadRedisCluster getRedisCluster();
+
     Jedis getMonitorJedis();
 
     PayloadRedisMonitor getRedisMonitor();
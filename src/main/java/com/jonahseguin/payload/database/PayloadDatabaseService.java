@@ -11,6 +11,9 @@ import com.google.inject.Injector;
 import com.google.inject.Singleton;
 import com.jonahseguin.payload.annotation.Database;
 import com.jonahseguin.payload.base.error.ErrorService;
+import com.jonahseguin.payload.base.pubsub.PubSubService;
+import com.jonahseguin.payload.database.redis.PayloadRedisCluster;
+import com.jonahseguin.payload.database.redis.RedisBatch;
 import com.jonahseguin.payload.server.ServerService;
 import com.mongodb.MongoClient;
 import com.mongodb.client.MongoDatabase;
@@ -19,8 +22,11 @@ import dev.morphia.Morphia;
 import dev.morphia.ext.guice.GuiceExtension;
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.util.JedisClusterCRC16;
 
 import javax.annotation.Nonnull;
+import java.util.Collections;
+import java.util.List;
 import java.util.Set;
 
 @Singleton
@@ -64,6 +70,12 @@ public class PayloadDatabaseService implements DatabaseService {
         return database.getDatabase();
     }
 
+    @Override
+    public com.mongodb.async.client.MongoDatabase getAsyncDatabase() {
+        Preconditions.checkState(datastore != null, "MongoDB is not connected for database " + name);
+        return database.getAsyncMongoClient().getDatabase(datastore.getDatabase().getName());
+    }
+
     @Override
     public Datastore getDatastore() {
         return datastore;
@@ -79,6 +91,29 @@ public class PayloadDatabaseService implements DatabaseService {
         return database.getJedisPool();
     }
 
+    @Override
+    public boolean isRedisCluster() {
+        return database.getRedisCluster() != null;
+    }
+
+    @Override
+    public RedisBatch createRedisBatch() {
+        return new RedisBatch(database.getJedisPool(), database.getRedisCluster());
+    }
+
+    @Override
+    public Jedis getRedisResource(@Nonnull byte[] key) {
+        Preconditions.checkNotNull(key);
+        PayloadRedisCluster cluster = database.getRedisCluster();
+        return cluster != null ? cluster.getPool(JedisClusterCRC16.getSlot(key)).getResource() : database.getJedisPool().getResource();
+    }
+
+    @Override
+    public List<JedisPool> getRedisNodes() {
+        PayloadRedisCluster cluster = database.getRedisCluster();
+        return cluster != null ? cluster.getMasters() : Collections.singletonList(database.getJedisPool());
+    }
+
     @Override
     public boolean isConnected() {
         return database.getState().isDatabaseConnected();
@@ -95,6 +130,11 @@ public class PayloadDatabaseService implements DatabaseService {
         return serverService;
     }
 
+    @Override
+    public PubSubService getPubSubService() {
+        return database.getPubSubService();
+    }
+
     @Override
     public String getName() {
         return name;
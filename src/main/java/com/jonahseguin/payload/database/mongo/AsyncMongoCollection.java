@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2019 Jonah Seguin.  All rights reserved.  You may not modify, decompile, distribute or use any code/text contained in this document(plugin) without explicit signed permission from Jonah Seguin.
+ * www.jonahseguin.com
+ */
+
+package com.jonahseguin.payload.database.mongo;
+
+import com.google.common.base.Preconditions;
+import com.jonahseguin.payload.database.DatabaseService;
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
+import com.mongodb.MongoClient;
+import com.mongodb.async.SingleResultCallback;
+import com.mongodb.async.client.MongoCollection;
+import com.mongodb.client.model.CountOptions;
+import com.mongodb.client.model.ReplaceOptions;
+import dev.morphia.query.Query;
+import org.bson.codecs.configuration.CodecRegistries;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.bson.conversions.Bson;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A Morphia-mapped entity collection on the async. MongoDB driver.
+ * Filters are taken from Morphia {@link Query}s, so stores keep building their criteria (and applying their
+ * {@link com.jonahseguin.payload.base.type.PayloadQueryModifier}s) exactly as they do for the synchronous driver.
+ * Futures are completed on the driver's callback threads; no thread is held while an operation is in flight.
+ * @param <T> The entity type
+ */
+public class AsyncMongoCollection<T> {
+
+    private final MongoCollection<T> collection;
+
+    public AsyncMongoCollection(@Nonnull DatabaseService database, @Nonnull Class<T> type) {
+        Preconditions.checkNotNull(database);
+        Preconditions.checkNotNull(type);
+        CodecRegistry defaults = MongoClient.getDefaultCodecRegistry();
+        CodecRegistry registry = CodecRegistries.fromRegistries(
+                CodecRegistries.fromCodecs(new MorphiaEntityCodec<>(type, database.getMorphia(), database.getDatastore(), defaults)),
+                defaults);
+        String name = database.getDatastore().getCollection(type).getName();
+        this.collection = database.getAsyncDatabase().getCollection(name, type).withCodecRegistry(registry);
+    }
+
+    /**
+     * @param query The query
+     * @return Future completed with the first matching entity
+     */
+    @Nonnull
+    public CompletableFuture<Optional<T>> findFirst(@Nonnull Query<T> query) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        collection.find(filter(query)).limit(1).first(complete(future));
+        return future.thenApply(Optional::ofNullable);
+    }
+
+    /**
+     * @param query The query
+     * @param batchSize Documents per cursor batch
+     * @return Future completed with every matching entity
+     */
+    @Nonnull
+    public CompletableFuture<List<T>> find(@Nonnull Query<T> query, int batchSize) {
+        CompletableFuture<List<T>> future = new CompletableFuture<>();
+        collection.find(filter(query)).batchSize(Math.max(1, batchSize)).into(new ArrayList<>(), complete(future));
+        return future;
+    }
+
+    /**
+     * @param query The query
+     * @return Future completed with true if any document matches, without fetching it
+     */
+    @Nonnull
+    public CompletableFuture<Boolean> exists(@Nonnull Query<T> query) {
+        CompletableFuture<Long> future = new CompletableFuture<>();
+        collection.countDocuments(filter(query), new CountOptions().limit(1), complete(future));
+        return future.thenApply(count -> count > 0);
+    }
+
+    /**
+     * Replace the document matching a filter with an entity, or insert it if none matches
+     * @param filter The filter, i.e. by _id (and version)
+     * @param entity The entity
+     * @return Future completed when acknowledged
+     */
+    @Nonnull
+    public CompletableFuture<Void> save(@Nonnull DBObject filter, @Nonnull T entity) {
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        collection.replaceOne(new BasicDBObject(filter.toMap()), entity, new ReplaceOptions().upsert(true), complete(future));
+        return future.thenApply(result -> null);
+    }
+
+    /**
+     * Delete the first matching document
+     * @param query The query
+     * @return Future completed when acknowledged
+     */
+    @Nonnull
+    public CompletableFuture<Void> delete(@Nonnull Query<T> query) {
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        collection.deleteOne(filter(query), complete(future));
+        return future.thenApply(result -> null);
+    }
+
+    private static Bson filter(Query<?> query) {
+        return new BasicDBObject(query.getQueryObject().toMap());
+    }
+
+    private static <R> SingleResultCallback<R> complete(CompletableFuture<? super R> future) {
+        return (result, ex) -> {
+            if (ex != null) {
+                future.completeExceptionally(ex);
+            } else {
+                future.complete(result);
+            }
+        };
+    }
+
+}
@@ -0,0 +1,25 @@
+/*
+ * Copyright (c) 2019 Jonah Seguin.  All rights reserved.  You may not modify, decompile, distribute or use any code/text contained in this document(plugin) without explicit signed permission from Jonah Seguin.
+ * www.jonahseguin.com
+ */
+
+package com.jonahseguin.payload.database.mongo;
+
+/**
+ * Which MongoDB driver a cache's database store uses for its async. operations
+ * ({@code getAsync}, {@code getAllAsync}, {@code saveAsync}).
+ */
+public enum MongoDriverType {
+
+    /**
+     * Morphia on the synchronous driver: every in-flight operation occupies a thread in Payload's I/O pool
+     */
+    SYNC,
+    /**
+     * The async. driver: operations complete on the driver's callbacks, so the number of in-flight operations is
+     * bounded by the connection pool rather than the thread pool.  Documents are mapped by Morphia, so both drivers
+     * read and write the same format.
+     */
+    ASYNC
+
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2019 Jonah Seguin.  All rights reserved.  You may not modify, decompile, distribute or use any code/text contained in this document(plugin) without explicit signed permission from Jonah Seguin.
+ * www.jonahseguin.com
+ */
+
+package com.jonahseguin.payload.database.mongo;
+
+import com.google.common.base.Preconditions;
+import com.mongodb.DBObject;
+import dev.morphia.Datastore;
+import dev.morphia.Morphia;
+import org.bson.BsonReader;
+import org.bson.BsonWriter;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.codecs.configuration.CodecRegistry;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Codec for the async. MongoDB driver that maps entities with Morphia, so documents are identical to the ones the
+ * Morphia {@link Datastore} reads and writes (field names, embedded types, className, transient fields).
+ * @param <T> The entity type
+ */
+public class MorphiaEntityCodec<T> implements Codec<T> {
+
+    private final Class<T> type;
+    private final Morphia morphia;
+    private final Datastore datastore;
+    private final Codec<DBObject> documentCodec;
+
+    public MorphiaEntityCodec(@Nonnull Class<T> type, @Nonnull Morphia morphia, @Nonnull Datastore datastore, @Nonnull CodecRegistry registry) {
+        Preconditions.checkNotNull(type);
+        Preconditions.checkNotNull(morphia);
+        Preconditions.checkNotNull(datastore);
+        Preconditions.checkNotNull(registry);
+        this.type = type;
+        this.morphia = morphia;
+        this.datastore = datastore;
+        this.documentCodec = registry.get(DBObject.class);
+    }
+
+    @Override
+    public void encode(BsonWriter writer, T value, EncoderContext context) {
+        documentCodec.encode(writer, morphia.toDBObject(value), context);
+    }
+
+    @Override
+    public T decode(BsonReader reader, DecoderContext context) {
+        return morphia.fromDBObject(datastore, type, documentCodec.decode(reader, context));
+    }
+
+    @Override
+    public Class<T> getEncoderClass() {
+        return type;
+    }
+
+}
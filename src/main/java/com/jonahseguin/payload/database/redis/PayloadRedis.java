@@ -3,6 +3,9 @@ package com.jonahseguin.payload.database.redis;
 import lombok.Data;
 import org.bukkit.configuration.ConfigurationSection;
 
+import java.util.ArrayList;
+import java.util.List;
+
 @Data
 public class PayloadRedis {
 
@@ -17,6 +20,9 @@ public class PayloadRedis {
 
     private final int retryTimeout; // Retry connections every X seconds
 
+    private final boolean cluster; // Connect to a Redis Cluster; address/port (or uri) are still used for pub/sub, which is cluster-wide
+    private final List<String> clusterNodes; // host:port of one or more cluster nodes, the rest are discovered
+
     public static PayloadRedis fromConfig(ConfigurationSection section) {
         String address = section.getString("address");
         int port = section.getInt("port");
@@ -36,7 +42,15 @@ public class PayloadRedis {
             }
         }
 
-        return new PayloadRedis(address, port, auth, password, ssl, uri, retryTimeout);
+        boolean cluster = false;
+        List<String> clusterNodes = new ArrayList<>();
+        ConfigurationSection clusterSection = section.getConfigurationSection("cluster");
+        if (clusterSection != null) {
+            cluster = clusterSection.getBoolean("enabled", false);
+            clusterNodes.addAll(clusterSection.getStringList("nodes"));
+        }
+
+        return new PayloadRedis(address, port, auth, password, ssl, uri, retryTimeout, cluster, clusterNodes);
     }
 
     public boolean useURI() {
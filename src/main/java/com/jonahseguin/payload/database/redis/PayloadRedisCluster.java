@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2019 Jonah Seguin.  All rights reserved.  You may not modify, decompile, distribute or use any code/text contained in this document(plugin) without explicit signed permission from Jonah Seguin.
+ * www.jonahseguin.com
+ */
+
+package com.jonahseguin.payload.database.redis;
+
+import com.google.common.base.Preconditions;
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
+import redis.clients.jedis.HostAndPort;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisCluster;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.util.SafeEncoder;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A Redis Cluster connection: a {@link JedisCluster} (node discovery and connection pools per node) plus a table of which
+ * master node serves each hash slot, so that commands can be pipelined per node rather than sent one at a time.
+ */
+public class PayloadRedisCluster {
+
+    public static final int SLOTS = 16384;
+
+    private final JedisCluster cluster;
+    private final JedisPool[] slots = new JedisPool[SLOTS];
+    private volatile List<JedisPool> masters = new ArrayList<>();
+
+    public PayloadRedisCluster(@Nonnull JedisCluster cluster) {
+        Preconditions.checkNotNull(cluster);
+        this.cluster = cluster;
+        refreshSlots();
+    }
+
+    /**
+     * @return The underlying cluster client, for single commands (follows MOVED/ASK redirects itself)
+     */
+    @Nonnull
+    public JedisCluster getCluster() {
+        return cluster;
+    }
+
+    /**
+     * @param slot Hash slot
+     * @return The connection pool of the master node serving the slot
+     */
+    @Nonnull
+    public JedisPool getPool(int slot) {
+        JedisPool pool = slots[slot];
+        if (pool == null) {
+            refreshSlots();
+            pool = slots[slot];
+        }
+        Preconditions.checkState(pool != null, "No Redis Cluster node is serving slot " + slot);
+        return pool;
+    }
+
+    /**
+     * @return The connection pools of every master node
+     */
+    @Nonnull
+    public List<JedisPool> getMasters() {
+        return masters;
+    }
+
+    /**
+     * Re-read the slot table from the cluster, i.e. after a MOVED redirect
+     */
+    public synchronized void refreshSlots() {
+        Map<String, JedisPool> nodes = cluster.getClusterNodes();
+        for (JedisPool node : nodes.values()) {
+            try (Jedis jedis = node.getResource()) {
+                List<Object> ranges = jedis.clusterSlots();
+                Set<JedisPool> found = new LinkedHashSet<>();
+                for (Object o : ranges) {
+                    List<?> range = (List<?>) o;
+                    int start = ((Long) range.get(0)).intValue();
+                    int end = ((Long) range.get(1)).intValue();
+                    List<?> master = (List<?>) range.get(2);
+                    HostAndPort hostAndPort = new HostAndPort(SafeEncoder.encode((byte[]) master.get(0)), ((Long) master.get(1)).intValue());
+                    JedisPool pool = nodes.get(hostAndPort.toString()); // Unknown until the cluster client renews its own slot cache
+                    if (pool != null) {
+                        found.add(pool);
+                        for (int slot = start; slot <= end; slot++) {
+                            slots[slot] = pool;
+                        }
+                    }
+                }
+                masters = new ArrayList<>(found);
+                return;
+            } catch (Exception ignored) {
+                // Try the next node
+            }
+        }
+    }
+
+    public void close() {
+        cluster.close();
+    }
+
+    @Nonnull
+    public static PayloadRedisCluster create(@Nonnull Collection<HostAndPort> nodes, @Nullable String password, @Nonnull GenericObjectPoolConfig poolConfig) {
+        JedisCluster cluster = new JedisCluster(new LinkedHashSet<>(nodes), 2000, 2000, 5, password, poolConfig);
+        return new PayloadRedisCluster(cluster);
+    }
+
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2019 Jonah Seguin.  All rights reserved.  You may not modify, decompile, distribute or use any code/text contained in this document(plugin) without explicit signed permission from Jonah Seguin.
+ * www.jonahseguin.com
+ */
+
+package com.jonahseguin.payload.database.redis;
+
+import com.google.common.base.Preconditions;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.exceptions.JedisRedirectionException;
+import redis.clients.jedis.util.JedisClusterCRC16;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * A batch of Redis commands executed with as few round-trips as possible: one pipeline against a standalone Redis,
+ * or one pipeline per master node against a Redis Cluster (commands are routed by the slot of their key).
+ * Commands touching more than one key must only use keys in the same slot (i.e. sharing a {hash tag}).
+ */
+public class RedisBatch {
+
+    private final JedisPool pool;
+    private final PayloadRedisCluster cluster;
+    private final List<Command<?>> commands = new ArrayList<>();
+    private boolean executed = false;
+
+    /**
+     * @param pool Pool of the standalone Redis, used when cluster is null
+     * @param cluster The Redis Cluster, or null when not using a cluster
+     */
+    public RedisBatch(@Nonnull JedisPool pool, @Nullable PayloadRedisCluster cluster) {
+        Preconditions.checkNotNull(pool);
+        this.pool = pool;
+        this.cluster = cluster;
+    }
+
+    /**
+     * Queue a command
+     * @param key The key the command operates on, used to route it to the right node
+     * @param command The command, applied to the node's pipeline
+     * @param <T> Result type
+     * @return The result, available once the batch is executed
+     */
+    public <T> Supplier<T> add(@Nonnull byte[] key, @Nonnull Function<Pipeline, Response<T>> command) {
+        Preconditions.checkNotNull(key);
+        Preconditions.checkNotNull(command);
+        Preconditions.checkState(!executed, "Batch already executed");
+        Command<T> c = new Command<>(key, command);
+        commands.add(c);
+        return c::result;
+    }
+
+    public boolean isEmpty() {
+        return commands.isEmpty();
+    }
+
+    public int size() {
+        return commands.size();
+    }
+
+    /**
+     * Execute every queued command.  Commands redirected because the cluster's slots moved are retried once on the new node.
+     */
+    public void execute() {
+        Preconditions.checkState(!executed, "Batch already executed");
+        executed = true;
+        if (commands.isEmpty()) {
+            return;
+        }
+        if (cluster == null) {
+            run(pool, commands);
+            return;
+        }
+        List<Command<?>> redirected = runRouted(commands);
+        if (!redirected.isEmpty()) {
+            cluster.refreshSlots();
+            redirected = runRouted(redirected);
+            if (!redirected.isEmpty()) {
+                throw redirected.get(0).error;
+            }
+        }
+    }
+
+    private List<Command<?>> runRouted(List<Command<?>> batch) {
+        Map<JedisPool, List<Command<?>>> byNode = new LinkedHashMap<>();
+        for (Command<?> command : batch) {
+            byNode.computeIfAbsent(cluster.getPool(JedisClusterCRC16.getSlot(command.key)), k -> new ArrayList<>()).add(command);
+        }
+        List<Command<?>> redirected = new ArrayList<>();
+        byNode.forEach((node, nodeCommands) -> {
+            run(node, nodeCommands);
+            for (Command<?> command : nodeCommands) {
+                if (command.error != null) {
+                    redirected.add(command);
+                }
+            }
+        });
+        return redirected;
+    }
+
+    private void run(JedisPool node, List<Command<?>> batch) {
+        try (Jedis jedis = node.getResource()) {
+            Pipeline pipeline = jedis.pipelined();
+            for (Command<?> command : batch) {
+                command.queue(pipeline);
+            }
+            pipeline.sync();
+            for (Command<?> command : batch) {
+                command.complete();
+            }
+        }
+    }
+
+    private static class Command<T> {
+
+        private final byte[] key;
+        private final Function<Pipeline, Response<T>> command;
+        private Response<T> response = null;
+        private T result = null;
+        private JedisRedirectionException error = null;
+        private boolean done = false;
+
+        private Command(byte[] key, Function<Pipeline, Response<T>> command) {
+            this.key = key;
+            this.command = command;
+        }
+
+        private void queue(Pipeline pipeline) {
+            error = null;
+            response = command.apply(pipeline);
+        }
+
+        private void complete() {
+            try {
+                result = response.get();
+                done = true;
+            } catch (JedisRedirectionException ex) {
+                error = ex;
+            }
+        }
+
+        private T result() {
+            Preconditions.checkState(done, "Batch has not been executed");
+            return result;
+        }
+
+    }
+
+}
@@ -5,6 +5,7 @@
 
 package com.jonahseguin.payload.mode.object;
 
+import com.google.common.hash.HashCode;
 import com.google.inject.Inject;
 import com.jonahseguin.payload.base.type.Payload;
 import dev.morphia.annotations.Id;
@@ -13,6 +14,7 @@ import lombok.Setter;
 import org.bson.types.ObjectId;
 
 import javax.annotation.Nonnull;
+import java.util.Map;
 
 @Getter
 @Setter
@@ -23,8 +25,12 @@ public abstract class PayloadObject implements Payload<String> {
     protected String payloadId;
     @Id
     protected ObjectId objectId = new ObjectId();
+    protected long payloadVersion = 0; // Incremented by every write to the database
     protected transient long cachedTimestamp = System.currentTimeMillis();
+    protected transient long lastInteractionTimestamp = System.currentTimeMillis();
     protected transient long handshakeStartTimestamp = 0;
+    protected transient boolean dirty = false;
+    protected transient Map<String, HashCode> fieldSnapshot = null;
 
     @Inject
     public PayloadObject(ObjectCache cache) {
@@ -42,6 +48,11 @@ public abstract class PayloadObject implements Payload<String> {
         }
     }
 
+    @Override
+    public void markDirty() {
+        this.dirty = true;
+    }
+
     @Override
     public boolean hasValidHandshake() {
         if (handshakeStartTimestamp > 0) {
@@ -59,7 +70,7 @@ public abstract class PayloadObject implements Payload<String> {
 
     @Override
     public void interact() {
-        this.cachedTimestamp = System.currentTimeMillis();
+        this.lastInteractionTimestamp = System.currentTimeMillis();
     }
 
     @Override
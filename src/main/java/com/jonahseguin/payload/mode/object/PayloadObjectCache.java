@@ -6,25 +6,36 @@
 package com.jonahseguin.payload.mode.object;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
 import com.google.inject.Injector;
 import com.google.inject.Singleton;
 import com.jonahseguin.payload.PayloadMode;
 import com.jonahseguin.payload.base.PayloadCache;
-import com.jonahseguin.payload.base.store.PayloadStore;
+import com.jonahseguin.payload.base.store.BulkSaveResult;
+import com.jonahseguin.payload.base.store.PayloadDatabaseStore;
 import com.jonahseguin.payload.base.type.PayloadInstantiator;
+import com.jonahseguin.payload.base.update.PayloadChanges;
 import com.jonahseguin.payload.mode.object.settings.ObjectCacheSettings;
 import com.jonahseguin.payload.mode.object.store.ObjectStoreLocal;
 import com.jonahseguin.payload.mode.object.store.ObjectStoreMongo;
 import lombok.Getter;
+import org.bson.types.ObjectId;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Getter
 @Singleton
@@ -78,24 +89,64 @@ public class PayloadObjectCache<X extends PayloadObject> extends PayloadCache<St
 
     @Override
     public boolean saveNoSync(@Nonnull X payload) {
+        return saveNoSync(payload, null);
+    }
+
+    private boolean saveNoSync(@Nonnull X payload, @Nullable PayloadChanges changes) {
         boolean success = true;
         if (!localStore.save(payload)) {
             success = false;
         }
-        if (!mongoStore.save(payload)) {
+        if (!(changes == null ? mongoStore.save(payload) : mongoStore.saveChanges(payload, changes))) {
             success = false;
         }
-        if (success && mode.equals(PayloadMode.NETWORK_NODE)) {
+        return success && publishSave(payload);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> saveAsync(@Nonnull X payload) {
+        Preconditions.checkNotNull(payload);
+        boolean cached = localStore.save(payload);
+        // The database write goes through the store's async. path; only the network & sync updates need the pool
+        return mongoStore.saveAsync(payload).thenCompose(saved -> {
+            if (!saved || !cached) {
+                return CompletableFuture.completedFuture(false);
+            }
+            if (!mode.equals(PayloadMode.NETWORK_NODE) && !settings.isEnableSync()) {
+                return CompletableFuture.completedFuture(true);
+            }
+            return runAsync(() -> {
+                if (!publishSave(payload)) {
+                    return false;
+                }
+                if (settings.isEnableSync()) {
+                    sync.update(payload, null);
+                }
+                return true;
+            });
+        });
+    }
+
+    private boolean publishSave(@Nonnull X payload) {
+        if (mode.equals(PayloadMode.NETWORK_NODE)) {
             Optional<NetworkObject> o = networkService.get(payload);
             if (o.isPresent()) {
                 NetworkObject no = o.get();
                 no.markSaved();
-                if (!networkService.save(no)) {
-                    success = false;
-                }
+                return networkService.save(no);
             }
         }
-        return success;
+        return true;
+    }
+
+    @Override
+    protected boolean isHeldElsewhere(@Nonnull NetworkObject networked) {
+        return networked.isLoaded() && !networked.isThisMostRelevantServer();
+    }
+
+    @Override
+    protected void markNetworkedLoaded(@Nonnull NetworkObject networked) {
+        networked.markLoaded();
     }
 
     @Override
@@ -105,7 +156,7 @@ public class PayloadObjectCache<X extends PayloadObject> extends PayloadCache<St
 
     @Nonnull
     @Override
-    public PayloadStore<String, X> getDatabaseStore() {
+    public PayloadDatabaseStore<String, X> getDatabaseStore() {
         return mongoStore;
     }
 
@@ -127,24 +178,76 @@ public class PayloadObjectCache<X extends PayloadObject> extends PayloadCache<St
 
     @Override
     public void cacheAll() {
-        getAll().forEach(this::cache);
+        if (settings.isUseMongo()) {
+            super.cacheAll();
+        }
     }
 
     @Nonnull
     @Override
     public Set<X> getAll() {
-        final Set<X> all = new HashSet<>(localStore.getAll());
+        // Cached objects are the most recent copy; stored ones are only added if not cached
+        final Map<ObjectId, X> all = new HashMap<>();
+        localStore.getAll().forEach(x -> all.put(x.getObjectId(), x));
         if (settings.isUseMongo()) {
-            all.addAll(mongoStore.getAll().stream().filter(x -> all.stream().noneMatch(x2 -> x.getObjectId().equals(x2.getObjectId()))).collect(Collectors.toSet()));
+            try (Stream<X> stream = mongoStore.stream()) {
+                stream.forEach(x -> all.putIfAbsent(x.getObjectId(), x));
+            }
         }
-        return all;
+        return new HashSet<>(all.values());
     }
 
     @Override
     public int saveAll() {
+        int failures = 0;
+        List<X> objects = new ArrayList<>(localStore.getLocalCache().values());
+        for (List<X> batch : Lists.partition(objects, Math.max(1, settings.getSaveBatchSize()))) {
+            failures += saveBatch(batch);
+        }
+        return failures;
+    }
+
+    /**
+     * Save a batch of objects with one MongoDB bulk write, one Redis HMSET and one sync message
+     * @param batch The objects
+     * @return The number of objects that failed to save
+     */
+    private int saveBatch(@Nonnull List<X> batch) {
+        BulkSaveResult<X> result = mongoStore.saveAll(batch);
+        int failures = result.getFailureCount();
+        if (result.getSaved().isEmpty()) {
+            return failures;
+        }
+        if (mode.equals(PayloadMode.NETWORK_NODE)) {
+            Collection<NetworkObject> networked = networkService.getAll(result.getSaved()).values();
+            networked.forEach(NetworkObject::markSaved);
+            if (!networkService.saveAll(networked)) {
+                return failures + result.getSaved().size();
+            }
+        }
+        if (settings.isEnableSync()) {
+            sync.update(result.getSaved().stream().map(X::getIdentifier).collect(Collectors.toList()));
+        }
+        return failures;
+    }
+
+    @Override
+    public int saveAllChanged() {
         int failures = 0;
         for (X object : localStore.getLocalCache().values()) {
-            if (!save(object)) {
+            PayloadChanges changes = dirtyTracker.changes(object);
+            if (!dirtyTracker.needsSave(object, changes)) {
+                continue;
+            }
+            if (object.isDirty() && changes != null && changes.isEmpty()) {
+                // Explicitly marked dirty but no field hash changed (i.e. in-place mutation): write it in full
+                changes = null;
+            }
+            if (saveNoSync(object, changes)) {
+                if (settings.isEnableSync()) {
+                    sync.update(object, changes);
+                }
+            } else {
                 failures++;
             }
         }
@@ -15,6 +15,7 @@ import lombok.Setter;
 
 import javax.annotation.Nonnull;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
 @Getter
 @Setter
@@ -59,7 +60,8 @@ public class PayloadObjectController<X extends PayloadObject> implements Payload
                         load(true);
                     } else {
                         // Handshake
-                        HandshakeHandler<ObjectHandshake> h = cache.getHandshakeService().publish(new ObjectHandshake(cache, identifier));
+                        HandshakeHandler<ObjectHandshake> h = cache.getHandshakeService().publish(new ObjectHandshake(cache, identifier))
+                                .timeout(cache.getSettings().getHandshakeTimeoutSeconds(), TimeUnit.SECONDS);
                         h.waitForReply(cache.getSettings().getHandshakeTimeoutSeconds());
                         load(false);
                     }
@@ -16,6 +16,7 @@ public class ObjectCacheSettings extends CacheSettings {
     private boolean useRedis = true;
     private boolean useMongo = true;
     private boolean createOnNull = false;
-    private int handshakeTimeoutSeconds = 5;
+    private int localExpiryTimeSeconds = 0; // Objects are kept in the local store until uncached by default
+    private int redisExpiryTimeSeconds = 0; // Network objects are kept in Redis forever by default
 
 }
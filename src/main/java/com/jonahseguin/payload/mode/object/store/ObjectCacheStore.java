@@ -5,11 +5,18 @@
 
 package com.jonahseguin.payload.mode.object.store;
 
+import com.google.common.base.Preconditions;
 import com.jonahseguin.payload.base.store.PayloadStore;
 import com.jonahseguin.payload.mode.object.PayloadObject;
 import com.jonahseguin.payload.mode.object.PayloadObjectCache;
 import lombok.Getter;
 
+import javax.annotation.Nonnull;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
 @Getter
 public abstract class ObjectCacheStore<X extends PayloadObject> implements PayloadStore<String, X> {
 
@@ -18,4 +25,26 @@ public abstract class ObjectCacheStore<X extends PayloadObject> implements Paylo
     public ObjectCacheStore(PayloadObjectCache<X> objectCache) {
         this.cache = objectCache;
     }
+
+    @Nonnull
+    @Override
+    public CompletableFuture<Optional<X>> getAsync(@Nonnull String key) {
+        Preconditions.checkNotNull(key);
+        return isDatabase() ? cache.runAsync(() -> get(key)) : CompletableFuture.completedFuture(get(key));
+    }
+
+    @Nonnull
+    @Override
+    public CompletableFuture<Map<String, X>> getAllAsync(@Nonnull Collection<String> keys) {
+        Preconditions.checkNotNull(keys);
+        return isDatabase() ? cache.runAsync(() -> getAll(keys)) : CompletableFuture.completedFuture(getAll(keys));
+    }
+
+    @Nonnull
+    @Override
+    public CompletableFuture<Boolean> saveAsync(@Nonnull X payload) {
+        Preconditions.checkNotNull(payload);
+        return isDatabase() ? cache.runAsync(() -> save(payload)) : CompletableFuture.completedFuture(save(payload));
+    }
+
 }
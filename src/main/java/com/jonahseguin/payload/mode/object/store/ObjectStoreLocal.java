@@ -13,9 +13,12 @@ import org.bson.types.ObjectId;
 
 import javax.annotation.Nonnull;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Stream;
 
 @Getter
 public class ObjectStoreLocal<X extends PayloadObject> extends ObjectCacheStore<X> {
@@ -30,7 +33,23 @@ public class ObjectStoreLocal<X extends PayloadObject> extends ObjectCacheStore<
     @Override
     public Optional<X> get(@Nonnull String key) {
         Preconditions.checkNotNull(key);
-        return Optional.ofNullable(this.localCache.get(key.toLowerCase()));
+        X x = this.localCache.get(key.toLowerCase());
+        if (x != null) {
+            x.interact();
+            this.cache.getEvictor().recordAccess(key.toLowerCase());
+        }
+        return Optional.ofNullable(x);
+    }
+
+    @Nonnull
+    @Override
+    public Map<String, X> getAll(@Nonnull Collection<String> keys) {
+        Preconditions.checkNotNull(keys);
+        Map<String, X> found = new HashMap<>();
+        for (String key : keys) {
+            get(key).ifPresent(x -> found.put(key, x));
+        }
+        return found;
     }
 
     public Optional<X> getByObjectID(ObjectId id) {
@@ -69,9 +88,15 @@ public class ObjectStoreLocal<X extends PayloadObject> extends ObjectCacheStore<
         return this.localCache.values();
     }
 
+    @Nonnull
+    @Override
+    public Stream<X> stream() {
+        return localCache.values().stream();
+    }
+
     @Override
     public int cleanup() {
-        return 0;
+        return this.cache.getEvictor().evict(this.localCache);
     }
 
     @Override
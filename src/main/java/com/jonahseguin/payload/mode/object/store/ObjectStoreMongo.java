@@ -6,26 +6,53 @@
 package com.jonahseguin.payload.mode.object.store;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.Iterables;
+import com.jonahseguin.payload.base.store.BulkSaveResult;
+import com.jonahseguin.payload.base.store.PayloadDatabaseStore;
+import com.jonahseguin.payload.base.store.PayloadMongoWriter;
 import com.jonahseguin.payload.base.type.PayloadQueryModifier;
+import com.jonahseguin.payload.base.update.PayloadChanges;
+import com.jonahseguin.payload.base.update.PayloadVersions;
+import com.jonahseguin.payload.base.update.UpdateOps;
+import com.jonahseguin.payload.database.mongo.AsyncMongoCollection;
+import com.jonahseguin.payload.database.mongo.MongoDriverType;
 import com.jonahseguin.payload.mode.object.PayloadObject;
 import com.jonahseguin.payload.mode.object.PayloadObjectCache;
+import com.mongodb.DBCollection;
+import com.mongodb.DBObject;
 import com.mongodb.MongoException;
+import dev.morphia.query.CountOptions;
+import dev.morphia.query.FindOptions;
 import dev.morphia.query.Query;
+import dev.morphia.query.internal.MorphiaCursor;
 
 import javax.annotation.Nonnull;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
-public class ObjectStoreMongo<X extends PayloadObject> extends ObjectCacheStore<X> {
+public class ObjectStoreMongo<X extends PayloadObject> extends ObjectCacheStore<X> implements PayloadDatabaseStore<String, X> {
 
+    private static final int GET_BATCH_SIZE = 1000; // Keys per $in query
     private final Set<PayloadQueryModifier<X>> queryModifiers = new HashSet<>();
 
+    private final PayloadMongoWriter<X> writer = new PayloadMongoWriter<>(cache, "Object", X::getIdentifier, this::save);
     private boolean running = false;
     private X nullPayload = null; // for identifierFieldName
+    private AsyncMongoCollection<X> asyncCollection = null; // Only when using the async. driver
 
     public ObjectStoreMongo(PayloadObjectCache<X> cache) {
         super(cache);
@@ -35,10 +62,9 @@ public class ObjectStoreMongo<X extends PayloadObject> extends ObjectCacheStore<
     public Optional<X> get(@Nonnull String key) {
         Preconditions.checkNotNull(key);
         try {
-            Query<X> q = getQuery(key);
-            Stream<X> stream = q.find().toList().stream();
-            Optional<X> xp = stream.findFirst();
+            Optional<X> xp = findFirst(getQuery(key));
             xp.ifPresent(PayloadObject::interact);
+            xp.ifPresent(cache.getDirtyTracker()::snapshot);
             return xp;
         } catch (MongoException ex) {
             this.getCache().getErrorService().capture(ex, "MongoDB error getting Object from MongoDB Layer: " + key);
@@ -49,14 +75,111 @@ public class ObjectStoreMongo<X extends PayloadObject> extends ObjectCacheStore<
         }
     }
 
+    @Nonnull
+    @Override
+    public Map<String, X> getAll(@Nonnull Collection<String> keys) {
+        Preconditions.checkNotNull(keys);
+        Map<String, X> found = new HashMap<>();
+        // Identifiers match case-insensitively, as in getQuery, so results are mapped back to the requested keys
+        Map<String, List<String>> requested = new HashMap<>();
+        for (String key : keys) {
+            requested.computeIfAbsent(key.toLowerCase(), k -> new ArrayList<>(1)).add(key);
+        }
+        try {
+            for (List<String> batch : Iterables.partition(requested.keySet(), GET_BATCH_SIZE)) {
+                mapToRequested(getQuery(batch).find().toList(), requested, found);
+            }
+        } catch (MongoException ex) {
+            this.getCache().getErrorService().capture(ex, "MongoDB error getting " + keys.size() + " Objects from MongoDB Layer");
+        } catch (Exception expected) {
+            this.getCache().getErrorService().capture(expected, "Error getting " + keys.size() + " Objects from MongoDB Layer");
+        }
+        return found;
+    }
+
+    private void mapToRequested(List<X> results, Map<String, List<String>> requested, Map<String, X> found) {
+        for (X x : results) {
+            x.interact();
+            cache.getDirtyTracker().snapshot(x);
+            requested.getOrDefault(x.getIdentifier().toLowerCase(), Collections.emptyList()).forEach(key -> found.put(key, x));
+        }
+    }
+
+    @Nonnull
+    @Override
+    public CompletableFuture<Optional<X>> getAsync(@Nonnull String key) {
+        Preconditions.checkNotNull(key);
+        if (asyncCollection == null) {
+            return super.getAsync(key);
+        }
+        return asyncCollection.findFirst(getQuery(key)).handle((xp, ex) -> {
+            if (ex != null) {
+                this.getCache().getErrorService().capture(ex, "MongoDB error getting Object from MongoDB Layer (async): " + key);
+                return Optional.empty();
+            }
+            xp.ifPresent(PayloadObject::interact);
+            xp.ifPresent(cache.getDirtyTracker()::snapshot);
+            return xp;
+        });
+    }
+
+    @Nonnull
+    @Override
+    public CompletableFuture<Map<String, X>> getAllAsync(@Nonnull Collection<String> keys) {
+        Preconditions.checkNotNull(keys);
+        if (asyncCollection == null) {
+            return super.getAllAsync(keys);
+        }
+        Map<String, List<String>> requested = new HashMap<>();
+        for (String key : keys) {
+            requested.computeIfAbsent(key.toLowerCase(), k -> new ArrayList<>(1)).add(key);
+        }
+        List<CompletableFuture<List<X>>> batches = new ArrayList<>();
+        for (List<String> batch : Iterables.partition(requested.keySet(), GET_BATCH_SIZE)) {
+            batches.add(asyncCollection.find(getQuery(batch), this.cache.getSettings().getReadBatchSize()));
+        }
+        return CompletableFuture.allOf(batches.toArray(new CompletableFuture[0])).handle((v, ex) -> {
+            Map<String, X> found = new HashMap<>();
+            if (ex != null) {
+                this.getCache().getErrorService().capture(ex, "MongoDB error getting " + keys.size() + " Objects from MongoDB Layer (async)");
+                return found;
+            }
+            for (CompletableFuture<List<X>> batch : batches) {
+                mapToRequested(batch.join(), requested, found);
+            }
+            return found;
+        });
+    }
+
+    @Nonnull
+    @Override
+    public CompletableFuture<Boolean> saveAsync(@Nonnull X payload) {
+        Preconditions.checkNotNull(payload);
+        if (asyncCollection == null) {
+            return super.saveAsync(payload);
+        }
+        payload.interact();
+        long version = payload.getPayloadVersion();
+        payload.setPayloadVersion(version + 1);
+        return asyncCollection.save(PayloadVersions.query(payload.getObjectId(), version), payload).handle((v, ex) -> {
+            if (ex == null) {
+                this.cache.getDirtyTracker().snapshot(payload);
+                return CompletableFuture.completedFuture(true);
+            }
+            payload.setPayloadVersion(version);
+            if (PayloadVersions.isConflict(ex)) {
+                return this.cache.runAsync(() -> save(payload)); // Resolved and retried on the synchronous path
+            }
+            this.getCache().getErrorService().capture(ex, "MongoDB error saving Object to MongoDB Layer (async): " + payload.getIdentifier());
+            return CompletableFuture.completedFuture(false);
+        }).thenCompose(saved -> saved);
+    }
+
     @Override
     public boolean has(@Nonnull String key) {
         Preconditions.checkNotNull(key);
         try {
-            Query<X> q = getQuery(key);
-            Stream<X> stream = q.find().toList().stream();
-            Optional<X> xp = stream.findFirst();
-            return xp.isPresent();
+            return exists(getQuery(key));
         } catch (MongoException ex) {
             this.getCache().getErrorService().capture(ex, "MongoDB error check if Object exists in MongoDB Layer: " + key);
             return false;
@@ -79,30 +202,102 @@ public class ObjectStoreMongo<X extends PayloadObject> extends ObjectCacheStore<
         }
     }
 
+    /**
+     * Insert or replace the Object, only if the stored document still has the version this copy is based on.
+     * If another server saved a newer version in the meantime, the conflict is resolved by the cache's
+     * {@link com.jonahseguin.payload.base.update.PayloadConflictResolver} and the save retried.
+     */
     @Override
     public boolean save(@Nonnull X payload) {
         Preconditions.checkNotNull(payload);
         payload.interact();
+        int conflicts = 0;
+        while (true) {
+            long version = payload.getPayloadVersion();
+            payload.setPayloadVersion(version + 1);
+            try {
+                DBObject document = this.cache.getDatabase().getMorphia().toDBObject(payload);
+                getCollection().update(PayloadVersions.query(payload.getObjectId(), version), document, true, false);
+                this.cache.getDirtyTracker().snapshot(payload, document);
+                return true;
+            } catch (MongoException ex) {
+                payload.setPayloadVersion(version);
+                if (!PayloadVersions.isConflict(ex)) {
+                    this.getCache().getErrorService().capture(ex, "MongoDB error saving Object to MongoDB Layer: " + payload.getIdentifier());
+                    return false;
+                }
+                if (conflicts++ >= this.cache.getSettings().getSaveConflictRetries() || !this.cache.resolveConflict(payload)) {
+                    this.getCache().getErrorService().debug("Gave up saving Object after a version conflict: " + payload.getIdentifier());
+                    return false;
+                }
+            } catch (Exception expected) {
+                payload.setPayloadVersion(version);
+                this.getCache().getErrorService().capture(expected, "Error saving Object to MongoDB Layer: " + payload.getIdentifier());
+                return false;
+            }
+        }
+    }
+
+    @Nonnull
+    @Override
+    public CompletableFuture<Optional<X>> updateAsync(@Nonnull String key, @Nonnull UpdateOps ops) {
+        Preconditions.checkNotNull(key);
+        Preconditions.checkNotNull(ops);
+        return cache.runAsync(() -> update(key, ops));
+    }
+
+    /**
+     * Apply the update operators with a single findAndModify, so concurrent updates (i.e. $inc from several servers)
+     * are never lost.
+     */
+    @Override
+    public Optional<X> update(@Nonnull String key, @Nonnull UpdateOps ops) {
+        Preconditions.checkNotNull(key);
+        Preconditions.checkNotNull(ops);
+        DBObject update = ops.toUpdate(this.cache.getFieldMapper());
         try {
-            return this.cache.getDatabase().getDatastore().save(payload) != null;
+            DBCollection collection = this.cache.getDatabase().getDatastore().getCollection(this.cache.getPayloadClass());
+            DBObject document = collection.findAndModify(getQuery(key).getQueryObject(), null, null, false, update, true, false);
+            return Optional.ofNullable(document).map(this.cache.getFieldMapper()::decode);
         } catch (MongoException ex) {
-            this.getCache().getErrorService().capture(ex, "MongoDB error saving Object to MongoDB Layer: " + payload.getIdentifier());
-            return false;
+            this.getCache().getErrorService().capture(ex, "MongoDB error updating Object in MongoDB Layer: " + key);
+            return Optional.empty();
         } catch (Exception expected) {
-            this.getCache().getErrorService().capture(expected, "Error saving Object to MongoDB Layer: " + payload.getIdentifier());
-            return false;
+            this.getCache().getErrorService().capture(expected, "Error updating Object in MongoDB Layer: " + key);
+            return Optional.empty();
         }
     }
 
+    /**
+     * Save many Objects at once using a single unordered MongoDB bulk write (see {@link PayloadMongoWriter#saveAll})
+     * @param payloads The Objects to save
+     * @return The per-item result
+     */
+    @Nonnull
+    public BulkSaveResult<X> saveAll(@Nonnull Collection<X> payloads) {
+        return writer.saveAll(payloads);
+    }
+
+    /**
+     * Save only the changed persistent fields of an Object (see {@link PayloadMongoWriter#saveChanges})
+     * @param payload The Object
+     * @param changes The changed fields, from {@link com.jonahseguin.payload.base.update.PayloadDirtyTracker#changes}
+     * @return True if successful
+     */
+    public boolean saveChanges(@Nonnull X payload, @Nonnull PayloadChanges changes) {
+        return writer.saveChanges(payload, changes);
+    }
+
+    private DBCollection getCollection() {
+        return this.cache.getDatabase().getDatastore().getCollection(this.cache.getPayloadClass());
+    }
+
     @Override
     public boolean has(@Nonnull X payload) {
         Preconditions.checkNotNull(payload);
         payload.interact();
         try {
-            Query<X> q = getQuery(payload.getIdentifier());
-            Stream<X> stream = q.find().toList().stream();
-            Optional<X> xp = stream.findFirst();
-            return xp.isPresent();
+            return exists(getQuery(payload.getIdentifier()));
         } catch (MongoException ex) {
             this.getCache().getErrorService().capture(ex, "MongoDB error checking if Object exists in MongoDB Layer: " + payload.getIdentifier());
             return false;
@@ -145,6 +340,13 @@ public class ObjectStoreMongo<X extends PayloadObject> extends ObjectCacheStore<
         if (this.cache.getSettings().isServerSpecific()) {
             this.addCriteriaModifier(query -> query.field("payloadId").equalIgnoreCase(cache.getApi().getPayloadID()));
         }
+        if (this.cache.getDatabase().isRunning() && this.cache.getSettings().getMongoDriver() == MongoDriverType.ASYNC) {
+            try {
+                this.asyncCollection = new AsyncMongoCollection<>(this.cache.getDatabase(), this.cache.getPayloadClass());
+            } catch (Exception ex) {
+                this.cache.getErrorService().capture(ex, "Error starting the async. MongoDB driver for MongoDB Object Layer; using the synchronous driver");
+            }
+        }
         return true;
     }
 
@@ -169,9 +371,21 @@ public class ObjectStoreMongo<X extends PayloadObject> extends ObjectCacheStore<
     @Nonnull
     @Override
     public Collection<X> getAll() {
-        Query<X> q = this.createQuery();
-        Stream<X> stream = q.find().toList().stream();
-        return stream.collect(Collectors.toSet());
+        try (Stream<X> stream = this.stream()) {
+            return stream.collect(Collectors.toSet());
+        }
+    }
+
+    @Nonnull
+    @Override
+    public Stream<X> stream() {
+        MorphiaCursor<X> cursor = this.createQuery().find(new FindOptions().batchSize(Math.max(1, this.cache.getSettings().getReadBatchSize())));
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(cursor, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .peek(x -> {
+                    x.interact();
+                    this.cache.getDirtyTracker().snapshot(x);
+                })
+                .onClose(cursor::close);
     }
 
     public void addCriteriaModifier(PayloadQueryModifier<X> modifier) {
@@ -203,6 +417,29 @@ public class ObjectStoreMongo<X extends PayloadObject> extends ObjectCacheStore<
         return q;
     }
 
+    public Query<X> getQuery(Collection<String> keys) {
+        Query<X> q = createQuery();
+        // Case-insensitive, as in getQuery(key)
+        q.field(this.nullPayload.identifierFieldName()).in(keys.stream()
+                .map(key -> Pattern.compile("^" + Pattern.quote(key) + "$", Pattern.CASE_INSENSITIVE))
+                .collect(Collectors.toList()));
+        return q;
+    }
+
+    /**
+     * Fetch only the first matching document, rather than materializing the whole cursor
+     */
+    private Optional<X> findFirst(Query<X> q) {
+        return Optional.ofNullable(q.first(new FindOptions().limit(1)));
+    }
+
+    /**
+     * Check if any document matches, without fetching or deserializing it
+     */
+    private boolean exists(Query<X> q) {
+        return q.count(new CountOptions().limit(1)) > 0;
+    }
+
     @Override
     public boolean isDatabase() {
         return true;
@@ -5,6 +5,7 @@
 
 package com.jonahseguin.payload.mode.profile;
 
+import com.google.common.hash.HashCode;
 import com.google.inject.Inject;
 import com.jonahseguin.payload.PayloadPlugin;
 import com.jonahseguin.payload.base.type.Payload;
@@ -21,6 +22,8 @@ import org.bukkit.ChatColor;
 import org.bukkit.entity.Player;
 
 import javax.annotation.Nonnull;
+import java.util.Locale;
+import java.util.Map;
 import java.util.UUID;
 
 // The implementing class of this abstract class must add an @Entity annotation (from MongoDB) with a collection name!
@@ -39,9 +42,12 @@ public abstract class PayloadProfile implements Payload<UUID> {
     @Indexed
     protected String username;
     @Indexed
+    protected String usernameLower; // Normalized copy of username for index-backed case-insensitive lookups
+    @Indexed
     protected String uniqueId;
     protected String loginIp = null; // IP the profile logged in with
     protected String payloadId; // The ID of the Payload instance that currently holds this profile
+    protected long payloadVersion = 0; // Incremented by every write to the database
     protected transient UUID uuid = null;
     protected transient long cachedTimestamp = System.currentTimeMillis();
     protected transient long lastInteractionTimestamp = System.currentTimeMillis();
@@ -52,6 +58,8 @@ public abstract class PayloadProfile implements Payload<UUID> {
     protected transient String loadingSource = null;
     protected transient Player player = null;
     protected transient long handshakeStartTimestamp = 0;
+    protected transient boolean dirty = false;
+    protected transient Map<String, HashCode> fieldSnapshot = null;
 
     @Inject
     public PayloadProfile(ProfileCache cache) {
@@ -61,7 +69,7 @@ public abstract class PayloadProfile implements Payload<UUID> {
 
     public PayloadProfile(ProfileCache cache, String username, UUID uniqueId, String loginIp) {
         this(cache);
-        this.username = username;
+        this.setUsername(username);
         this.uuid = uniqueId;
         this.uniqueId = uniqueId.toString();
         this.loginIp = loginIp;
@@ -72,6 +80,25 @@ public abstract class PayloadProfile implements Payload<UUID> {
         this.uuid = UUID.fromString(this.uniqueId);
     }
 
+    @PrePersist
+    private void onPrePayloadPersist() {
+        this.usernameLower = normalizeUsername(this.username);
+    }
+
+    public void setUsername(String username) {
+        this.username = username;
+        this.usernameLower = normalizeUsername(username);
+    }
+
+    public static String normalizeUsername(String username) {
+        return username == null ? null : username.toLowerCase(Locale.ROOT);
+    }
+
+    @Override
+    public void markDirty() {
+        this.dirty = true;
+    }
+
     @Override
     public boolean hasValidHandshake() {
         if (handshakeStartTimestamp > 0) {
@@ -6,6 +6,7 @@
 package com.jonahseguin.payload.mode.profile;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
 import com.google.inject.Inject;
 import com.google.inject.Injector;
 import com.google.inject.Singleton;
@@ -13,25 +14,39 @@ import com.jonahseguin.lang.LangDefinitions;
 import com.jonahseguin.lang.LangModule;
 import com.jonahseguin.payload.PayloadMode;
 import com.jonahseguin.payload.base.PayloadCache;
-import com.jonahseguin.payload.base.store.PayloadStore;
+import com.jonahseguin.payload.base.store.BulkSaveResult;
+import com.jonahseguin.payload.base.store.PayloadDatabaseStore;
 import com.jonahseguin.payload.base.sync.SyncService;
 import com.jonahseguin.payload.base.type.PayloadInstantiator;
+import com.jonahseguin.payload.base.update.PayloadChanges;
+import com.jonahseguin.payload.base.update.PayloadVersions;
 import com.jonahseguin.payload.base.uuid.UUIDService;
 import com.jonahseguin.payload.mode.profile.settings.ProfileCacheSettings;
 import com.jonahseguin.payload.mode.profile.store.ProfileStoreLocal;
 import com.jonahseguin.payload.mode.profile.store.ProfileStoreMongo;
+import com.jonahseguin.payload.server.PayloadServer;
+import com.mongodb.DBObject;
 import lombok.Getter;
 import org.bukkit.entity.Player;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.OptionalLong;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.Future;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Getter
 @Singleton
@@ -41,6 +56,8 @@ public class PayloadProfileCache<X extends PayloadProfile> extends PayloadCache<
     private final ConcurrentMap<UUID, PayloadProfileController<X>> controllers = new ConcurrentHashMap<>();
     private final ProfileStoreLocal<X> localStore = new ProfileStoreLocal<>(this);
     private final ProfileStoreMongo<X> mongoStore = new ProfileStoreMongo<>(this);
+    private final ProfileLoginStats loginStats = new ProfileLoginStats();
+    private final ProfilePrefetchService<X> prefetchService = new ProfilePrefetchService<>(this);
     @Inject private UUIDService uuidService;
 
     public PayloadProfileCache(Injector injector, PayloadInstantiator<UUID, X> instantiator, String name, Class<X> payload) {
@@ -78,10 +95,20 @@ public class PayloadProfileCache<X extends PayloadProfile> extends PayloadCache<
         if (!mongoStore.start()) {
             success = false;
             errorService.capture("Failed to start MongoDB store for cache " + name);
+        } else if (settings.isMigrateUsernames()) {
+            runAsync(mongoStore::migrateUsernames);
+        } else {
+            runAsync(mongoStore::checkUsernamesMigrated);
         }
         if (mode.equals(PayloadMode.NETWORK_NODE)) {
             handshakeService.subscribe(new ProfileHandshake(this));
         }
+        if (settings.isEnablePrefetch()) {
+            if (!prefetchService.start()) {
+                success = false;
+                errorService.capture("Failed to start Prefetch service for cache " + name);
+            }
+        }
         database.getMorphia().map(NetworkProfile.class);
         return success;
     }
@@ -93,6 +120,9 @@ public class PayloadProfileCache<X extends PayloadProfile> extends PayloadCache<
             player.kickPlayer(lang.module(this).format("shutdown"));
         }
         controllers.clear();
+        if (prefetchService.isRunning()) {
+            prefetchService.shutdown();
+        }
         if (!localStore.shutdown()) {
             success = false;
         }
@@ -115,21 +145,56 @@ public class PayloadProfileCache<X extends PayloadProfile> extends PayloadCache<
     }
 
     @Override
-    public Future<Optional<X>> getAsync(@Nonnull UUID key) {
-        Preconditions.checkNotNull(key);
-        return runAsync(() -> get(key));
-    }
-
-    @Override
-    public Future<Optional<X>> getAsync(@Nonnull String username) {
+    public CompletableFuture<Optional<X>> getAsync(@Nonnull String username) {
         Preconditions.checkNotNull(username);
         return runAsync(() -> get(username));
     }
 
     @Override
-    public Future<Optional<X>> getAsync(@Nonnull Player player) {
+    public CompletableFuture<Optional<X>> getAsync(@Nonnull Player player) {
         Preconditions.checkNotNull(player);
-        return runAsync(() -> get(player));
+        return getAsync(player.getUniqueId());
+    }
+
+    /**
+     * Confirm that the server a profile was transferred from wrote it to MongoDB at the transferred version.
+     * If the write never lands, this server holds the only up-to-date copy, so it saves the profile itself.
+     * @param payload The transferred profile, as cached on this server
+     * @param version The version the other server is saving it as
+     */
+    void confirmTransfer(@Nonnull X payload, long version) {
+        Preconditions.checkNotNull(payload);
+        executor.schedule(() -> runAsync(() -> confirmTransfer(payload, version, 1)), settings.getTransferConfirmDelayMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private void confirmTransfer(X payload, long version, int attempt) {
+        OptionalLong stored = mongoStore.getStoredVersion(payload.getObjectId());
+        if (stored.isPresent() && stored.getAsLong() >= version) {
+            errorService.debug("Confirmed transfer of Profile " + payload.getName() + " at version " + version);
+            return;
+        }
+        if (attempt < settings.getTransferConfirmAttempts()) {
+            executor.schedule(() -> runAsync(() -> confirmTransfer(payload, version, attempt + 1)), settings.getTransferConfirmDelayMillis(), TimeUnit.MILLISECONDS);
+            return;
+        }
+        errorService.capture("Transfer of Profile " + payload.getName() + " was not confirmed at version " + version + "; saving it from this server");
+        if (payload.getPayloadVersion() == version) {
+            // Not saved by this server since; save over what is actually stored
+            payload.setPayloadVersion(stored.orElse(0));
+        }
+        if (!save(payload)) {
+            errorService.capture("Failed to save unconfirmed transferred Profile " + payload.getName());
+        }
+    }
+
+    @Override
+    public void announceConnect(@Nonnull UUID uuid, @Nonnull String server) {
+        prefetchService.announce(uuid, server);
+    }
+
+    @Override
+    public boolean isPinned(@Nonnull X payload) {
+        return payload.isOnline() || super.isPinned(payload);
     }
 
     @Override
@@ -165,7 +230,7 @@ public class PayloadProfileCache<X extends PayloadProfile> extends PayloadCache<
 
     @Nonnull
     @Override
-    public PayloadStore<UUID, X> getDatabaseStore() {
+    public PayloadDatabaseStore<UUID, X> getDatabaseStore() {
         return mongoStore;
     }
 
@@ -292,11 +357,6 @@ public class PayloadProfileCache<X extends PayloadProfile> extends PayloadCache<
         mongoStore.remove(key);
     }
 
-    @Override
-    public void cacheAll() {
-        this.getAll().forEach(this::cache);
-    }
-
     @Override
     public UUID keyFromString(@Nonnull String key) {
         Preconditions.checkNotNull(key);
@@ -310,9 +370,13 @@ public class PayloadProfileCache<X extends PayloadProfile> extends PayloadCache<
 
     @Nonnull
     public Set<X> getAll() {
-        final Set<X> all = this.localStore.getAll().stream().filter(PayloadProfile::isOnline).collect(Collectors.toSet());
-        all.addAll(this.mongoStore.getAll().stream().filter(x -> all.stream().noneMatch(x2 -> x.getUniqueId().equals(x2.getUniqueId()))).collect(Collectors.toSet()));
-        return all;
+        // Online profiles are the most recent copy; stored ones are only added if not online
+        final Map<UUID, X> all = new HashMap<>();
+        this.localStore.getAll().stream().filter(PayloadProfile::isOnline).forEach(x -> all.put(x.getUniqueId(), x));
+        try (Stream<X> stream = this.mongoStore.stream()) {
+            stream.forEach(x -> all.putIfAbsent(x.getUniqueId(), x));
+        }
+        return new HashSet<>(all.values());
     }
 
     @Nonnull
@@ -323,51 +387,95 @@ public class PayloadProfileCache<X extends PayloadProfile> extends PayloadCache<
     }
 
     @Override
-    public Future<Boolean> saveAsync(@Nonnull X payload) {
+    public CompletableFuture<Boolean> saveAsync(@Nonnull X payload) {
         Preconditions.checkNotNull(payload);
         this.cache(payload);
-        return this.runAsync(() -> this.save(payload));
+        // The database write goes through the store's async. path; only the network & sync updates need the pool
+        return mongoStore.saveAsync(payload).thenCompose(saved -> {
+            recordSave(payload, saved);
+            if (!saved || !mode.equals(PayloadMode.NETWORK_NODE)) {
+                return CompletableFuture.completedFuture(saved);
+            }
+            return this.runAsync(() -> {
+                Optional<NetworkProfile> onp = networkService.get(payload);
+                return onp.isPresent() && publishSave(onp.get(), payload, null);
+            });
+        });
     }
 
     @Override
     public boolean save(@Nonnull X payload) {
+        return save(payload, null);
+    }
+
+    private boolean save(@Nonnull X payload, @Nullable PayloadChanges changes) {
         Preconditions.checkNotNull(payload);
         if (mode.equals(PayloadMode.NETWORK_NODE)) {
             Optional<NetworkProfile> onp = networkService.get(payload);
             if (onp.isPresent()) {
-                NetworkProfile np = onp.get();
-                if (this.saveNoSync(payload)) {
-                    np.markSaved();
-                    if (networkService.save(np)) {
-                        if (settings.isEnableSync()) {
-                            sync.update(payload.getIdentifier());
-                        }
-                        return true;
-                    } else {
-                        return false;
-                    }
-                } else {
-                    return false;
-                }
+                return this.saveNoSync(payload, changes) && publishSave(onp.get(), payload, changes);
             } else {
                 return false;
             }
         } else {
-            return saveNoSync(payload);
+            return saveNoSync(payload, changes);
+        }
+    }
+
+    @Override
+    public boolean saveTransferred(@Nonnull X payload, @Nonnull DBObject document) {
+        Preconditions.checkNotNull(payload);
+        Preconditions.checkNotNull(document);
+        boolean saved = mongoStore.saveDocument(payload, document);
+        recordSave(payload, saved);
+        if (!saved || !mode.equals(PayloadMode.NETWORK_NODE)) {
+            return saved;
+        }
+        Optional<NetworkProfile> onp = networkService.get(payload);
+        if (onp.isPresent()) {
+            NetworkProfile np = onp.get();
+            np.markSaved();
+            if (!networkService.save(np)) {
+                return false;
+            }
+        }
+        if (settings.isEnableSync()) {
+            sync.update(payload.getUniqueId(), ((Number) document.get(PayloadVersions.FIELD)).longValue(), document);
         }
+        return true;
     }
 
     @Override
     public boolean saveNoSync(@Nonnull X payload) {
+        return saveNoSync(payload, null);
+    }
+
+    private boolean saveNoSync(@Nonnull X payload, @Nullable PayloadChanges changes) {
         Preconditions.checkNotNull(payload);
         cache(payload);
-        if (mongoStore.save(payload)) {
+        boolean saved = changes == null ? mongoStore.save(payload) : mongoStore.saveChanges(payload, changes);
+        recordSave(payload, saved);
+        return saved;
+    }
+
+    private void recordSave(@Nonnull X payload, boolean saved) {
+        if (saved) {
             payload.setSaveFailed(false);
             payload.setLastSaveTimestamp(System.currentTimeMillis());
             payload.interact();
-            return true;
         } else {
             payload.setSaveFailed(true);
+        }
+    }
+
+    private boolean publishSave(@Nonnull NetworkProfile np, @Nonnull X payload, @Nullable PayloadChanges changes) {
+        np.markSaved();
+        if (networkService.save(np)) {
+            if (settings.isEnableSync()) {
+                sync.update(payload, changes);
+            }
+            return true;
+        } else {
             return false;
         }
     }
@@ -375,12 +483,81 @@ public class PayloadProfileCache<X extends PayloadProfile> extends PayloadCache<
     @Override
     public int saveAll() {
         int failures = 0;
+        List<X> payloads = new ArrayList<>();
         for (Player p : this.getPlugin().getServer().getOnlinePlayers()) {
             Optional<X> o = this.get(p);
             if (o.isPresent()) {
                 X payload = o.get();
                 payload.interact();
-                if (!this.save(payload)) {
+                payloads.add(payload);
+            } else {
+                failures++;
+            }
+        }
+        for (List<X> batch : Lists.partition(payloads, Math.max(1, settings.getSaveBatchSize()))) {
+            failures += this.saveBatch(batch);
+        }
+        return failures;
+    }
+
+    /**
+     * Save a batch of profiles with one MongoDB bulk write, one Redis HMSET and one sync message
+     * @param batch The profiles
+     * @return The number of profiles that failed to save
+     */
+    private int saveBatch(@Nonnull List<X> batch) {
+        int failures = 0;
+        List<X> toSave = batch;
+        Map<UUID, NetworkProfile> networked = null;
+        if (mode.equals(PayloadMode.NETWORK_NODE)) {
+            final Map<UUID, NetworkProfile> found = networkService.getAll(batch);
+            networked = found;
+            toSave = batch.stream().filter(x -> found.containsKey(x.getIdentifier())).collect(Collectors.toList());
+            failures += batch.size() - toSave.size();
+        }
+        BulkSaveResult<X> result = mongoStore.saveAll(toSave);
+        failures += result.getFailureCount();
+        result.getFailed().forEach(x -> x.setSaveFailed(true));
+        long now = System.currentTimeMillis();
+        for (X payload : result.getSaved()) {
+            payload.setSaveFailed(false);
+            payload.setLastSaveTimestamp(now);
+            payload.interact();
+        }
+        if (networked != null && !result.getSaved().isEmpty()) {
+            List<NetworkProfile> saved = new ArrayList<>();
+            for (X payload : result.getSaved()) {
+                NetworkProfile np = networked.get(payload.getIdentifier());
+                np.markSaved();
+                saved.add(np);
+            }
+            if (!networkService.saveAll(saved)) {
+                return failures + saved.size();
+            }
+            if (settings.isEnableSync()) {
+                sync.update(result.getSaved().stream().map(X::getIdentifier).collect(Collectors.toList()));
+            }
+        }
+        return failures;
+    }
+
+    @Override
+    public int saveAllChanged() {
+        int failures = 0;
+        for (Player p : this.getPlugin().getServer().getOnlinePlayers()) {
+            Optional<X> o = this.get(p);
+            if (o.isPresent()) {
+                X payload = o.get();
+                PayloadChanges changes = dirtyTracker.changes(payload);
+                if (!dirtyTracker.needsSave(payload, changes)) {
+                    continue;
+                }
+                if (payload.isDirty() && changes != null && changes.isEmpty()) {
+                    // Explicitly marked dirty but no field hash changed (i.e. in-place mutation): write it in full
+                    changes = null;
+                }
+                payload.interact();
+                if (!this.save(payload, changes)) {
                     failures++;
                 }
             } else {
@@ -427,7 +604,27 @@ public class PayloadProfileCache<X extends PayloadProfile> extends PayloadCache<
                 }
             });
         }
-        this.pool.submit(this::saveAll);
+        this.runAsync(this::saveAll);
+    }
+
+    @Override
+    protected boolean isHeldElsewhere(@Nonnull NetworkProfile networked) {
+        return networked.isOnlineOtherServer() && serverService.get(networked.getLastSeenServer()).map(PayloadServer::isOnline).orElse(false);
+    }
+
+    @Override
+    protected void markNetworkedLoaded(@Nonnull NetworkProfile networked) {
+        networked.markLoaded(false);
+    }
+
+    @Override
+    protected boolean isCacheableOnCacheAll(@Nonnull X stored) {
+        return !stored.isOnline(); // The stored copy of an online profile isn't the live one
+    }
+
+    @Override
+    protected boolean isCacheOnBatchLoad() {
+        return getMode().equals(PayloadMode.STANDALONE) || getSettings().isAlwaysCacheOnLoadNetworkNode();
     }
 
     @Override
@@ -10,6 +10,7 @@ import com.jonahseguin.payload.PayloadMode;
 import com.jonahseguin.payload.base.handshake.HandshakeHandler;
 import com.jonahseguin.payload.base.type.PayloadController;
 import com.jonahseguin.payload.server.PayloadServer;
+import com.mongodb.DBObject;
 import lombok.Getter;
 import lombok.Setter;
 import org.bukkit.ChatColor;
@@ -18,11 +19,15 @@ import org.bukkit.entity.Player;
 import javax.annotation.Nonnull;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 @Getter
 @Setter
 public class PayloadProfileController<X extends PayloadProfile> implements PayloadController<X> {
 
+    private static final int LEASE_ACQUIRE_ATTEMPTS = 4;
+
     private final PayloadProfileCache<X> cache;
     private final UUID uuid;
     private String username = null;
@@ -56,6 +61,43 @@ public class PayloadProfileController<X extends PayloadProfile> implements Paylo
     
     @Override
     public Optional<X> cache() {
+        if (!prepare()) {
+            return Optional.empty();
+        }
+
+        if (cache.getMode().equals(PayloadMode.STANDALONE)) {
+            return cacheStandalone();
+        } else if (cache.getMode().equals(PayloadMode.NETWORK_NODE)) {
+            return cacheNetworkNode();
+        } else {
+            throw new UnsupportedOperationException("Unknown cache mode: " + cache.getMode().toString());
+        }
+    }
+
+    /**
+     * Like {@link #cache()}, but in standalone mode the profile is read through the MongoDB store's async. path, so that
+     * with the async. driver no thread waits on the read.  Network nodes may have to wait for a handshake, so they
+     * load on the calling thread as {@link #cache()} does.
+     * @return {@link CompletableFuture} completed with the profile once loaded
+     */
+    public CompletableFuture<Optional<X>> cacheAsync() {
+        if (!cache.getMode().equals(PayloadMode.STANDALONE)) {
+            return CompletableFuture.completedFuture(cache());
+        }
+        if (!prepare()) {
+            return CompletableFuture.completedFuture(Optional.empty());
+        }
+        if (cache.getLocalStore().has(uuid)) {
+            return CompletableFuture.completedFuture(cache.getLocalStore().get(uuid));
+        }
+        Optional<X> o = login ? cache.getLocalStore().consumeStaged(uuid) : Optional.empty();
+        if (o.isPresent()) {
+            return CompletableFuture.completedFuture(loadStandalone(o));
+        }
+        return cache.getMongoStore().getAsync(uuid).thenApply(this::loadStandalone);
+    }
+
+    private boolean prepare() {
         reset();
 
         if (uuid != null && username != null) {
@@ -67,17 +109,10 @@ public class PayloadProfileController<X extends PayloadProfile> implements Paylo
             if (!cache.getDatabase().getState().canCacheFunction(cache)) {
                 denyJoin = true;
                 joinDenyReason = cache.getLang().module(cache).format("deny-join-database", cache.getName());
-                return Optional.empty();
+                return false;
             }
         }
-
-        if (cache.getMode().equals(PayloadMode.STANDALONE)) {
-            return cacheStandalone();
-        } else if (cache.getMode().equals(PayloadMode.NETWORK_NODE)) {
-            return cacheNetworkNode();
-        } else {
-            throw new UnsupportedOperationException("Unknown cache mode: " + cache.getMode().toString());
-        }
+        return true;
     }
 
     @Override
@@ -91,16 +126,49 @@ public class PayloadProfileController<X extends PayloadProfile> implements Paylo
                 NetworkProfile networkProfile = o.get();
                 networkProfile.markUnloaded(switchingServers);
             }
+            cache.getLeaseService().release(payload.getUniqueId());
         }
     }
 
+    /**
+     * Undo a login that was given up on (i.e. timed out, or denied by another cache) after this controller loaded the
+     * profile, as the player never joins: uncache it, mark it unloaded on this server and release its lease
+     */
+    public void abandonLogin() {
+        cache.removeController(uuid);
+        if (payload == null) {
+            return;
+        }
+        if (cache.isCached(uuid)) {
+            cache.uncache(uuid);
+        }
+        if (cache.getMode().equals(PayloadMode.NETWORK_NODE)) {
+            Optional<NetworkProfile> o = cache.getNetworkService().get(uuid);
+            if (o.isPresent()) {
+                NetworkProfile networkProfile = o.get();
+                networkProfile.markUnloaded(false);
+                if (!cache.getNetworkService().save(networkProfile)) {
+                    cache.getErrorService().capture("Failed to save network profile after abandoned login for " + uuid.toString());
+                }
+            }
+        }
+        cache.getLeaseService().release(uuid);
+        cache.getErrorService().debug("Abandoned login of profile " + uuid.toString());
+    }
+
     private Optional<X> cacheStandalone() {
         // Iterate each layer in order
         if (cache.getLocalStore().has(uuid)) {
             return cache.getLocalStore().get(uuid);
         }
-        Optional<X> o = cache.getMongoStore().get(uuid);
+        Optional<X> o = login ? cache.getLocalStore().consumeStaged(uuid) : Optional.empty();
+        if (!o.isPresent()) {
+            o = cache.getMongoStore().get(uuid);
+        }
+        return loadStandalone(o);
+    }
 
+    private Optional<X> loadStandalone(Optional<X> o) {
         if (!o.isPresent()) {
             // Failed to load from all layers
 
@@ -120,7 +188,7 @@ public class PayloadProfileController<X extends PayloadProfile> implements Paylo
                 payload.setUUID(uuid);
                 payload.setLoginIp(loginIp);
                 payload.setLoadingSource("New Profile");
-                cache.getPool().submit(() -> cache.save(payload));
+                cache.saveAsync(payload);
             }
             // If they aren't logging in (getting a payload by UUID/username) and it wasn't found, return null as they don't exist.
         } else {
@@ -150,6 +218,16 @@ public class PayloadProfileController<X extends PayloadProfile> implements Paylo
                 loadedFromLocal = true;
                 return;
             }
+            if (login) {
+                o = cache.getLocalStore().consumeStaged(uuid);
+                if (o.isPresent()) {
+                    payload = o.get();
+                    return;
+                }
+            }
+        } else {
+            // Another server had it loaded (and may just have saved it), so a prefetched copy may be outdated
+            cache.getLocalStore().discardStaged(uuid);
         }
         Optional<X> o = cache.getMongoStore().get(uuid);
         if (o.isPresent()) {
@@ -174,6 +252,15 @@ public class PayloadProfileController<X extends PayloadProfile> implements Paylo
 
     }
 
+    private void loadTransferred(DBObject document) {
+        cache.getLocalStore().discardStaged(uuid);
+        payload = cache.getFieldMapper().decode(document);
+        payload.setLoadingSource("Server Transfer");
+        // The other server's write becomes the snapshot once confirmed; until then changes are tracked against it
+        cache.getDirtyTracker().snapshot(payload, document);
+        cache.confirmTransfer(payload, payload.getPayloadVersion());
+    }
+
     private Optional<X> cacheNetworkNode() {
         Player player = cache.getPlugin().getServer().getPlayer(uuid);
         if (player != null && player.isOnline()) {
@@ -188,10 +275,17 @@ public class PayloadProfileController<X extends PayloadProfile> implements Paylo
                     PayloadServer server = cache.getServerService().get(networkProfile.getLastSeenServer()).orElse(null);
                     if (server != null && server.isOnline()) {
                         // Handshake
-                        HandshakeHandler<ProfileHandshake> handshake = cache.getHandshakeService().publish(new ProfileHandshake(cache, uuid));
+                        HandshakeHandler<ProfileHandshake> handshake = cache.getHandshakeService().publish(new ProfileHandshake(cache, uuid))
+                                .timeout(cache.getSettings().getHandshakeTimeoutSeconds(), TimeUnit.SECONDS);
                         Optional<ProfileHandshake> o = handshake.waitForReply(cache.getSettings().getHandshakeTimeoutSeconds());
                         if (o.isPresent()) {
-                            load(false);
+                            cache.getNetworkService().invalidate(uuid); // The other server has just saved it (or is saving it)
+                            Optional<DBObject> transferred = o.get().getTransferred();
+                            if (transferred.isPresent()) {
+                                loadTransferred(transferred.get());
+                            } else {
+                                load(false);
+                            }
                         } else {
                             // Timed out
                             denyJoin = true;
@@ -232,10 +326,33 @@ public class PayloadProfileController<X extends PayloadProfile> implements Paylo
             if (login || cache.getSettings().isAlwaysCacheOnLoadNetworkNode()) {
                 cache.cache(payload);
             }
+            if (login && cache.getLeaseService().isRunning()) {
+                // Handed over with the handshake; otherwise the previous server may still be releasing it
+                acquireLease(LEASE_ACQUIRE_ATTEMPTS);
+            }
         }
         return Optional.ofNullable(payload);
     }
 
+    /**
+     * Acquire this profile's lease in the I/O pool, retrying over about one lease time while another server still
+     * holds it (i.e. it is still saving and releasing it after a logout, or it crashed and the lease has to expire)
+     * @param attempts The attempts left
+     */
+    private void acquireLease(int attempts) {
+        cache.runAsync(() -> {
+            if (!cache.isCached(uuid) || cache.getLeaseService().acquire(uuid).isPresent()) {
+                return;
+            }
+            if (attempts > 1) {
+                long delay = cache.getSettings().getLeaseTimeMillis() / (LEASE_ACQUIRE_ATTEMPTS - 1);
+                cache.getExecutor().schedule(() -> acquireLease(attempts - 1), delay, TimeUnit.MILLISECONDS);
+            } else {
+                cache.getErrorService().debug("Could not acquire lease for profile " + uuid.toString() + ", held by another server");
+            }
+        });
+    }
+
     public void initializeOnJoin(Player player) {
         this.player = player;
         if (payload != null) {
@@ -7,13 +7,14 @@ package com.jonahseguin.payload.mode.profile;
 
 import com.jonahseguin.payload.base.Cache;
 import com.jonahseguin.payload.mode.profile.settings.ProfileCacheSettings;
+import com.mongodb.DBObject;
 import org.bukkit.entity.Player;
 
 import javax.annotation.Nonnull;
 import java.util.Collection;
 import java.util.Optional;
 import java.util.UUID;
-import java.util.concurrent.Future;
+import java.util.concurrent.CompletableFuture;
 
 public interface ProfileCache<X extends PayloadProfile> extends Cache<UUID, X, NetworkProfile> {
 
@@ -21,9 +22,9 @@ public interface ProfileCache<X extends PayloadProfile> extends Cache<UUID, X, N
 
     Optional<X> get(@Nonnull Player player);
 
-    Future<Optional<X>> getAsync(@Nonnull String username);
+    CompletableFuture<Optional<X>> getAsync(@Nonnull String username);
 
-    Future<Optional<X>> getAsync(@Nonnull Player player);
+    CompletableFuture<Optional<X>> getAsync(@Nonnull Player player);
 
     Optional<X> getFromCache(@Nonnull String username);
 
@@ -43,6 +44,29 @@ public interface ProfileCache<X extends PayloadProfile> extends Cache<UUID, X, N
     @Nonnull
     ProfileCacheSettings getSettings();
 
+    /**
+     * @return Timing of this cache's part of player logins
+     */
+    @Nonnull
+    ProfileLoginStats getLoginStats();
+
+    /**
+     * Announce that a player is connecting to a server, so that server loads their profile ahead of the login.
+     * Only has an effect if prefetching is enabled on the target server.
+     * @param uuid The player's UUID
+     * @param server The name of the server they are connecting to
+     */
+    void announceConnect(@Nonnull UUID uuid, @Nonnull String server);
+
+    /**
+     * Save a profile as the document sent to another server when transferring it, so the stored copy is exactly the
+     * one that server received and confirms by version
+     * @param payload The profile
+     * @param document The document sent, at the version to write
+     * @return True if saved; false if the document couldn't be written (i.e. a version conflict)
+     */
+    boolean saveTransferred(@Nonnull X payload, @Nonnull DBObject document);
+
     @Override
     @Nonnull
     PayloadProfileController<X> controller(@Nonnull UUID key);
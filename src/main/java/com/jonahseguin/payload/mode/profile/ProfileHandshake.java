@@ -8,16 +8,27 @@ package com.jonahseguin.payload.mode.profile;
 import com.google.common.base.Preconditions;
 import com.jonahseguin.payload.base.handshake.Handshake;
 import com.jonahseguin.payload.base.handshake.HandshakeData;
+import com.jonahseguin.payload.base.network.codec.BsonNetworkCodec;
+import com.jonahseguin.payload.base.network.codec.DeflateNetworkCodec;
+import com.jonahseguin.payload.base.network.codec.NetworkPayloadCodec;
+import com.jonahseguin.payload.base.update.PayloadVersions;
+import com.mongodb.DBObject;
 
 import javax.annotation.Nonnull;
+import java.util.Base64;
 import java.util.Optional;
 import java.util.UUID;
 
 public class ProfileHandshake extends Handshake {
 
     public static final String KEY_UUID = "uuid";
+    public static final String KEY_PAYLOAD = "payload";
+    public static final String KEY_SERVER = "server";
+    private static final NetworkPayloadCodec TRANSFER_CODEC = new DeflateNetworkCodec(new BsonNetworkCodec());
     private final ProfileCache cache;
     private UUID uuid = null;
+    private String server = null; // The server requesting the profile, which takes over its lease
+    private String transfer = null; // Base64 of the deflated BSON profile, sent in the reply when switching servers
 
     public ProfileHandshake(@Nonnull ProfileCache cache) {
         Preconditions.checkNotNull(cache);
@@ -48,11 +59,14 @@ public class ProfileHandshake extends Handshake {
     @Override
     public void load(@Nonnull HandshakeData data) {
         this.uuid = UUID.fromString(data.getDocument().getString(KEY_UUID));
+        this.transfer = data.getDocument().getString(KEY_PAYLOAD);
+        this.server = data.getDocument().getString(KEY_SERVER);
     }
 
     @Override
     public void write(@Nonnull HandshakeData data) {
         data.append(KEY_UUID, this.uuid);
+        data.append(KEY_SERVER, cache.getServerService().getThisServer().getName());
     }
 
     @Override
@@ -61,9 +75,65 @@ public class ProfileHandshake extends Handshake {
         if (o.isPresent()) {
             PayloadProfile profile = o.get();
             profile.setHandshakeStartTimestamp(System.currentTimeMillis());
-            if (!cache.save(profile)) {
+            Optional<DBObject> sent = cache.getSettings().isEnableDirectTransfer() ? encodeTransfer(profile) : Optional.empty();
+            if (sent.isPresent()) {
+                // The other server caches the transferred copy right away, and confirms this write by its version
+                cache.runAsync(() -> {
+                    if (cache.saveTransferred(profile, sent.get())) {
+                        return;
+                    }
+                    // Not written as sent; save what this server has, which the other server's confirmation falls back on
+                    if (!cache.save(profile)) {
+                        cache.getErrorService().capture("Failed to save after transfer during handshake for " + profile.getName());
+                    }
+                });
+            } else if (!cache.save(profile)) {
                 cache.getErrorService().capture("Failed to save during handshake for " + profile.getName());
             }
+            // Hand the lease over before replying, so the other server already owns it when it acquires it
+            if (server != null && cache.getLeaseService().isRunning() && cache.getLeaseService().transfer(uuid, server)) {
+                cache.getErrorService().debug("Transferred lease for profile " + profile.getName() + " to " + server);
+            }
+        }
+    }
+
+    @Override
+    public void writeReply(@Nonnull HandshakeData data) {
+        if (transfer != null) {
+            data.append(KEY_PAYLOAD, transfer);
+        }
+    }
+
+    /**
+     * @return The profile's document sent in the reply, at the version the other server is saving it as; empty if it
+     * wasn't sent (disabled or too large) or can't be read, in which case it has to be read from the database
+     */
+    public Optional<DBObject> getTransferred() {
+        if (transfer == null) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(TRANSFER_CODEC.decode(Base64.getDecoder().decode(transfer)));
+        } catch (Exception ex) {
+            cache.getErrorService().capture(ex, "Error decoding transferred profile " + uuid.toString());
+            return Optional.empty();
+        }
+    }
+
+    private Optional<DBObject> encodeTransfer(PayloadProfile profile) {
+        try {
+            DBObject document = cache.getDatabase().getMorphia().toDBObject(profile);
+            document.put(PayloadVersions.FIELD, profile.getPayloadVersion() + 1); // The version the save that follows writes
+            byte[] data = TRANSFER_CODEC.encode(document);
+            if (data.length > cache.getSettings().getDirectTransferMaxBytes()) {
+                cache.getErrorService().debug("Not transferring profile " + profile.getName() + " directly (" + data.length + " bytes compressed)");
+                return Optional.empty();
+            }
+            transfer = Base64.getEncoder().encodeToString(data);
+            return Optional.of(document);
+        } catch (Exception ex) {
+            cache.getErrorService().capture(ex, "Error encoding profile " + profile.getName() + " for transfer");
+            return Optional.empty();
         }
     }
 
@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2019 Jonah Seguin.  All rights reserved.  You may not modify, decompile, distribute or use any code/text contained in this document(plugin) without explicit signed permission from Jonah Seguin.
+ * www.jonahseguin.com
+ */
+
+package com.jonahseguin.payload.mode.profile;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * How long a profile cache takes to load profiles during login, to see which cache dominates login time
+ */
+public class ProfileLoginStats {
+
+    private final AtomicLong logins = new AtomicLong(0);
+    private final AtomicLong totalMillis = new AtomicLong(0);
+    private final AtomicLong maxMillis = new AtomicLong(0);
+    private final AtomicLong timeouts = new AtomicLong(0);
+    private volatile long lastMillis = 0;
+
+    public void record(long millis) {
+        logins.incrementAndGet();
+        totalMillis.addAndGet(millis);
+        maxMillis.accumulateAndGet(millis, Math::max);
+        lastMillis = millis;
+    }
+
+    public void recordTimeout() {
+        timeouts.incrementAndGet();
+    }
+
+    /**
+     * @return Number of logins this cache finished loading
+     */
+    public long getLogins() {
+        return logins.get();
+    }
+
+    public long getAverageMillis() {
+        long count = logins.get();
+        return count > 0 ? totalMillis.get() / count : 0;
+    }
+
+    public long getMaxMillis() {
+        return maxMillis.get();
+    }
+
+    public long getLastMillis() {
+        return lastMillis;
+    }
+
+    /**
+     * @return Number of logins denied because this cache had not finished loading by the login deadline
+     */
+    public long getTimeouts() {
+        return timeouts.get();
+    }
+
+}
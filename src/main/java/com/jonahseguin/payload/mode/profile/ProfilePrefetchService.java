@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2019 Jonah Seguin.  All rights reserved.  You may not modify, decompile, distribute or use any code/text contained in this document(plugin) without explicit signed permission from Jonah Seguin.
+ * www.jonahseguin.com
+ */
+
+package com.jonahseguin.payload.mode.profile;
+
+import com.google.common.base.Preconditions;
+import com.jonahseguin.payload.PayloadMode;
+import com.jonahseguin.payload.base.Service;
+import com.jonahseguin.payload.mode.profile.store.ProfileStoreLocal;
+import redis.clients.jedis.Jedis;
+
+import javax.annotation.Nonnull;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Warms up profiles before their login.  A proxy (or any node) announces "player UUID is connecting to server" on
+ * the cache's prefetch channel, as soon as it knows the target server; the target node then reads the profile from
+ * MongoDB into the local store's staging area, where the login picks it up instead of reading it itself.
+ * <p>
+ * Message format, on channel {@code payload-prefetch-<cache>}: {@code <server name> <uuid>}
+ */
+public class ProfilePrefetchService<X extends PayloadProfile> implements Service {
+
+    private final PayloadProfileCache<X> cache;
+    private boolean running = false;
+
+    public ProfilePrefetchService(@Nonnull PayloadProfileCache<X> cache) {
+        Preconditions.checkNotNull(cache);
+        this.cache = cache;
+    }
+
+    /**
+     * Announce that a player is connecting to a server, so that server prefetches their profile
+     * @param uuid The player's UUID
+     * @param server The name of the server they are connecting to
+     */
+    public void announce(@Nonnull UUID uuid, @Nonnull String server) {
+        Preconditions.checkNotNull(uuid);
+        Preconditions.checkNotNull(server);
+        cache.runAsync(() -> {
+            try (Jedis jedis = cache.getDatabase().getJedisResource()) {
+                jedis.publish(channel(), server + " " + uuid.toString());
+            } catch (Exception ex) {
+                cache.getErrorService().capture(ex, "Error announcing prefetch of profile " + uuid.toString() + " to " + server);
+            }
+        });
+    }
+
+    private void receive(@Nonnull String channel, @Nonnull String message) {
+        int split = message.lastIndexOf(' ');
+        if (split < 0) {
+            return;
+        }
+        if (!message.substring(0, split).equalsIgnoreCase(cache.getServerService().getThisServer().getName())) {
+            return; // Connecting to another server
+        }
+        UUID uuid;
+        try {
+            uuid = UUID.fromString(message.substring(split + 1));
+        } catch (IllegalArgumentException ex) {
+            cache.getErrorService().debug("Ignoring invalid prefetch message: " + message);
+            return;
+        }
+        cache.runAsync(() -> prefetch(uuid));
+    }
+
+    private void prefetch(@Nonnull UUID uuid) {
+        Optional<ProfileStoreLocal.Staged<X>> reservation = cache.getLocalStore().reserveStage(uuid);
+        if (!reservation.isPresent()) {
+            return; // Cached or staged already
+        }
+        if (cache.getMode().equals(PayloadMode.NETWORK_NODE)) {
+            Optional<NetworkProfile> o = cache.getNetworkService().get(uuid);
+            if (o.isPresent() && o.get().isOnlineOtherServer()) {
+                // Switching servers: the login has to wait for the other server to save it anyway
+                cache.getLocalStore().releaseStage(reservation.get());
+                return;
+            }
+        }
+        Optional<X> o = cache.getMongoStore().get(uuid);
+        if (!o.isPresent()) {
+            cache.getLocalStore().releaseStage(reservation.get());
+        } else if (cache.getLocalStore().stage(reservation.get(), o.get())) {
+            cache.getErrorService().debug("Prefetched profile " + uuid.toString());
+        } else {
+            cache.getErrorService().debug("Discarded prefetched profile " + uuid.toString() + ", loaded in the meantime");
+        }
+    }
+
+    private String channel() {
+        return "payload-prefetch-" + cache.getServerSpecificName();
+    }
+
+    @Override
+    public boolean start() {
+        cache.getDatabase().getPubSubService().subscribe(channel(), this::receive);
+        running = true;
+        return true;
+    }
+
+    @Override
+    public boolean shutdown() {
+        running = false;
+        cache.getDatabase().getPubSubService().unsubscribe(channel());
+        return true;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+}
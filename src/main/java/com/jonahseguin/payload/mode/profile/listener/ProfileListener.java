@@ -8,10 +8,12 @@ package com.jonahseguin.payload.mode.profile.listener;
 import com.google.inject.Inject;
 import com.jonahseguin.payload.PayloadAPI;
 import com.jonahseguin.payload.PayloadMode;
-import com.jonahseguin.payload.base.Cache;
+import com.jonahseguin.payload.base.CacheDependencyGraph;
+import com.jonahseguin.payload.base.executor.PayloadExecutor;
 import com.jonahseguin.payload.mode.profile.*;
 import com.jonahseguin.payload.mode.profile.event.PayloadProfileLogoutEvent;
 import com.jonahseguin.payload.mode.profile.event.PayloadProfileSwitchServersEvent;
+import org.bukkit.ChatColor;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
@@ -21,17 +23,29 @@ import org.bukkit.event.player.PlayerJoinEvent;
 import org.bukkit.event.player.PlayerQuitEvent;
 
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
 
 public class ProfileListener implements Listener {
 
     private final PayloadAPI api;
+    private final PayloadExecutor executor;
 
     @Inject
-    public ProfileListener(PayloadAPI api) {
+    public ProfileListener(PayloadAPI api, PayloadExecutor executor) {
         this.api = api;
+        this.executor = executor;
     }
 
     @EventHandler(priority = EventPriority.LOW)
@@ -40,20 +54,84 @@ public class ProfileListener implements Listener {
         final UUID uniqueId = event.getUniqueId();
         final String ip = event.getAddress().getHostAddress();
 
-        List<Cache> sortedCaches = api.getSortedCachesByDepends();
-
-        sortedCaches.forEach(c -> {
-            if (c instanceof ProfileCache) {
-                ProfileCache cache = (ProfileCache) c;
-                PayloadProfileController controller = cache.controller(uniqueId);
-                controller.login(username, ip);
-                controller.cache();
-
-                if (controller.isDenyJoin()) {
-                    event.disallow(AsyncPlayerPreLoginEvent.Result.KICK_WHITELIST, controller.getJoinDenyReason());
+        CacheDependencyGraph graph = api.getDependencyGraph();
+        List<ProfileCache> caches = graph.getOrder().stream()
+                .filter(c -> c instanceof ProfileCache)
+                .map(c -> (ProfileCache) c)
+                .collect(Collectors.toList());
+        if (caches.isEmpty()) {
+            return;
+        }
+
+        // Independent caches load concurrently; a cache only waits for the caches it depends on.
+        // The graph order guarantees each cache's dependencies are already in the map.
+        Map<ProfileCache, CompletableFuture<PayloadProfileController>> loads = new LinkedHashMap<>();
+        AtomicBoolean abandoned = new AtomicBoolean(false); // Loads that haven't started by then are skipped
+        for (ProfileCache cache : caches) {
+            CompletableFuture<?>[] dependencies = graph.getDependencies(cache).stream()
+                    .map(loads::get)
+                    .filter(Objects::nonNull)
+                    .toArray(CompletableFuture[]::new);
+            loads.put(cache, load(cache, dependencies, username, uniqueId, ip, abandoned));
+        }
+
+        int deadline = caches.stream().mapToInt(c -> c.getSettings().getLoginTimeoutSeconds()).max().orElse(10);
+        try {
+            CompletableFuture.allOf(loads.values().toArray(new CompletableFuture[0])).get(deadline, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException ignored) {
+            // Handled per cache below
+        }
+
+        loads.forEach((cache, load) -> {
+            if (!load.isDone()) {
+                cache.getLoginStats().recordTimeout();
+                cache.getErrorService().capture("Timed out after " + deadline + "s loading profile for " + username + " in cache " + cache.getName());
+                event.disallow(AsyncPlayerPreLoginEvent.Result.KICK_WHITELIST, ChatColor.RED + "Timed out while loading your profile.  Please try again.");
+            } else {
+                try {
+                    PayloadProfileController controller = load.join();
+                    if (controller != null && controller.isDenyJoin()) {
+                        event.disallow(AsyncPlayerPreLoginEvent.Result.KICK_WHITELIST, controller.getJoinDenyReason());
+                    }
+                } catch (CompletionException ex) {
+                    cache.getErrorService().capture(ex.getCause(), "Error loading profile for " + username + " in cache " + cache.getName());
+                    event.disallow(AsyncPlayerPreLoginEvent.Result.KICK_WHITELIST, ChatColor.RED + "A caching error occurred.  Please try again.");
                 }
             }
         });
+
+        if (event.getLoginResult() != AsyncPlayerPreLoginEvent.Result.ALLOWED) {
+            // The player won't join: undo every load, including those still running (once they finish)
+            abandoned.set(true);
+            loads.values().forEach(load -> load.thenAccept(controller -> {
+                if (controller != null) {
+                    controller.abandonLogin();
+                }
+            }));
+        }
+    }
+
+    private CompletableFuture<PayloadProfileController> load(ProfileCache cache, CompletableFuture<?>[] dependencies, String username, UUID uniqueId, String ip, AtomicBoolean abandoned) {
+        // Dependents still load if a dependency failed, as they did when loading one after another
+        return CompletableFuture.allOf(dependencies)
+                .handle((v, ex) -> v)
+                .thenComposeAsync(v -> {
+                    if (abandoned.get()) {
+                        return CompletableFuture.completedFuture(null); // The login was already given up on
+                    }
+                    long start = System.currentTimeMillis();
+                    PayloadProfileController controller = cache.controller(uniqueId);
+                    controller.login(username, ip);
+                    CompletableFuture<?> loaded = controller.cacheAsync();
+                    return loaded.thenApply(o -> {
+                        long took = System.currentTimeMillis() - start;
+                        cache.getLoginStats().record(took);
+                        cache.getErrorService().debug("Loaded profile " + username + " in cache " + cache.getName() + " in " + took + "ms");
+                        return controller;
+                    });
+                }, executor::io);
     }
 
     @EventHandler(priority = EventPriority.LOW)
@@ -83,21 +161,19 @@ public class ProfileListener implements Listener {
                 cache.runAsync(() -> {
                     if (cache.getMode().equals(PayloadMode.STANDALONE)) {
                         // save on quit in standalone mode
-                        cache.getPool().submit(() -> {
-                            Optional<PayloadProfile> o = cache.getFromCache(player.getUniqueId());
-                            if (o.isPresent()) {
-                                PayloadProfile profile = o.get();
+                        Optional<PayloadProfile> o = cache.getFromCache(player.getUniqueId());
+                        if (o.isPresent()) {
+                            PayloadProfile profile = o.get();
 
-                                PayloadProfileLogoutEvent payloadEvent = new PayloadProfileLogoutEvent(profile);
-                                cache.getPlugin().getServer().getPluginManager().callEvent(payloadEvent);
+                            PayloadProfileLogoutEvent payloadEvent = new PayloadProfileLogoutEvent(profile);
+                            cache.getPlugin().getServer().getPluginManager().callEvent(payloadEvent);
 
-                                profile.uninitializePlayer();
-                                if (!cache.save(profile)) {
-                                    cache.getErrorService().capture("Error saving profile on quit: " + player.getName());
-                                }
-                                cache.removeController(profile.getUniqueId());
+                            profile.uninitializePlayer();
+                            if (!cache.save(profile)) {
+                                cache.getErrorService().capture("Error saving profile on quit: " + player.getName());
                             }
-                        });
+                            cache.removeController(profile.getUniqueId());
+                        }
                     } else if (cache.getMode().equals(PayloadMode.NETWORK_NODE)) {
                         Optional<PayloadProfile> o = cache.getFromCache(player.getUniqueId());
                         if (o.isPresent()) {
@@ -17,11 +17,18 @@ public class ProfileCacheSettings extends CacheSettings {
 
     private int localExpiryTimeSeconds = 7200;
     private int redisExpiryTimeSeconds = 14400;
-    private int handshakeTimeoutSeconds = 5;
     private boolean denyJoinOnHandshakeTimeout = false; // will allow for failure handling
     private boolean denyJoinOnHandshakeFailDatabase = false; // deny join if database is down during handshake?
     private int handshakeTimeOutAttemptsAllowJoin = 3;
+    private int loginTimeoutSeconds = 10; // Deny the login if profiles haven't loaded by then (the longest of all profile caches applies, as they load together)
     private boolean setOfflineOnShutdown = true; // update Profiles to offline=true on cache shutdown
+    private boolean migrateUsernames = true; // populate usernameLower for existing profiles on startup (async), required for index-backed username lookups; if disabled, unmigrated profiles keep the slower lookup fallback enabled
+    private boolean enablePrefetch = false; // Load profiles ahead of login when a proxy (or any node) announces a player is connecting to this server
+    private int prefetchExpirySeconds = 15; // How long a prefetched profile is kept for the login to pick it up before it is discarded
+    private boolean enableDirectTransfer = false; // On a server switch, send the profile in the handshake reply instead of having the new server read it back from MongoDB
+    private int directTransferMaxBytes = 256 * 1024; // Larger (compressed) profiles are saved and read back from MongoDB instead
+    private int transferConfirmDelayMillis = 1000; // How long to wait before checking that a transferred profile's MongoDB write landed, and between checks
+    private int transferConfirmAttempts = 5; // Checks before the new server saves a transferred profile itself
     private boolean alwaysCacheOnLoadNetworkNode = false; // should we cache profiles that are fetched (not during login) in network_node mode (CAN CAUSE DATA LOSS)
 
 }
@@ -5,12 +5,18 @@
 
 package com.jonahseguin.payload.mode.profile.store;
 
+import com.google.common.base.Preconditions;
 import com.jonahseguin.payload.base.store.PayloadStore;
 import com.jonahseguin.payload.mode.profile.PayloadProfile;
 import com.jonahseguin.payload.mode.profile.PayloadProfileCache;
 import lombok.Getter;
 
+import javax.annotation.Nonnull;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 @Getter
 public abstract class ProfileCacheStore<X extends PayloadProfile> implements PayloadStore<UUID, X> {
@@ -20,4 +26,26 @@ public abstract class ProfileCacheStore<X extends PayloadProfile> implements Pay
     public ProfileCacheStore(PayloadProfileCache<X> cache) {
         this.cache = cache;
     }
+
+    @Nonnull
+    @Override
+    public CompletableFuture<Optional<X>> getAsync(@Nonnull UUID key) {
+        Preconditions.checkNotNull(key);
+        return isDatabase() ? cache.runAsync(() -> get(key)) : CompletableFuture.completedFuture(get(key));
+    }
+
+    @Nonnull
+    @Override
+    public CompletableFuture<Map<UUID, X>> getAllAsync(@Nonnull Collection<UUID> keys) {
+        Preconditions.checkNotNull(keys);
+        return isDatabase() ? cache.runAsync(() -> getAll(keys)) : CompletableFuture.completedFuture(getAll(keys));
+    }
+
+    @Nonnull
+    @Override
+    public CompletableFuture<Boolean> saveAsync(@Nonnull X payload) {
+        Preconditions.checkNotNull(payload);
+        return isDatabase() ? cache.runAsync(() -> save(payload)) : CompletableFuture.completedFuture(save(payload));
+    }
+
 }
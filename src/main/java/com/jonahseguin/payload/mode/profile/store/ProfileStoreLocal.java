@@ -15,11 +15,13 @@ import javax.annotation.Nonnull;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Stream;
 
 @Getter
 public class ProfileStoreLocal<X extends PayloadProfile> extends ProfileCacheStore<X> {
 
     private final ConcurrentMap<UUID, X> localCache = new ConcurrentHashMap<>();
+    private final ConcurrentMap<UUID, Staged<X>> staged = new ConcurrentHashMap<>(); // Prefetched ahead of login; not cached yet
     private boolean running = false;
 
     public ProfileStoreLocal(PayloadProfileCache<X> cache) {
@@ -33,10 +35,87 @@ public class ProfileStoreLocal<X extends PayloadProfile> extends ProfileCacheSto
         if (x != null) {
             x.interact();
             x.setLoadingSource(layerName());
+            cache.getEvictor().recordAccess(uuid);
         }
         return Optional.ofNullable(x);
     }
 
+    @Nonnull
+    @Override
+    public Map<UUID, X> getAll(@Nonnull Collection<UUID> keys) {
+        Preconditions.checkNotNull(keys);
+        Map<UUID, X> found = new HashMap<>();
+        for (UUID key : keys) {
+            get(key).ifPresent(x -> found.put(key, x));
+        }
+        return found;
+    }
+
+    /**
+     * Reserve a profile's staging slot before reading it ahead of its login.  Caching, removing or logging in the
+     * profile releases the reservation, so a read that finishes after any of those (and may be outdated) isn't staged.
+     * @param uuid The profile's UUID
+     * @return The reservation, or empty if the profile is cached or already staged
+     */
+    public Optional<Staged<X>> reserveStage(@Nonnull UUID uuid) {
+        Preconditions.checkNotNull(uuid);
+        Staged<X> reservation = new Staged<>(uuid, null, expiry());
+        if (staged.putIfAbsent(uuid, reservation) != null) {
+            return Optional.empty();
+        }
+        if (localCache.containsKey(uuid)) {
+            staged.remove(uuid, reservation);
+            return Optional.empty();
+        }
+        return Optional.of(reservation);
+    }
+
+    /**
+     * Hold a profile that was loaded ahead of its login, until the login consumes it or it expires
+     * @param reservation The reservation from {@link #reserveStage(UUID)}, made before the profile was read
+     * @param payload The profile, as just read from the database
+     * @return True if staged; false if the reservation was released in the meantime
+     */
+    public boolean stage(@Nonnull Staged<X> reservation, @Nonnull X payload) {
+        Preconditions.checkNotNull(reservation);
+        Preconditions.checkNotNull(payload);
+        return staged.replace(reservation.uuid, reservation, new Staged<>(reservation.uuid, payload, expiry()));
+    }
+
+    /**
+     * Release a reservation from {@link #reserveStage(UUID)} without staging anything (i.e. the profile doesn't exist)
+     * @param reservation The reservation
+     */
+    public void releaseStage(@Nonnull Staged<X> reservation) {
+        Preconditions.checkNotNull(reservation);
+        staged.remove(reservation.uuid, reservation);
+    }
+
+    /**
+     * Take a staged profile, if one was prefetched and hasn't expired yet.  A staged profile is only ever returned once.
+     * @param uuid The profile's UUID
+     * @return The staged profile
+     */
+    public Optional<X> consumeStaged(@Nonnull UUID uuid) {
+        Preconditions.checkNotNull(uuid);
+        Staged<X> s = staged.remove(uuid);
+        if (s == null || s.payload == null || s.expiresAt < System.currentTimeMillis()) {
+            return Optional.empty();
+        }
+        s.payload.setLoadingSource("Profile Prefetch");
+        return Optional.of(s.payload);
+    }
+
+    public boolean isStaged(@Nonnull UUID uuid) {
+        Preconditions.checkNotNull(uuid);
+        return staged.containsKey(uuid);
+    }
+
+    public void discardStaged(@Nonnull UUID uuid) {
+        Preconditions.checkNotNull(uuid);
+        staged.remove(uuid);
+    }
+
     public X getByObjectID(ObjectId id) {
         return localCache.values().stream().filter(x -> x.getObjectId().equals(id)).findFirst().orElse(null);
     }
@@ -46,6 +125,7 @@ public class ProfileStoreLocal<X extends PayloadProfile> extends ProfileCacheSto
         Preconditions.checkNotNull(payload);
         payload.interact();
         localCache.put(payload.getUniqueId(), payload);
+        staged.remove(payload.getUniqueId()); // Cached now, so a prefetched copy would only be older
         return true;
     }
 
@@ -59,6 +139,7 @@ public class ProfileStoreLocal<X extends PayloadProfile> extends ProfileCacheSto
     public void remove(@Nonnull UUID key) {
         Preconditions.checkNotNull(key);
         localCache.remove(key);
+        staged.remove(key);
     }
 
     @Override
@@ -73,29 +154,20 @@ public class ProfileStoreLocal<X extends PayloadProfile> extends ProfileCacheSto
     public void remove(@Nonnull X payload) {
         Preconditions.checkNotNull(payload);
         localCache.remove(payload.getUniqueId());
+        staged.remove(payload.getUniqueId());
     }
 
     @Override
     public int cleanup() {
-        long expiryTimeSeconds = getCache().getSettings().getLocalExpiryTimeSeconds();
-        Set<UUID> purge = new HashSet<>();
-        for (Map.Entry<UUID, X> entry : localCache.entrySet()) {
-            if (!entry.getValue().isOnline() && entry.getValue().getLastInteractionTimestamp() < (System.currentTimeMillis() - (expiryTimeSeconds * 1000))) {
-                // Expired
-                purge.add(entry.getKey());
-            }
-        }
-
-        for (UUID key : purge) {
-            cache.uncache(key);
-        }
-
-        return purge.size();
+        long now = System.currentTimeMillis();
+        staged.values().removeIf(s -> s.expiresAt < now); // Prefetched for a login that never happened
+        return cache.getEvictor().evict(localCache);
     }
 
     @Override
     public long clear() {
         long i = localCache.size();
+        staged.clear();
         localCache.clear();
         return i;
     }
@@ -106,6 +178,12 @@ public class ProfileStoreLocal<X extends PayloadProfile> extends ProfileCacheSto
         return localCache.values();
     }
 
+    @Nonnull
+    @Override
+    public Stream<X> stream() {
+        return localCache.values().stream();
+    }
+
     @Override
     public long size() {
         return localCache.size();
@@ -140,4 +218,26 @@ public class ProfileStoreLocal<X extends PayloadProfile> extends ProfileCacheSto
     public boolean isDatabase() {
         return false;
     }
+
+    private long expiry() {
+        return System.currentTimeMillis() + (cache.getSettings().getPrefetchExpirySeconds() * 1000L);
+    }
+
+    /**
+     * A staged profile, or a reservation for one (without a payload) while it is being read
+     */
+    public static class Staged<X> {
+
+        private final UUID uuid;
+        private final X payload;
+        private final long expiresAt;
+
+        private Staged(UUID uuid, X payload, long expiresAt) {
+            this.uuid = uuid;
+            this.payload = payload;
+            this.expiresAt = expiresAt;
+        }
+
+    }
+
 }
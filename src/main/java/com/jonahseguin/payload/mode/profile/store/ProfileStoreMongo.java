@@ -6,20 +6,46 @@
 package com.jonahseguin.payload.mode.profile.store;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.Iterables;
+import com.jonahseguin.payload.base.store.BulkSaveResult;
+import com.jonahseguin.payload.base.store.PayloadDatabaseStore;
+import com.jonahseguin.payload.base.store.PayloadMongoWriter;
 import com.jonahseguin.payload.base.type.PayloadQueryModifier;
+import com.jonahseguin.payload.base.update.PayloadChanges;
+import com.jonahseguin.payload.base.update.PayloadVersions;
+import com.jonahseguin.payload.base.update.UpdateOps;
+import com.jonahseguin.payload.database.mongo.AsyncMongoCollection;
+import com.jonahseguin.payload.database.mongo.MongoDriverType;
 import com.jonahseguin.payload.mode.profile.PayloadProfile;
 import com.jonahseguin.payload.mode.profile.PayloadProfileCache;
+import com.mongodb.BasicDBObject;
+import com.mongodb.BulkWriteOperation;
+import com.mongodb.DBCollection;
+import com.mongodb.DBCursor;
+import com.mongodb.DBObject;
 import com.mongodb.MongoException;
+import dev.morphia.query.CountOptions;
+import dev.morphia.query.FindOptions;
 import dev.morphia.query.Query;
+import dev.morphia.query.internal.MorphiaCursor;
+import org.bson.types.ObjectId;
 
 import javax.annotation.Nonnull;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
-public class ProfileStoreMongo<X extends PayloadProfile> extends ProfileCacheStore<X> {
+public class ProfileStoreMongo<X extends PayloadProfile> extends ProfileCacheStore<X> implements PayloadDatabaseStore<UUID, X> {
 
+    private static final int MIGRATION_BATCH_SIZE = 1000;
+    private static final int GET_BATCH_SIZE = 1000; // Keys per $in query
     private final Set<PayloadQueryModifier<X>> queryModifiers = new HashSet<>();
+    private final PayloadMongoWriter<X> writer = new PayloadMongoWriter<>(cache, "Profile", X::getUsername, this::save);
     private boolean running = false;
+    private volatile boolean usernamesMigrated = false;
+    private AsyncMongoCollection<X> asyncCollection = null; // Only when using the async. driver
 
     public ProfileStoreMongo(PayloadProfileCache<X> cache) {
         super(cache);
@@ -29,9 +55,9 @@ public class ProfileStoreMongo<X extends PayloadProfile> extends ProfileCacheSto
     public Optional<X> get(@Nonnull UUID key) {
         Preconditions.checkNotNull(key);
         try {
-            Query<X> q = getQuery(key);
-            Stream<X> stream = q.find().toList().stream();
-            return stream.findFirst();
+            Optional<X> xp = findFirst(getQuery(key));
+            xp.ifPresent(cache.getDirtyTracker()::snapshot);
+            return xp;
         } catch (MongoException ex) {
             getCache().getErrorService().capture(ex, "MongoDB error getting Profile from MongoDB Layer: " + key.toString());
             return Optional.empty();
@@ -41,11 +67,99 @@ public class ProfileStoreMongo<X extends PayloadProfile> extends ProfileCacheSto
         }
     }
 
+    @Nonnull
+    @Override
+    public Map<UUID, X> getAll(@Nonnull Collection<UUID> keys) {
+        Preconditions.checkNotNull(keys);
+        Map<UUID, X> found = new HashMap<>();
+        try {
+            for (List<UUID> batch : Iterables.partition(new LinkedHashSet<>(keys), GET_BATCH_SIZE)) {
+                for (X x : getQuery(batch).find().toList()) {
+                    cache.getDirtyTracker().snapshot(x);
+                    found.put(x.getUniqueId(), x);
+                }
+            }
+        } catch (MongoException ex) {
+            getCache().getErrorService().capture(ex, "MongoDB error getting " + keys.size() + " Profiles from MongoDB Layer");
+        } catch (Exception expected) {
+            getCache().getErrorService().capture(expected, "Error getting " + keys.size() + " Profiles from MongoDB Layer");
+        }
+        return found;
+    }
+
+    @Nonnull
+    @Override
+    public CompletableFuture<Optional<X>> getAsync(@Nonnull UUID key) {
+        Preconditions.checkNotNull(key);
+        if (asyncCollection == null) {
+            return super.getAsync(key);
+        }
+        return asyncCollection.findFirst(getQuery(key)).handle((xp, ex) -> {
+            if (ex != null) {
+                getCache().getErrorService().capture(ex, "MongoDB error getting Profile from MongoDB Layer (async): " + key.toString());
+                return Optional.empty();
+            }
+            xp.ifPresent(cache.getDirtyTracker()::snapshot);
+            return xp;
+        });
+    }
+
+    @Nonnull
+    @Override
+    public CompletableFuture<Map<UUID, X>> getAllAsync(@Nonnull Collection<UUID> keys) {
+        Preconditions.checkNotNull(keys);
+        if (asyncCollection == null) {
+            return super.getAllAsync(keys);
+        }
+        List<CompletableFuture<List<X>>> batches = new ArrayList<>();
+        for (List<UUID> batch : Iterables.partition(new LinkedHashSet<>(keys), GET_BATCH_SIZE)) {
+            batches.add(asyncCollection.find(getQuery(batch), cache.getSettings().getReadBatchSize()));
+        }
+        return CompletableFuture.allOf(batches.toArray(new CompletableFuture[0])).handle((v, ex) -> {
+            Map<UUID, X> found = new HashMap<>();
+            if (ex != null) {
+                getCache().getErrorService().capture(ex, "MongoDB error getting " + keys.size() + " Profiles from MongoDB Layer (async)");
+                return found;
+            }
+            for (CompletableFuture<List<X>> batch : batches) {
+                for (X x : batch.join()) {
+                    cache.getDirtyTracker().snapshot(x);
+                    found.put(x.getUniqueId(), x);
+                }
+            }
+            return found;
+        });
+    }
+
+    @Nonnull
+    @Override
+    public CompletableFuture<Boolean> saveAsync(@Nonnull X payload) {
+        Preconditions.checkNotNull(payload);
+        if (asyncCollection == null) {
+            return super.saveAsync(payload);
+        }
+        payload.interact();
+        long version = payload.getPayloadVersion();
+        payload.setPayloadVersion(version + 1);
+        return asyncCollection.save(PayloadVersions.query(payload.getObjectId(), version), payload).handle((v, ex) -> {
+            if (ex == null) {
+                cache.getDirtyTracker().snapshot(payload);
+                return CompletableFuture.completedFuture(true);
+            }
+            payload.setPayloadVersion(version);
+            if (PayloadVersions.isConflict(ex)) {
+                return cache.runAsync(() -> save(payload)); // Resolved and retried on the synchronous path
+            }
+            getCache().getErrorService().capture(ex, "MongoDB error saving Profile to MongoDB Layer (async): " + payload.getUsername());
+            return CompletableFuture.completedFuture(false);
+        }).thenCompose(saved -> saved);
+    }
+
     @Override
     public boolean has(@Nonnull UUID uuid) {
         Preconditions.checkNotNull(uuid);
         try {
-            return getQuery(uuid).find().toList().stream().findAny().isPresent();
+            return exists(getQuery(uuid));
         } catch (MongoException ex) {
             getCache().getErrorService().capture(ex, "MongoDB error check if Profile exists in MongoDB Layer: " + uuid.toString());
             return false;
@@ -71,13 +185,16 @@ public class ProfileStoreMongo<X extends PayloadProfile> extends ProfileCacheSto
     public Optional<X> getByUsername(@Nonnull String username) {
         Preconditions.checkNotNull(username);
         try {
-            Query<X> q = getQueryForUsername(username);
-            Stream<X> stream = q.find().toList().stream();
-            Optional<X> xp = stream.findFirst();
+            Optional<X> xp = findFirst(getQueryForUsername(username));
+            if (!xp.isPresent() && !usernamesMigrated) {
+                // Profiles saved before usernameLower existed can only be found by the legacy (regex) query until migrated
+                xp = findFirst(getLegacyQueryForUsername(username));
+            }
             X x = xp.orElse(null);
             if (x != null) {
                 x.interact();
                 x.setLoadingSource(layerName());
+                cache.getDirtyTracker().snapshot(x);
             }
             return xp;
         } catch (MongoException ex) {
@@ -89,22 +206,145 @@ public class ProfileStoreMongo<X extends PayloadProfile> extends ProfileCacheSto
         }
     }
 
+    /**
+     * Insert or replace the Profile, only if the stored document still has the version this copy is based on.
+     * If another server saved a newer version in the meantime, the conflict is resolved by the cache's
+     * {@link com.jonahseguin.payload.base.update.PayloadConflictResolver} and the save retried.
+     */
     @Override
     public boolean save(@Nonnull X payload) {
         Preconditions.checkNotNull(payload);
         payload.interact();
+        int conflicts = 0;
+        while (true) {
+            long version = payload.getPayloadVersion();
+            payload.setPayloadVersion(version + 1);
+            try {
+                DBObject document = cache.getDatabase().getMorphia().toDBObject(payload);
+                getCollection().update(PayloadVersions.query(payload.getObjectId(), version), document, true, false);
+                cache.getDirtyTracker().snapshot(payload, document);
+                return true;
+            } catch (MongoException ex) {
+                payload.setPayloadVersion(version);
+                if (!PayloadVersions.isConflict(ex)) {
+                    getCache().getErrorService().capture(ex, "MongoDB error saving Profile to MongoDB Layer: " + payload.getUsername());
+                    return false;
+                }
+                if (conflicts++ >= cache.getSettings().getSaveConflictRetries() || !cache.resolveConflict(payload)) {
+                    getCache().getErrorService().debug("Gave up saving Profile after a version conflict: " + payload.getUsername());
+                    return false;
+                }
+            } catch (Exception expected) {
+                payload.setPayloadVersion(version);
+                getCache().getErrorService().capture(expected, "Error saving Profile to MongoDB Layer: " + payload.getUsername());
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Write a document already encoded from the Profile (i.e. the one sent to another server on a transfer) at the
+     * version it carries, only if the stored document still has the version before it.  Changes made to the Profile
+     * after it was encoded aren't written, so what is stored is exactly what was sent.
+     * @param payload The Profile the document was encoded from
+     * @param document The document, with {@link PayloadVersions#FIELD} set to the version to write
+     * @return True if written; false on a version conflict or error
+     */
+    public boolean saveDocument(@Nonnull X payload, @Nonnull DBObject document) {
+        Preconditions.checkNotNull(payload);
+        Preconditions.checkNotNull(document);
+        long version = ((Number) document.get(PayloadVersions.FIELD)).longValue();
         try {
-            cache.getDatabase().getDatastore().save(payload);
+            getCollection().update(PayloadVersions.query(payload.getObjectId(), version - 1), document, true, false);
+            if (payload.getPayloadVersion() == version - 1) {
+                // Not saved since it was encoded; later changes are tracked against what was written
+                payload.setPayloadVersion(version);
+                cache.getDirtyTracker().snapshot(payload, document);
+            }
             return true;
         } catch (MongoException ex) {
-            getCache().getErrorService().capture(ex, "MongoDB error saving Profile to MongoDB Layer: " + payload.getUsername());
+            if (PayloadVersions.isConflict(ex)) {
+                getCache().getErrorService().debug("Version conflict saving transferred Profile: " + payload.getUsername());
+            } else {
+                getCache().getErrorService().capture(ex, "MongoDB error saving transferred Profile to MongoDB Layer: " + payload.getUsername());
+            }
             return false;
         } catch (Exception expected) {
-            getCache().getErrorService().capture(expected, "Error saving Profile to MongoDB Layer: " + payload.getUsername());
+            getCache().getErrorService().capture(expected, "Error saving transferred Profile to MongoDB Layer: " + payload.getUsername());
             return false;
         }
     }
 
+    @Nonnull
+    @Override
+    public CompletableFuture<Optional<X>> updateAsync(@Nonnull UUID key, @Nonnull UpdateOps ops) {
+        Preconditions.checkNotNull(key);
+        Preconditions.checkNotNull(ops);
+        return cache.runAsync(() -> update(key, ops));
+    }
+
+    /**
+     * Apply the update operators with a single findAndModify, so concurrent updates (i.e. $inc from several servers)
+     * are never lost.
+     */
+    @Override
+    public Optional<X> update(@Nonnull UUID key, @Nonnull UpdateOps ops) {
+        Preconditions.checkNotNull(key);
+        Preconditions.checkNotNull(ops);
+        DBObject update = ops.toUpdate(cache.getFieldMapper());
+        try {
+            DBCollection collection = cache.getDatabase().getDatastore().getCollection(cache.getPayloadClass());
+            DBObject document = collection.findAndModify(getQuery(key).getQueryObject(), null, null, false, update, true, false);
+            return Optional.ofNullable(document).map(cache.getFieldMapper()::decode);
+        } catch (MongoException ex) {
+            getCache().getErrorService().capture(ex, "MongoDB error updating Profile in MongoDB Layer: " + key.toString());
+            return Optional.empty();
+        } catch (Exception expected) {
+            getCache().getErrorService().capture(expected, "Error updating Profile in MongoDB Layer: " + key.toString());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Save many Profiles at once using a single unordered MongoDB bulk write (see {@link PayloadMongoWriter#saveAll})
+     * @param payloads The Profiles to save
+     * @return The per-item result
+     */
+    @Nonnull
+    public BulkSaveResult<X> saveAll(@Nonnull Collection<X> payloads) {
+        return writer.saveAll(payloads);
+    }
+
+    /**
+     * Save only the changed persistent fields of a Profile (see {@link PayloadMongoWriter#saveChanges})
+     * @param payload The Profile
+     * @param changes The changed fields, from {@link com.jonahseguin.payload.base.update.PayloadDirtyTracker#changes}
+     * @return True if successful
+     */
+    public boolean saveChanges(@Nonnull X payload, @Nonnull PayloadChanges changes) {
+        return writer.saveChanges(payload, changes);
+    }
+
+    /**
+     * Read only the stored version of a profile
+     * @param id The profile's ObjectId
+     * @return The stored version, or empty if it isn't stored (or on error)
+     */
+    public OptionalLong getStoredVersion(@Nonnull ObjectId id) {
+        Preconditions.checkNotNull(id);
+        try {
+            DBObject document = getCollection().findOne(new BasicDBObject("_id", id), new BasicDBObject(PayloadVersions.FIELD, 1));
+            return document != null ? OptionalLong.of(PayloadVersions.version(document)) : OptionalLong.empty();
+        } catch (Exception ex) {
+            getCache().getErrorService().capture(ex, "Error getting stored version of Profile from MongoDB Layer: " + id.toHexString());
+            return OptionalLong.empty();
+        }
+    }
+
+    private DBCollection getCollection() {
+        return cache.getDatabase().getDatastore().getCollection(cache.getPayloadClass());
+    }
+
     @Override
     public boolean has(@Nonnull X payload) {
         Preconditions.checkNotNull(payload);
@@ -126,7 +366,18 @@ public class ProfileStoreMongo<X extends PayloadProfile> extends ProfileCacheSto
     @Override
     @Nonnull
     public Collection<X> getAll() {
-        return createQuery().find().toList();
+        try (Stream<X> stream = stream()) {
+            return stream.collect(Collectors.toList());
+        }
+    }
+
+    @Nonnull
+    @Override
+    public Stream<X> stream() {
+        MorphiaCursor<X> cursor = createQuery().find(new FindOptions().batchSize(Math.max(1, cache.getSettings().getReadBatchSize())));
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(cursor, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .peek(cache.getDirtyTracker()::snapshot)
+                .onClose(cursor::close);
     }
 
     @Override
@@ -150,6 +401,20 @@ public class ProfileStoreMongo<X extends PayloadProfile> extends ProfileCacheSto
         if (cache.getSettings().isServerSpecific()) {
             addCriteriaModifier(query -> query.field("payloadId").equalIgnoreCase(cache.getApi().getPayloadID()));
         }
+        if (success) {
+            try {
+                cache.getDatabase().getDatastore().ensureIndexes(cache.getPayloadClass());
+            } catch (MongoException ex) {
+                cache.getErrorService().capture(ex, "MongoDB error ensuring indexes for MongoDB Profile Layer");
+            }
+            if (cache.getSettings().getMongoDriver() == MongoDriverType.ASYNC) {
+                try {
+                    asyncCollection = new AsyncMongoCollection<>(cache.getDatabase(), cache.getPayloadClass());
+                } catch (Exception ex) {
+                    cache.getErrorService().capture(ex, "Error starting the async. MongoDB driver for MongoDB Profile Layer; using the synchronous driver");
+                }
+            }
+        }
         running = true;
         return success;
     }
@@ -194,16 +459,106 @@ public class ProfileStoreMongo<X extends PayloadProfile> extends ProfileCacheSto
 
     public Query<X> getQuery(UUID uniqueId) {
         Query<X> q = createQuery();
-        q.criteria("uniqueId").equalIgnoreCase(uniqueId.toString());
+        // UUID#toString is always lower-case, so an exact match can use the uniqueId index (unlike equalIgnoreCase's regex)
+        q.criteria("uniqueId").equal(uniqueId.toString());
+        return q;
+    }
+
+    /**
+     * Fetch only the first matching document, rather than materializing the whole cursor
+     */
+    private Optional<X> findFirst(Query<X> q) {
+        return Optional.ofNullable(q.first(new FindOptions().limit(1)));
+    }
+
+    /**
+     * Check if any document matches, without fetching or deserializing it
+     */
+    private boolean exists(Query<X> q) {
+        return q.count(new CountOptions().limit(1)) > 0;
+    }
+
+    public Query<X> getQuery(Collection<UUID> uniqueIds) {
+        Query<X> q = createQuery();
+        q.field("uniqueId").in(uniqueIds.stream().map(UUID::toString).collect(Collectors.toList()));
         return q;
     }
 
     public Query<X> getQueryForUsername(String username) {
+        Query<X> q = createQuery();
+        q.criteria("usernameLower").equal(PayloadProfile.normalizeUsername(username));
+        return q;
+    }
+
+    private Query<X> getLegacyQueryForUsername(String username) {
         Query<X> q = createQuery();
         q.criteria("username").equalIgnoreCase(username);
         return q;
     }
 
+    /**
+     * Check once whether any Profile is still missing usernameLower, without migrating them (when migrateUsernames
+     * is disabled).  If none are, username lookups that miss no longer fall back to the slower case-insensitive query.
+     * @return True if every Profile has usernameLower
+     */
+    public boolean checkUsernamesMigrated() {
+        try {
+            DBCollection collection = cache.getDatabase().getDatastore().getCollection(cache.getPayloadClass());
+            usernamesMigrated = collection.findOne(unmigratedUsernames(), new BasicDBObject("_id", 1)) == null;
+        } catch (MongoException ex) {
+            getCache().getErrorService().capture(ex, "MongoDB error checking Profile usernames in MongoDB Layer");
+        }
+        return usernamesMigrated;
+    }
+
+    private BasicDBObject unmigratedUsernames() {
+        return new BasicDBObject("usernameLower", new BasicDBObject("$exists", false))
+                .append("username", new BasicDBObject("$type", "string"));
+    }
+
+    /**
+     * Populate usernameLower for Profiles saved before it existed, in batches of bulk updates.
+     * Until this has completed, username lookups that miss will fall back to the slower case-insensitive query.
+     * @return The number of Profiles migrated
+     */
+    public long migrateUsernames() {
+        long migrated = 0;
+        try {
+            DBCollection collection = cache.getDatabase().getDatastore().getCollection(cache.getPayloadClass());
+            BasicDBObject filter = unmigratedUsernames();
+            try (DBCursor cursor = collection.find(filter, new BasicDBObject("username", 1)).batchSize(MIGRATION_BATCH_SIZE)) {
+                BulkWriteOperation bulk = null;
+                int pending = 0;
+                while (cursor.hasNext()) {
+                    DBObject document = cursor.next();
+                    String username = (String) document.get("username");
+                    if (bulk == null) {
+                        bulk = collection.initializeUnorderedBulkOperation();
+                    }
+                    bulk.find(new BasicDBObject("_id", document.get("_id")))
+                            .updateOne(new BasicDBObject("$set", new BasicDBObject("usernameLower", PayloadProfile.normalizeUsername(username))));
+                    if (++pending >= MIGRATION_BATCH_SIZE) {
+                        migrated += bulk.execute().getModifiedCount();
+                        bulk = null;
+                        pending = 0;
+                    }
+                }
+                if (bulk != null) {
+                    migrated += bulk.execute().getModifiedCount();
+                }
+            }
+            usernamesMigrated = true;
+            if (migrated > 0) {
+                cache.getErrorService().debug("Migrated usernameLower for " + migrated + " Profiles in cache " + cache.getName());
+            }
+        } catch (MongoException ex) {
+            getCache().getErrorService().capture(ex, "MongoDB error migrating Profile usernames in MongoDB Layer");
+        } catch (Exception expected) {
+            getCache().getErrorService().capture(expected, "Error migrating Profile usernames in MongoDB Layer");
+        }
+        return migrated;
+    }
+
     @Override
     public boolean isDatabase() {
         return true;
@@ -11,15 +11,17 @@ import com.google.inject.Singleton;
 import com.jonahseguin.payload.PayloadPlugin;
 import com.jonahseguin.payload.annotation.Database;
 import com.jonahseguin.payload.base.error.ErrorService;
+import com.jonahseguin.payload.base.executor.PayloadExecutor;
+import com.jonahseguin.payload.base.pubsub.PubSubService;
 import com.jonahseguin.payload.database.DatabaseService;
 import lombok.Getter;
 import org.bukkit.scheduler.BukkitTask;
-import redis.clients.jedis.Jedis;
 
 import javax.annotation.Nonnull;
 import java.util.Collection;
 import java.util.Optional;
-import java.util.concurrent.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 @Getter
 @Singleton
@@ -34,16 +36,18 @@ public class PayloadServerService implements Runnable, ServerService {
     private final PayloadServer thisServer;
     private final ErrorService error;
     private final ConcurrentMap<String, PayloadServer> servers = new ConcurrentHashMap<>();
-    private final ExecutorService executorService = Executors.newCachedThreadPool();
-    private Jedis jedisSubscriber = null;
+    private final PayloadExecutor executor;
+    private final PubSubService pubSub;
     private ServerPublisher publisher = null;
     private ServerSubscriber subscriber = null;
     private BukkitTask pingTask = null;
     private boolean running = false;
 
     @Inject
-    public PayloadServerService(DatabaseService database, PayloadPlugin payloadPlugin, @Database ErrorService error, @Database String name) {
+    public PayloadServerService(DatabaseService database, PayloadPlugin payloadPlugin, PayloadExecutor executor, PubSubService pubSub, @Database ErrorService error, @Database String name) {
         this.name = name;
+        this.executor = executor;
+        this.pubSub = pubSub;
         this.database = database;
         this.payloadPlugin = payloadPlugin;
         this.error = error;
@@ -55,12 +59,10 @@ public class PayloadServerService implements Runnable, ServerService {
     public boolean start() {
         this.publisher = new ServerPublisher(this);
 
-        this.executorService.submit(() -> {
-            this.jedisSubscriber = this.database.getJedisResource();
-            this.subscriber = new ServerSubscriber(this);
-            this.jedisSubscriber.subscribe(this.subscriber,
-                    "server-join", "server-ping", "server-quit", "server-update-name");
-        });
+        this.subscriber = new ServerSubscriber(this);
+        for (ServerEvent event : ServerEvent.values()) {
+            this.pubSub.subscribe(event.getEvent(), this.subscriber);
+        }
 
         this.publisher.publishJoin();
         this.pingTask = payloadPlugin.getServer().getScheduler().runTaskTimerAsynchronously(payloadPlugin, this, (PING_FREQUENCY_SECONDS * 20), (PING_FREQUENCY_SECONDS * 20));
@@ -124,17 +126,6 @@ public class PayloadServerService implements Runnable, ServerService {
         this.publisher.publishPing();
     }
 
-    private void shutdownExecutor() {
-        try {
-            this.executorService.shutdown();
-            this.executorService.awaitTermination(5, TimeUnit.SECONDS);
-        } catch (InterruptedException ex) {
-            this.error.capture(ex, "Interrupted during shutdown of Server Manager's Executor Service");
-        } finally {
-            this.executorService.shutdownNow();
-        }
-    }
-
     @Override
     public boolean shutdown() {
         if (this.pingTask != null) {
@@ -142,20 +133,15 @@ public class PayloadServerService implements Runnable, ServerService {
         }
 
         if (this.subscriber != null) {
-            if (this.subscriber.isSubscribed()) {
-                this.subscriber.unsubscribe();
+            for (ServerEvent event : ServerEvent.values()) {
+                this.pubSub.unsubscribe(event.getEvent());
             }
             this.subscriber = null;
         }
 
         this.publisher.publishQuit(); // Sync.
-        this.shutdownExecutor();
 
         this.publisher = null;
-        if (this.jedisSubscriber != null) {
-            this.jedisSubscriber.close();
-            this.jedisSubscriber = null;
-        }
         running = false;
         return true;
     }
@@ -17,7 +17,7 @@ public class ServerPublisher {
     }
 
     public void publishPing() {
-        this.payloadServerService.getExecutorService().submit(() -> {
+        this.payloadServerService.getExecutor().io(() -> {
             try (Jedis jedis = this.payloadServerService.getDatabase().getJedisResource()) {
                 jedis.publish(ServerEvent.PING.getEvent(), payloadServerService.getThisServer().getName());
             }
@@ -28,7 +28,7 @@ public class ServerPublisher {
     }
 
     public void publishJoin() {
-        this.payloadServerService.getExecutorService().submit(() -> {
+        this.payloadServerService.getExecutor().io(() -> {
             try (Jedis jedis = this.payloadServerService.getDatabase().getJedisResource()) {
                 jedis.publish(ServerEvent.JOIN.getEvent(), payloadServerService.getThisServer().getName());
             }
@@ -40,18 +40,16 @@ public class ServerPublisher {
 
     public void publishQuit() {
         // Sync -- we want this to complete first before shutdown
-        this.payloadServerService.getExecutorService().submit(() -> {
-            try (Jedis jedis = this.payloadServerService.getDatabase().getJedisResource()) {
-                jedis.publish(ServerEvent.QUIT.getEvent(), payloadServerService.getThisServer().getName());
-            }
-            catch (Exception ex) {
-                payloadServerService.getDatabase().getErrorService().capture(ex, "Server Manager: Error publishing QUIT event");
-            }
-        });
+        try (Jedis jedis = this.payloadServerService.getDatabase().getJedisResource()) {
+            jedis.publish(ServerEvent.QUIT.getEvent(), payloadServerService.getThisServer().getName());
+        }
+        catch (Exception ex) {
+            payloadServerService.getDatabase().getErrorService().capture(ex, "Server Manager: Error publishing QUIT event");
+        }
     }
 
     public void publishUpdateName(String oldName, String newName) {
-        this.payloadServerService.getExecutorService().submit(() -> {
+        this.payloadServerService.getExecutor().io(() -> {
             try (Jedis jedis = this.payloadServerService.getDatabase().getJedisResource()) {
                 Document data = new Document();
                 data.append("old", oldName);
@@ -5,10 +5,12 @@
 
 package com.jonahseguin.payload.server;
 
+import com.jonahseguin.payload.base.pubsub.PubSubListener;
 import org.bson.Document;
-import redis.clients.jedis.JedisPubSub;
 
-public class ServerSubscriber extends JedisPubSub {
+import javax.annotation.Nonnull;
+
+public class ServerSubscriber implements PubSubListener {
 
     private final PayloadServerService payloadServerService;
 
@@ -17,7 +19,7 @@ public class ServerSubscriber extends JedisPubSub {
     }
 
     @Override
-    public void onMessage(String channel, String message) {
+    public void onMessage(@Nonnull String channel, @Nonnull String message) {
         ServerEvent event = ServerEvent.fromChannel(channel);
         if (event != null) {
             if (event.equals(ServerEvent.JOIN)) {